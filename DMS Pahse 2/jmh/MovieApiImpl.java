@@ -0,0 +1,183 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+
+import benchmarks.MovieApi;
+
+/**
+ * Bridges the benchmarks (package benchmarks) to the application classes.
+ */
+public class MovieApiImpl implements MovieApi {
+
+    private final MovieManager manager;
+    private MovieServer server;
+
+    public MovieApiImpl(String path, String snapshot) {
+        MovieManager.Options options = new MovieManager.Options();
+        options.binarySnapshot = snapshot.equals("binary");
+        options.compressedSnapshot = snapshot.equals("compressed");
+        options.partitioned = snapshot.equals("partitioned");
+        manager = new MovieManager(path, options);
+    }
+
+    public MovieApiImpl(String path, boolean internDirectors, boolean compactTitles) {
+        MovieManager.Options options = new MovieManager.Options();
+        options.internDirectors = internDirectors;
+        options.compactTitles = compactTitles;
+        manager = new MovieManager(path, options);
+    }
+
+    private MovieApiImpl(MovieManager manager) {
+        this.manager = manager;
+    }
+
+    public static MovieApi openJournaled(String path) {
+        MovieManager.Options options = new MovieManager.Options();
+        options.journaled = true;
+        return new MovieApiImpl(new MovieManager(path, options));
+    }
+
+    @Override
+    public Object parse(String csvLine) {
+        return Movie.fromCSV(csvLine);
+    }
+
+    @Override
+    public void load() {
+        manager.loadMovies();
+    }
+
+    @Override
+    public void save() {
+        manager.saveMovies();
+    }
+
+    @Override
+    public int upload(String csvPath) {
+        return manager.uploadCSV(csvPath).inserted;
+    }
+
+    @Override
+    public long export(String path, boolean jsonLines, boolean byRating) {
+        try {
+            return manager.export(path, jsonLines ? MovieManager.ExportFormat.JSON_LINES : MovieManager.ExportFormat.CSV,
+                    null, byRating ? Comparator.comparingDouble(Movie::getRating).reversed() : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int yearRange(int fromYear, int toYear) {
+        return manager.findByYearRange(fromYear, toYear).size();
+    }
+
+    @Override
+    public void addVote(long id) {
+        Movie m = manager.get(id);
+        manager.update(id, new Movie(m.getTitle(), m.getYear(), m.getDirector(), m.getRating(),
+                m.getRuntimeMinutes(), m.getVotes() + 1, m.isWatched()));
+    }
+
+    @Override
+    public int markWatched(String director, boolean watched, boolean bulk) {
+        if (bulk) {
+            return manager.updateWhere(m -> m.getDirector().equals(director), m -> new Movie(m.getTitle(), m.getYear(),
+                    m.getDirector(), m.getRating(), m.getRuntimeMinutes(), m.getVotes(), watched));
+        }
+        int changed = 0;
+        for (Movie m : manager.findByDirector(director)) {
+            if (m.isWatched() == watched) continue;
+            manager.update(m.getId(), new Movie(m.getTitle(), m.getYear(), m.getDirector(), m.getRating(),
+                    m.getRuntimeMinutes(), m.getVotes(), watched));
+            changed++;
+        }
+        return changed;
+    }
+
+    @Override
+    public int search(String query, int limit) {
+        return manager.searchTitles(query, limit).size();
+    }
+
+    @Override
+    public long sorted(String order) {
+        return manager.sorted(MovieOrder.parse(order)).get(0).getId();
+    }
+
+    @Override
+    public long listSort(String order) {
+        List<Movie> copy = manager.getAll();
+        copy.sort(MovieOrder.parse(order));
+        return copy.get(0).getId();
+    }
+
+    @Override
+    public long top(String order, int k) {
+        return manager.top(MovieOrder.parse(order), k).get(0).getId();
+    }
+
+    @Override
+    public void runInteractive(String input) {
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            new MovieCLI(manager).run();
+        } finally {
+            System.setIn(in);
+            System.setOut(out);
+        }
+    }
+
+    @Override
+    public int runBatch(String script, int commitEvery) {
+        try {
+            return new MovieBatch(manager, commitEvery)
+                    .run(new BufferedReader(new StringReader(script)), new StringWriter()).errors;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int serve(int port) {
+        try {
+            server = new MovieServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.start();
+        return server.getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) server.stop(0);
+        manager.close();
+    }
+
+    @Override
+    public double totalScariness() {
+        double sum = 0;
+        for (Movie m : manager.snapshot()) sum += m.getScariness();
+        return sum;
+    }
+
+    @Override
+    public int size() {
+        return manager.size();
+    }
+}
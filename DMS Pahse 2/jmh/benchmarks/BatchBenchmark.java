@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Adding 1000 movies to a 10K-row catalog through the interactive menu
+ * (one save per movie) and through a batch script (one save at the end,
+ * or one every commitEvery adds).
+ *
+ * Each invocation starts from a freshly written catalog, so the time per
+ * operation is the cost of one add including its share of the saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class BatchBenchmark {
+
+    private static final int CATALOG = 10_000;
+    private static final int ADDS = 1000;
+
+    // "interactive", or the commit interval of a batch run (0 = at the end)
+    @Param({"interactive", "0", "100"})
+    public String mode;
+
+    private Path dir;
+    private Path csv;
+    private byte[] catalog;
+    private String input;
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, CATALOG, 0, MovieDataGenerator.DEFAULT_SEED);
+        catalog = Files.readAllBytes(csv);
+
+        List<String> rows = MovieDataGenerator.lines(CATALOG + ADDS, 0, MovieDataGenerator.DEFAULT_SEED + 1)
+                .subList(CATALOG, CATALOG + ADDS);
+        StringBuilder sb = new StringBuilder();
+        for (String row : rows) {
+            if (mode.equals("interactive")) {
+                sb.append("3\n").append(row.replace(',', '\n')).append('\n');
+            } else {
+                sb.append("add ").append(row).append('\n');
+            }
+        }
+        if (mode.equals("interactive")) sb.append("12\n");
+        input = sb.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCatalog() throws IOException {
+        Files.write(csv, catalog);
+        api = MovieApi.open(csv.toString(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ADDS)
+    public int add() {
+        if (mode.equals("interactive")) {
+            api.runInteractive(input);
+            return api.size();
+        }
+        return api.runBatch(input, Integer.parseInt(mode));
+    }
+}
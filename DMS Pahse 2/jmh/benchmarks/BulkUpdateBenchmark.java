@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Marking every movie of one director watched (about 20 of a 100K-row
+ * catalog), then unwatched again, with MovieManager.updateWhere and with one
+ * update per movie, on a CSV-backed and on a journaled catalog.
+ *
+ * A CSV-backed catalog rewrites the whole file for every update but only
+ * once for updateWhere; a journaled one appends (and flushes) a record per
+ * update but all records of updateWhere at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class BulkUpdateBenchmark {
+
+    private static final String DIRECTOR = "Director 42";
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"csv", "journal"})
+    public String storage;
+
+    @Param({"loop", "bulk"})
+    public String method;
+
+    private Path dir;
+    private MovieApi api;
+    private boolean watched;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = storage.equals("journal") ? MovieApi.openJournaled(csv.toString()) : MovieApi.open(csv.toString(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        api.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public int markWatched() {
+        watched = !watched; // after the first call, every call changes all of them
+        return api.markWatched(DIRECTOR, watched, method.equals("bulk"));
+    }
+}
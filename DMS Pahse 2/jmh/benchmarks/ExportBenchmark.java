@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MovieManager.export of a whole generated catalog: CSV and JSON Lines in id
+ * order, and CSV sorted by rating (descending), which spills sorted runs of
+ * positions to disk and merges them.
+ *
+ * Run with -prof gc: gc.alloc.rate.norm is the memory one export allocates,
+ * which should not grow with the number of rows. The 10M case needs a few
+ * GB of heap for the catalog itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ExportBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"csv", "jsonl", "csv-by-rating"})
+    public String mode;
+
+    private Path dir;
+    private Path target;
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        target = dir.resolve("export.out");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = MovieApi.open(csv.toString(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        api = null;
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public long export() {
+        return api.export(target.toString(), mode.equals("jsonl"), mode.equals("csv-by-rating"));
+    }
+}
@@ -0,0 +1,234 @@
+package benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test client for the HTTP API (MovieServer): a number of concurrent
+ * clients, each on its own keep-alive connection and thread, sending its next
+ * request as soon as the previous answer arrived, for a fixed time. Prints
+ * throughput, latency percentiles and errors.
+ *
+ * The mix is 85% GET /movies/{id}, 5% pages of 20, 4% searches, 4% scariness
+ * and 2% PUT /movies/{id}. Without a URL the server runs in this JVM over a
+ * generated catalog with a journal, so client and server share the CPUs;
+ * pass the URL of java Main --serve --journal to measure it alone.
+ *
+ * HTTP/1.1 is spoken directly over sockets: java.net.http.HttpClient costs
+ * more CPU per request than the server itself, so it cannot load it on a
+ * small machine. Not a JMH benchmark.
+ *
+ * Usage: java -cp target/benchmarks.jar benchmarks.LoadClient [clients] [seconds] [rows] [url]
+ */
+public final class LoadClient {
+
+    private static final String[] QUERIES = {"grave", "night%2012", "house%2099", "hauntng", "return%204"};
+
+    private final InetSocketAddress address;
+    private final int rows;
+    private final long deadline;
+    private final AtomicLong errors = new AtomicLong();
+    private final long[][] latencies; // per client, nanoseconds
+    private final int[] counts;
+
+    private LoadClient(InetSocketAddress address, int rows, int clients, int seconds) {
+        this.address = address;
+        this.rows = rows;
+        this.deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        this.latencies = new long[clients][1024];
+        this.counts = new int[clients];
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        String url = args.length > 3 ? args[3] : null;
+
+        MovieApi api = null;
+        Path dir = null;
+        if (url == null) {
+            dir = Files.createTempDirectory("movies-load");
+            Path csv = dir.resolve("movies.csv");
+            MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+            api = MovieApi.openJournaled(csv.toString());
+            url = "http://127.0.0.1:" + api.serve(0);
+        }
+
+        URI uri = URI.create(url);
+        LoadClient test = new LoadClient(new InetSocketAddress(uri.getHost(), uri.getPort()), rows, clients, seconds);
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            threads[c] = new Thread(() -> test.run(client), "load-client-" + c);
+            threads[c].setDaemon(true);
+            threads[c].start();
+        }
+        for (Thread t : threads) t.join();
+        test.report(clients, (System.nanoTime() - start) / 1e9);
+
+        if (api != null) {
+            api.close();
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    // One client: requests back to back until the deadline, reconnecting after errors
+    private void run(int client) {
+        SplittableRandom random = new SplittableRandom(client);
+        Socket socket = null;
+        InputStream in = null;
+        OutputStream out = null;
+        while (System.nanoTime() - deadline < 0) {
+            long start = System.nanoTime();
+            try {
+                if (socket == null) {
+                    socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address, 30_000);
+                    in = new BufferedInputStream(socket.getInputStream());
+                    out = new BufferedOutputStream(socket.getOutputStream(), 1024);
+                }
+                out.write(request(random));
+                out.flush();
+                if (!readResponse(in)) {
+                    socket.close();
+                    socket = null;
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                closeQuietly(socket);
+                socket = null;
+            }
+            record(client, System.nanoTime() - start);
+        }
+        closeQuietly(socket);
+    }
+
+    private byte[] request(SplittableRandom random) {
+        int kind = random.nextInt(100);
+        long id = 1 + random.nextInt(rows);
+        String path;
+        if (kind < 85) path = "/movies/" + id;
+        else if (kind < 90) path = "/movies?offset=" + random.nextInt(rows) + "&limit=20";
+        else if (kind < 94) path = "/search?q=" + QUERIES[random.nextInt(QUERIES.length)] + "&limit=20";
+        else if (kind < 98) path = "/movies/" + id + "/scariness";
+        else {
+            String body = "{\"title\":\"Load Test " + id + "\",\"year\":" + (1920 + random.nextInt(105))
+                    + ",\"director\":\"Director " + random.nextInt(5000) + "\",\"rating\":" + random.nextInt(101) / 10.0
+                    + ",\"runtimeMinutes\":" + (60 + random.nextInt(140)) + ",\"votes\":" + random.nextInt(2_000_000)
+                    + ",\"watched\":" + random.nextBoolean() + "}";
+            return ("PUT /movies/" + id + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+        }
+        return ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Reads one response; counts 4xx/5xx as errors. Returns whether the connection stays open
+    private boolean readResponse(InputStream in) throws IOException {
+        String status = readLine(in);
+        if (status.length() < 12) throw new IOException("Bad status line: " + status);
+        int code = Integer.parseInt(status.substring(9, 12));
+        if (code >= 400) errors.incrementAndGet();
+
+        long length = code == 204 ? 0 : -1;
+        boolean chunked = false, keepAlive = true;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String name = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-length")) length = Long.parseLong(value);
+            if (name.equals("transfer-encoding")) chunked = value.equalsIgnoreCase("chunked");
+            if (name.equals("connection")) keepAlive = !value.equalsIgnoreCase("close");
+        }
+        if (chunked) {
+            for (long size = Long.parseLong(readLine(in).trim(), 16); size > 0; size = Long.parseLong(readLine(in).trim(), 16)) {
+                skip(in, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else if (length >= 0) {
+            skip(in, length);
+        } else {
+            while (in.read() >= 0) { } // body until close
+            return false;
+        }
+        return keepAlive;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) throw new EOFException("Connection closed");
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException("Connection closed");
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+    }
+
+    // Each client only touches its own row
+    private void record(int client, long nanos) {
+        long[] own = latencies[client];
+        if (counts[client] == own.length) latencies[client] = own = Arrays.copyOf(own, own.length * 2);
+        own[counts[client]++] = nanos;
+    }
+
+    private void report(int clients, double seconds) {
+        int total = 0;
+        for (int n : counts) total += n;
+        long[] all = new long[total];
+        int pos = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, pos, counts[c]);
+            pos += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d requests in %.1f s: %.0f requests/s, %d errors%n",
+                clients, total, seconds, total / seconds, errors.get());
+        if (total > 0) {
+            System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n", percentile(all, 0.50) / 1e6,
+                    percentile(all, 0.90) / 1e6, percentile(all, 0.99) / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
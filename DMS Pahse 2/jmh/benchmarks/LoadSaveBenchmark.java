@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MovieManager.loadMovies and saveMovies on catalogs of 10K, 1M and 10M
+ * movies, for the CSV snapshot, the binary snapshot and the compressed
+ * snapshot. The setup prints the size of the snapshot next to the CSV file
+ * it was made from, for the compression ratio.
+ *
+ * Each operation takes seconds at the larger sizes, so every iteration is a
+ * single call (SingleShotTime). The 10M case needs a few GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadSaveBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"csv", "binary", "compressed"})
+    public String format;
+
+    private Path dir;
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        long csvBytes = Files.size(csv);
+        api = MovieApi.open(csv.toString(), format);
+        api.save(); // rewrite as a snapshot (ids, or the binary file) like a real catalog
+        Path snapshot = format.equals("csv") ? csv : dir.resolve(format.equals("binary") ? "movies.csv.bin" : "movies.csv.mvz");
+        System.out.printf("%n%s snapshot: %d bytes, CSV without ids: %d bytes (%.1f%%)%n",
+                format, Files.size(snapshot), csvBytes, 100.0 * Files.size(snapshot) / csvBytes);
+        api.load();
+        if (api.size() != rows) throw new IllegalStateException("Loaded " + api.size() + " of " + rows + " rows");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        api = null;
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public int load() {
+        api.load();
+        return api.size();
+    }
+
+    @Benchmark
+    public void save() {
+        api.save();
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Retained heap per movie row for each string storage mode of MovieManager,
+ * after a load of a generated catalog and after uploading the same rows into
+ * an empty one. Not a JMH benchmark: it measures live heap through class
+ * histograms (each one a full GC), so it takes a while at large sizes.
+ *
+ * Usage: java -Xmx3g -cp target/benchmarks.jar benchmarks.MemoryFootprint [rows]
+ */
+public final class MemoryFootprint {
+
+    private MemoryFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("movies-footprint");
+        Path csv = dir.resolve("movies.csv");
+        Path empty = dir.resolve("empty.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+
+        System.out.printf("%d rows, %d distinct directors at most%n", rows, 5000);
+        System.out.printf("%-36s | %12s | %12s%n", "Mode", "load B/row", "upload B/row");
+        report("plain strings", rows, csv, empty, false, false);
+        report("interned directors", rows, csv, empty, true, false);
+        report("interned directors + Latin-1 titles", rows, csv, empty, true, true);
+
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    private static void report(String mode, int rows, Path csv, Path empty,
+                               boolean internDirectors, boolean compactTitles) throws IOException {
+        long load = retained(rows, () -> MovieApi.open(csv.toString(), internDirectors, compactTitles));
+        Files.deleteIfExists(empty);
+        long upload = retained(rows, () -> {
+            MovieApi api = MovieApi.open(empty.toString(), internDirectors, compactTitles);
+            api.upload(csv.toString());
+            return api;
+        });
+        System.out.printf("%-36s | %12.1f | %12.1f%n", mode, load / (double) rows, upload / (double) rows);
+    }
+
+    // Heap retained by the manager the supplier builds; it is unreachable once this returns
+    private static long retained(int rows, Supplier<MovieApi> open) {
+        long base = usedHeap();
+        MovieApi api = open.get();
+        long used = usedHeap() - base;
+        if (api.size() != rows) throw new IllegalStateException("Got " + api.size() + " of " + rows + " rows");
+        return used;
+    }
+
+    /**
+     * Live heap bytes, summed from a class histogram (which runs a full GC
+     * first). int[] is left out: the JVM pads unused heap space with int[]
+     * filler objects that the histogram counts (megabytes that come and go
+     * between runs), and a row-mode catalog keeps no sizable int arrays.
+     */
+    private static long usedHeap() {
+        String histogram;
+        try {
+            histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                    new Object[] {new String[0]}, new String[] {String[].class.getName()});
+        } catch (JMException e) {
+            throw new IllegalStateException("Class histogram not available", e);
+        }
+        long bytes = 0;
+        for (String line : histogram.split("\n")) {
+            String[] fields = line.trim().split("\\s+"); // "num: instances bytes class"
+            if (fields.length < 4 || !fields[0].endsWith(":") || fields[3].equals("[I")) continue;
+            bytes += Long.parseLong(fields[2]);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+/**
+ * The application operations the benchmarks measure.
+ *
+ * JMH does not accept benchmarks in the unnamed package, and code in a
+ * named package cannot refer to the application classes (which live in the
+ * unnamed package). MovieApiImpl sits in the unnamed package of the same
+ * source root and is loaded by name, so each call is one interface call.
+ */
+public interface MovieApi {
+
+    /**
+     * A manager for the CSV file at path (loaded right away), or for
+     * path.bin when binary is true.
+     */
+    static MovieApi open(String path, boolean binary) {
+        return open(path, binary ? "binary" : "csv");
+    }
+
+    /**
+     * A manager whose snapshots are "csv" (the file at path), "binary"
+     * (path.bin), "compressed" (path.mvz) or "partitioned" (path.parts).
+     */
+    static MovieApi open(String path, String snapshot) {
+        try {
+            return (MovieApi) Class.forName("MovieApiImpl")
+                    .getConstructor(String.class, String.class)
+                    .newInstance(path, snapshot);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MovieApiImpl is missing from the benchmark jar", e);
+        }
+    }
+
+    /**
+     * A CSV-backed manager with the given string storage options
+     * (MovieManager.Options.internDirectors and compactTitles).
+     */
+    static MovieApi open(String path, boolean internDirectors, boolean compactTitles) {
+        try {
+            return (MovieApi) Class.forName("MovieApiImpl")
+                    .getConstructor(String.class, boolean.class, boolean.class)
+                    .newInstance(path, internDirectors, compactTitles);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MovieApiImpl is missing from the benchmark jar", e);
+        }
+    }
+
+    /**
+     * A CSV-backed manager that logs changes to a journal
+     * (MovieManager.Options.journaled), as a server would run.
+     */
+    static MovieApi openJournaled(String path) {
+        try {
+            return (MovieApi) Class.forName("MovieApiImpl")
+                    .getMethod("openJournaled", String.class)
+                    .invoke(null, path);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MovieApiImpl is missing from the benchmark jar", e);
+        }
+    }
+
+    // Movie.fromCSV
+    Object parse(String csvLine);
+
+    // MovieManager.loadMovies
+    void load();
+
+    // MovieManager.saveMovies
+    void save();
+
+    // MovieManager.uploadCSV; returns the number of inserted movies
+    int upload(String csvPath);
+
+    // MovieManager.export of the whole catalog, as JSON Lines or CSV, optionally by rating (descending)
+    long export(String path, boolean jsonLines, boolean byRating);
+
+    // MovieManager.findByYearRange; returns the number of matches
+    int yearRange(int fromYear, int toYear);
+
+    // MovieManager.update of one movie with one more vote (saved like any edit)
+    void addVote(long id);
+
+    // Sets watched on every movie of director, with updateWhere (bulk) or one update per movie; returns the count
+    int markWatched(String director, boolean watched, boolean bulk);
+
+    // MovieManager.searchTitles; returns the number of matches
+    int search(String query, int limit);
+
+    // MovieManager.sorted by a MovieOrder.parse spec; returns the id of the first movie
+    long sorted(String order);
+
+    // A copy of the catalog (getAll) sorted with List.sort; returns the id of the first movie
+    long listSort(String order);
+
+    // MovieManager.top; returns the id of the first movie
+    long top(String order, int k);
+
+    // MovieCLI.run with input as the keyboard and the output discarded
+    void runInteractive(String input);
+
+    // MovieBatch.run over script; returns the number of failed commands
+    int runBatch(String script, int commitEvery);
+
+    // Starts a MovieServer on 127.0.0.1:port (0 = any free port); returns the port
+    int serve(int port);
+
+    // Stops the server and closes the manager
+    void close();
+
+    // Sum of Movie.getScariness over the catalog
+    double totalScariness();
+
+    int size();
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic movie data in the upload CSV format
+ * (title,year,director,rating,runtimeMinutes,votes,watched).
+ *
+ * The same (rows, errorRatio, seed) always produces the same file. Directors
+ * come from a pool of 5000 names, ratings have one decimal, and roughly
+ * errorRatio of the rows are broken in one of several ways Movie.fromCSV
+ * rejects (bad year, rating out of range, missing field, text in a number).
+ *
+ * Usage: java -cp target/benchmarks.jar benchmarks.MovieDataGenerator rows file [errorRatio] [seed]
+ */
+public final class MovieDataGenerator {
+
+    public static final long DEFAULT_SEED = 20251016L;
+
+    private static final String[] WORDS = {
+            "Night", "House", "Dead", "Blood", "Dark", "Return", "Curse", "Shadow", "Evil", "Silent",
+            "Hill", "Lake", "Witch", "Ghost", "Scream", "Fear", "Haunting", "Terror", "Grave", "Moon"
+    };
+    private static final String[] WATCHED = {"true", "false", "yes", "no"};
+
+    private MovieDataGenerator() {
+    }
+
+    public static void write(Path file, int rows, double errorRatio, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder(96);
+        try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\n");
+            for (int i = 0; i < rows; i++) {
+                sb.setLength(0);
+                row(sb, i, random, errorRatio);
+                bw.append(sb).append('\n');
+            }
+        }
+    }
+
+    /**
+     * The lines write() would produce for the same arguments, without the header.
+     */
+    public static List<String> lines(int rows, double errorRatio, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> lines = new ArrayList<>(rows);
+        StringBuilder sb = new StringBuilder(96);
+        for (int i = 0; i < rows; i++) {
+            sb.setLength(0);
+            row(sb, i, random, errorRatio);
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    private static void row(StringBuilder sb, int i, SplittableRandom random, double errorRatio) {
+        int year = 1920 + random.nextInt(105);
+        int tenths = random.nextInt(101);
+        int runtime = 60 + random.nextInt(140);
+        int votes = random.nextInt(2_000_000);
+        String director = "Director " + random.nextInt(5000);
+        String watched = WATCHED[random.nextInt(WATCHED.length)];
+        int broken = random.nextDouble() < errorRatio ? random.nextInt(4) : -1;
+
+        sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+                .append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(i).append(',');
+        if (broken == 0) sb.append(year + 1000); else sb.append(year);
+        sb.append(',').append(director).append(',');
+        if (broken == 1) sb.append("11.5"); else sb.append(tenths / 10).append('.').append(tenths % 10);
+        sb.append(',').append(runtime).append(',');
+        if (broken == 2) sb.append("many"); else sb.append(votes);
+        if (broken != 3) sb.append(',').append(watched); // 3: missing field
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: MovieDataGenerator rows file [errorRatio] [seed]");
+            return;
+        }
+        int rows = Integer.parseInt(args[0]);
+        double errorRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        write(Paths.get(args[1]), rows, errorRatio, seed);
+        System.out.println("Wrote " + rows + " rows to " + args[1]);
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Movie.fromCSV throughput on valid rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final int LINES = 4096; // power of two, see next()
+
+    private MovieApi api;
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        api = MovieApi.open("parse-benchmark-unused.csv", false);
+        List<String> generated = MovieDataGenerator.lines(LINES, 0, MovieDataGenerator.DEFAULT_SEED);
+        lines = generated.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Object fromCSV() {
+        return api.parse(lines[next++ & (LINES - 1)]);
+    }
+}
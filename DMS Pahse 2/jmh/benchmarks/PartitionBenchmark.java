@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Year-scoped work on a 1M-row catalog stored flat (one CSV file) and
+ * partitioned by decade (MovieManager.Options.partitioned).
+ *
+ * openAndQueryDecade opens the catalog and lists one decade, which is all a
+ * partitioned catalog has to read. editAndSave changes one movie; every
+ * edit is saved before update returns, so this is a whole-file rewrite in
+ * the flat layout and a one-segment rewrite in the partitioned one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PartitionBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"flat", "partitioned"})
+    public String layout;
+
+    private Path dir;
+    private Path csv;
+    private MovieApi api;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = MovieApi.open(csv.toString(), layout.equals("flat") ? "csv" : layout);
+        api.save(); // the snapshot with ids, or every segment
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        api = null;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public int openAndQueryDecade() {
+        return MovieApi.open(csv.toString(), layout.equals("flat") ? "csv" : layout).yearRange(1980, 1989);
+    }
+
+    @Benchmark
+    public void editAndSave() {
+        api.addVote(1 + id++ % rows);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Movie.getScariness summed over the whole catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ScarinessBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = MovieApi.open(csv.toString(), false);
+        Files.delete(csv);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public double totalScariness() {
+        return api.totalScariness();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MovieManager.searchTitles over a generated catalog, first 20 matches.
+ *
+ * Generated titles are two of 20 words and a row number ("Grave Return 17"),
+ * so word queries match a large share of the catalog while number queries
+ * are selective; real titles fall somewhere in between. The index is built
+ * in the setup, not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class SearchBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    // prefix, substring, typo in a word, typo in a number
+    @Param({"lake house 1234", "return 99", "hauntng", "grave return 12e45"})
+    public String query;
+
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = MovieApi.open(csv.toString(), false);
+        api.search("warm up", 1); // builds the index
+        Files.delete(csv);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public int search() {
+        return api.search(query, 20);
+    }
+}
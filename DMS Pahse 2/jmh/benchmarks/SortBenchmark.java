@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Ordering a 1M-row catalog by two keys (rating desc, votes desc).
+ *
+ * listSort is what callers did before MovieManager.sorted: copy getAll() and
+ * sort the movies with a comparator. sorted sorts primitive key columns on
+ * the common pool, and top finds the best 10 with a bounded heap, which is
+ * what a top-N list used to take a full sort for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class SortBenchmark {
+
+    private static final String ORDER = "rating desc, votes desc";
+
+    @Param({"1000000"})
+    public int rows;
+
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("movies-bench");
+        Path csv = dir.resolve("movies.csv");
+        MovieDataGenerator.write(csv, rows, 0, MovieDataGenerator.DEFAULT_SEED);
+        api = MovieApi.open(csv.toString(), false);
+        Files.delete(csv);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public long listSort() {
+        return api.listSort(ORDER);
+    }
+
+    @Benchmark
+    public long sorted() {
+        return api.sorted(ORDER);
+    }
+
+    @Benchmark
+    public long top() {
+        return api.top(ORDER, 10);
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MovieManager.uploadCSV of 100K rows into an empty catalog, with 0% to 50%
+ * invalid rows. Includes the save that follows the upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class UploadBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"0.0", "0.01", "0.1", "0.5"})
+    public double errorRatio;
+
+    private Path dir;
+    private Path upload;
+    private Path catalog;
+    private MovieApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("movies-bench");
+        upload = dir.resolve("upload.csv");
+        catalog = dir.resolve("movies.csv");
+        MovieDataGenerator.write(upload, ROWS, errorRatio, MovieDataGenerator.DEFAULT_SEED);
+    }
+
+    // A fresh, empty catalog for every upload (operations take far longer than the setup overhead)
+    @Setup(Level.Invocation)
+    public void emptyCatalog() throws IOException {
+        Files.deleteIfExists(catalog);
+        api = MovieApi.open(catalog.toString(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(catalog);
+        Files.deleteIfExists(dir.resolve("movies.csv.tmp"));
+        Files.deleteIfExists(upload);
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public int upload() {
+        return api.upload(upload.toString());
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot format used by MovieManager in binary mode.
+ *
+ * Layout (big-endian):
+ *
+ *   int    magic "MVDB"
+ *   int    format version (1)
+ *   int    journal generation
+ *   long   next id
+ *   int    director count, then per director: int length + UTF-8 bytes
+ *   int    row count, then per row:
+ *          long id, int year, int runtime, int votes, double rating,
+ *          byte watched, int director code, int title length + UTF-8 bytes
+ *   int    CRC32 of everything above
+ *
+ * Numbers are stored as-is, so loading does no text parsing at all, and
+ * every director string is decoded once and shared by its rows.
+ */
+public class BinarySnapshot {
+
+    public static final int MAGIC = 0x4D564442; // "MVDB"
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * The header fields of a snapshot that was read.
+     */
+    public static class Header {
+        public final int generation;
+        public final long nextId;
+        public final int rows;
+
+        public Header(int generation, long nextId, int rows) {
+            this.generation = generation;
+            this.nextId = nextId;
+            this.rows = rows;
+        }
+    }
+
+    // ---------------- Writing ----------------
+
+    public static void write(Path path, List<Movie> rows, int generation, long nextId, boolean fsync) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> directors = new ArrayList<>();
+        int[] directorOf = new int[rows.size()];
+        for (int i = 0; i < directorOf.length; i++) {
+            String d = rows.get(i).getDirector();
+            Integer code = codes.get(d);
+            if (code == null) {
+                code = directors.size();
+                codes.put(d, code);
+                directors.add(d);
+            }
+            directorOf[i] = code;
+        }
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(ch);
+            out.need(24);
+            out.buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(generation).putLong(nextId);
+            out.buf.putInt(directors.size());
+            for (String d : directors) out.string(d);
+
+            out.need(4);
+            out.buf.putInt(rows.size());
+            for (int i = 0; i < directorOf.length; i++) {
+                Movie m = rows.get(i);
+                out.need(37);
+                out.buf.putLong(m.getId())
+                        .putInt(m.getYear())
+                        .putInt(m.getRuntimeMinutes())
+                        .putInt(m.getVotes())
+                        .putDouble(m.getRating())
+                        .put((byte) (m.isWatched() ? 1 : 0))
+                        .putInt(directorOf[i]);
+                out.string(m.getTitle());
+            }
+            int crc = out.checksum();
+            out.need(4);
+            out.buf.putInt(crc);
+            out.flush();
+            if (fsync) ch.force(true);
+        }
+    }
+
+    private static final class Output {
+        final FileChannel ch;
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        final CRC32 crc = new CRC32();
+        int checkedTo; // bytes of buf already added to crc
+
+        Output(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void need(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            flush();
+            if (buf.capacity() < n) buf = ByteBuffer.allocate(n);
+        }
+
+        void string(String s) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            need(4 + b.length);
+            buf.putInt(b.length).put(b);
+        }
+
+        int checksum() {
+            crc.update(buf.array(), checkedTo, buf.position() - checkedTo);
+            checkedTo = buf.position();
+            return (int) crc.getValue();
+        }
+
+        void flush() throws IOException {
+            checksum();
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+            checkedTo = 0;
+        }
+    }
+
+    // ---------------- Reading ----------------
+
+    /**
+     * Streams the rows of a snapshot into the sink. Throws if the file is
+     * not a snapshot of a supported version, is truncated, or fails its
+     * checksum; the checksum is only known at the end, so the caller must
+     * discard the rows it received in that case.
+     */
+    public static Header read(Path path, MappedCsvLoader.Sink sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            Input in = new Input(ch);
+            in.need(24);
+            if (in.buf.getInt() != MAGIC) throw new IOException("Not a movie snapshot: " + path);
+            int format = in.buf.getInt();
+            if (format != FORMAT_VERSION) throw new IOException("Unsupported snapshot format version " + format);
+            int generation = in.buf.getInt();
+            long nextId = in.buf.getLong();
+
+            int directorCount = in.count(in.buf.getInt());
+            String[] directors = new String[directorCount];
+            for (int i = 0; i < directorCount; i++) directors[i] = in.string();
+
+            in.need(4);
+            int rows = in.count(in.buf.getInt());
+            for (int i = 0; i < rows; i++) {
+                in.need(37);
+                long id = in.buf.getLong();
+                int year = in.buf.getInt();
+                int runtime = in.buf.getInt();
+                int votes = in.buf.getInt();
+                double rating = in.buf.getDouble();
+                boolean watched = in.buf.get() != 0;
+                int director = in.buf.getInt();
+                if (director < 0 || director >= directorCount) throw new IOException("Corrupt snapshot: bad director code " + director);
+                sink.row(id, in.string(), year, directors[director], rating, runtime, votes, watched);
+            }
+
+            int expected = in.checksum();
+            in.need(4);
+            if (in.buf.getInt() != expected) throw new IOException("Snapshot checksum mismatch: " + path);
+            return new Header(generation, nextId, rows);
+        }
+    }
+
+    private static final class Input {
+        final FileChannel ch;
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        final CRC32 crc = new CRC32();
+        int checkedTo; // bytes of buf already added to crc
+
+        Input(FileChannel ch) {
+            this.ch = ch;
+            buf.limit(0);
+        }
+
+        // Makes at least n bytes readable, refilling (and growing) the buffer
+        void need(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            checksum();
+            if (buf.capacity() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(n);
+                bigger.put(buf);
+                buf = bigger;
+            } else {
+                buf.compact();
+            }
+            while (buf.position() < n) {
+                if (ch.read(buf) < 0) throw new EOFException("Snapshot is truncated");
+            }
+            buf.flip();
+            checkedTo = 0;
+        }
+
+        String string() throws IOException {
+            need(4);
+            int len = count(buf.getInt());
+            need(len);
+            String s = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            return s;
+        }
+
+        int count(int n) throws IOException {
+            if (n < 0) throw new IOException("Corrupt snapshot: negative length " + n);
+            return n;
+        }
+
+        int checksum() {
+            crc.update(buf.array(), checkedTo, buf.position() - checkedTo);
+            checkedTo = buf.position();
+            return (int) crc.getValue();
+        }
+    }
+}
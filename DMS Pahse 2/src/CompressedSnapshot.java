@@ -0,0 +1,490 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed snapshot format used by MovieManager in compressed mode.
+ *
+ * The rows are cut into blocks of BLOCK_ROWS movies, and every block is
+ * deflated on its own, so blocks can be compressed and decompressed in
+ * parallel, and a single movie can be read by inflating just its block.
+ *
+ * Layout (big-endian):
+ *
+ *   int    magic "MVDZ"
+ *   int    format version (1)
+ *   int    journal generation
+ *   long   next id
+ *   int    rows per block
+ *   blocks, each a separate deflate stream
+ *   int    block count, then per block (the block index):
+ *          long offset, int compressed length, int raw length, int rows,
+ *          long first id, long last id, int CRC32 of the raw block
+ *   long   offset of the block index
+ *   int    CRC32 of the block index
+ *   int    magic "MVDZ"
+ *
+ * A raw block stores its rows column by column, which is what makes it
+ * compress well: int row count, int director count, then per director int
+ * length + UTF-8 bytes; long id deltas; int years, runtimes and votes;
+ * long rating bits; byte watched flags; int director codes; int title
+ * lengths, then all title bytes (UTF-8).
+ */
+public class CompressedSnapshot {
+
+    public static final int MAGIC = 0x4D56445A; // "MVDZ"
+    public static final int FORMAT_VERSION = 1;
+    public static final int BLOCK_ROWS = 1024;
+
+    private static final int HEADER_BYTES = 24;
+    private static final int INDEX_ENTRY_BYTES = 40;
+    private static final int TRAILER_BYTES = 16;
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    // ---------------- Writing ----------------
+
+    public static void write(Path path, List<Movie> rows, int generation, long nextId, boolean fsync) throws IOException {
+        write(path, rows, generation, nextId, fsync, BLOCK_ROWS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compresses the blocks on the pool, a few ahead of the one being
+     * written, so memory holds only that window and not the whole file.
+     */
+    static void write(Path path, List<Movie> rows, int generation, long nextId, boolean fsync,
+                      int blockRows, ForkJoinPool pool) throws IOException {
+        int blocks = (rows.size() + blockRows - 1) / blockRows;
+        ByteBuffer index = ByteBuffer.allocate(4 + blocks * INDEX_ENTRY_BYTES).putInt(blocks);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(generation).putLong(nextId).putInt(blockRows);
+            writeFully(ch, header.flip());
+
+            long offset = HEADER_BYTES;
+            int window = 2 * pool.getParallelism();
+            ArrayDeque<ForkJoinTask<Compressed>> pending = new ArrayDeque<>();
+            for (int b = 0, next = 0; b < blocks; b++) {
+                for (; next < blocks && pending.size() < window; next++) {
+                    int from = next * blockRows, to = Math.min(from + blockRows, rows.size());
+                    pending.add(pool.submit(() -> compress(rows, from, to)));
+                }
+                Compressed block = pending.poll().join();
+                index.putLong(offset).putInt(block.data.length).putInt(block.rawLength).putInt(block.rows)
+                        .putLong(block.firstId).putLong(block.lastId).putInt(block.crc);
+                writeFully(ch, ByteBuffer.wrap(block.data));
+                offset += block.data.length;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(index.array(), 0, index.position());
+            writeFully(ch, index.flip());
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            trailer.putLong(offset).putInt((int) crc.getValue()).putInt(MAGIC);
+            writeFully(ch, trailer.flip());
+            if (fsync) ch.force(true);
+        }
+    }
+
+    // One block, ready to be written
+    private static final class Compressed {
+        byte[] data;
+        int rawLength;
+        int rows;
+        long firstId;
+        long lastId;
+        int crc;
+    }
+
+    private static Compressed compress(List<Movie> rows, int from, int to) {
+        int n = to - from;
+        Map<String, Integer> codes = new HashMap<>();
+        byte[][] directors = new byte[n][];
+        int directorCount = 0;
+        int[] directorOf = new int[n];
+        byte[][] titles = new byte[n][];
+        int size = 8 + n * (8 + 4 + 4 + 4 + 8 + 1 + 4 + 4);
+        for (int i = 0; i < n; i++) {
+            Movie m = rows.get(from + i);
+            Integer code = codes.get(m.getDirector());
+            if (code == null) {
+                code = directorCount;
+                codes.put(m.getDirector(), code);
+                directors[directorCount++] = m.getDirector().getBytes(StandardCharsets.UTF_8);
+                size += 4 + directors[code].length;
+            }
+            directorOf[i] = code;
+            titles[i] = m.getTitle().getBytes(StandardCharsets.UTF_8);
+            size += titles[i].length;
+        }
+
+        ByteBuffer raw = ByteBuffer.allocate(size);
+        raw.putInt(n).putInt(directorCount);
+        for (int d = 0; d < directorCount; d++) raw.putInt(directors[d].length).put(directors[d]);
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            long id = rows.get(from + i).getId();
+            raw.putLong(id - previous);
+            previous = id;
+        }
+        for (int i = 0; i < n; i++) raw.putInt(rows.get(from + i).getYear());
+        for (int i = 0; i < n; i++) raw.putInt(rows.get(from + i).getRuntimeMinutes());
+        for (int i = 0; i < n; i++) raw.putInt(rows.get(from + i).getVotes());
+        for (int i = 0; i < n; i++) raw.putLong(Double.doubleToLongBits(rows.get(from + i).getRating()));
+        for (int i = 0; i < n; i++) raw.put((byte) (rows.get(from + i).isWatched() ? 1 : 0));
+        for (int i = 0; i < n; i++) raw.putInt(directorOf[i]);
+        for (int i = 0; i < n; i++) raw.putInt(titles[i].length);
+        for (int i = 0; i < n; i++) raw.put(titles[i]);
+
+        Compressed block = new Compressed();
+        block.rawLength = size;
+        block.rows = n;
+        block.firstId = rows.get(from).getId();
+        block.lastId = previous;
+        CRC32 crc = new CRC32();
+        crc.update(raw.array(), 0, size);
+        block.crc = (int) crc.getValue();
+
+        Deflater deflater = new Deflater(LEVEL);
+        try {
+            deflater.setInput(raw.array(), 0, size);
+            deflater.finish();
+            byte[] out = new byte[size / 2 + 64];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == out.length) out = Arrays.copyOf(out, out.length * 2);
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            block.data = Arrays.copyOf(out, len);
+        } finally {
+            deflater.end();
+        }
+        return block;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    // ---------------- Reading ----------------
+
+    /**
+     * Streams the rows of a snapshot into the sink, in order. Blocks are
+     * inflated and decoded on the common fork-join pool, a few ahead of the
+     * one being handed to the sink. Throws if the file is not a snapshot of
+     * a supported version, is truncated, or a block fails its checksum; the
+     * caller must then discard the rows it already received.
+     */
+    public static BinarySnapshot.Header read(Path path, MappedCsvLoader.Sink sink) throws IOException {
+        return read(path, sink, ForkJoinPool.commonPool());
+    }
+
+    static BinarySnapshot.Header read(Path path, MappedCsvLoader.Sink sink, ForkJoinPool pool) throws IOException {
+        try (Reader reader = Reader.open(path)) {
+            Entry[] blocks = reader.blocks;
+            int window = 2 * pool.getParallelism();
+            ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+            int rows = 0;
+            try {
+                for (int b = 0, next = 0; b < blocks.length; b++) {
+                    for (; next < blocks.length && pending.size() < window; next++) {
+                        Entry e = blocks[next];
+                        pending.add(pool.submit(() -> reader.decode(e)));
+                    }
+                    Block block = pending.poll().join();
+                    for (int i = 0; i < block.ids.length; i++) {
+                        sink.row(block.ids[i], block.titles[i], block.years[i], block.directors[i], block.ratings[i],
+                                block.runtimes[i], block.votes[i], block.watched[i]);
+                    }
+                    rows += block.ids.length;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (ForkJoinTask<Block> task : pending) task.cancel(false);
+            }
+            return new BinarySnapshot.Header(reader.generation, reader.nextId, rows);
+        }
+    }
+
+    // One decoded block, column by column
+    private static final class Block {
+        long[] ids;
+        String[] titles;
+        int[] years;
+        String[] directors; // per row, shared within the block
+        double[] ratings;
+        int[] runtimes;
+        int[] votes;
+        boolean[] watched;
+    }
+
+    // A block index entry
+    private static final class Entry {
+        long offset;
+        int compressedLength;
+        int rawLength;
+        int rows;
+        long firstId;
+        long lastId;
+        int crc;
+    }
+
+    /**
+     * Random access to a snapshot file: get(id) finds the block from the
+     * index, inflates only that block and decodes only the row asked for.
+     * The last block inflated is kept, so lookups of nearby ids cost no more
+     * inflating. Safe for one thread at a time.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel ch;
+        private final Entry[] blocks;
+        private final int generation;
+        private final long nextId;
+        private int cachedBlock = -1;
+        private ByteBuffer cached;
+        private int blocksRead;
+
+        private Reader(FileChannel ch, Entry[] blocks, int generation, long nextId) {
+            this.ch = ch;
+            this.blocks = blocks;
+            this.generation = generation;
+            this.nextId = nextId;
+        }
+
+        public static Reader open(Path path) throws IOException {
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = ch.size();
+                if (size < HEADER_BYTES + 4 + TRAILER_BYTES) throw new EOFException("Snapshot is truncated");
+                ByteBuffer header = readAt(ch, 0, HEADER_BYTES);
+                if (header.getInt() != MAGIC) throw new IOException("Not a compressed movie snapshot: " + path);
+                int format = header.getInt();
+                if (format != FORMAT_VERSION) throw new IOException("Unsupported snapshot format version " + format);
+                int generation = header.getInt();
+                long nextId = header.getLong();
+
+                ByteBuffer trailer = readAt(ch, size - TRAILER_BYTES, TRAILER_BYTES);
+                long indexOffset = trailer.getLong();
+                int indexCrc = trailer.getInt();
+                if (trailer.getInt() != MAGIC || indexOffset < HEADER_BYTES || indexOffset > size - TRAILER_BYTES - 4) {
+                    throw new IOException("Snapshot is truncated or has no block index: " + path);
+                }
+                ByteBuffer index = readAt(ch, indexOffset, (int) (size - TRAILER_BYTES - indexOffset));
+                CRC32 crc = new CRC32();
+                crc.update(index.array());
+                if ((int) crc.getValue() != indexCrc) throw new IOException("Snapshot block index checksum mismatch: " + path);
+
+                int count = index.getInt();
+                if (count < 0 || index.remaining() != (long) count * INDEX_ENTRY_BYTES) {
+                    throw new IOException("Corrupt snapshot: bad block count " + count);
+                }
+                Entry[] blocks = new Entry[count];
+                for (int b = 0; b < count; b++) {
+                    Entry e = new Entry();
+                    e.offset = index.getLong();
+                    e.compressedLength = index.getInt();
+                    e.rawLength = index.getInt();
+                    e.rows = index.getInt();
+                    e.firstId = index.getLong();
+                    e.lastId = index.getLong();
+                    e.crc = index.getInt();
+                    if (e.offset < HEADER_BYTES || e.compressedLength < 0 || e.offset + e.compressedLength > indexOffset
+                            || e.rawLength < 8 || e.rows <= 0) {
+                        throw new IOException("Corrupt snapshot: bad index entry for block " + b);
+                    }
+                    blocks[b] = e;
+                }
+                return new Reader(ch, blocks, generation, nextId);
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+        }
+
+        // The movie with this id, or null if the snapshot has none
+        public Movie get(long id) throws IOException {
+            int lo = 0, hi = blocks.length - 1;
+            while (lo <= hi) { // first block whose last id is >= id
+                int mid = (lo + hi) >>> 1;
+                if (blocks[mid].lastId < id) lo = mid + 1; else hi = mid - 1;
+            }
+            if (lo == blocks.length || blocks[lo].firstId > id) return null;
+            if (cachedBlock != lo) {
+                cachedBlock = -1;
+                cached = ByteBuffer.wrap(inflate(blocks[lo]));
+                cachedBlock = lo;
+                blocksRead++;
+            }
+            try {
+                return row(cached, blocks[lo].rows, id);
+            } catch (RuntimeException ex) { // a length that runs past the block
+                throw new IOException("Corrupt snapshot block at " + blocks[lo].offset + ": " + ex);
+            }
+        }
+
+        public int rows() {
+            int rows = 0;
+            for (Entry e : blocks) rows += e.rows;
+            return rows;
+        }
+
+        public int blockCount() {
+            return blocks.length;
+        }
+
+        // Blocks inflated by get so far
+        public int blocksRead() {
+            return blocksRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+
+        // Reads, inflates, checks and decodes one block; IOExceptions come out unchecked (fork-join tasks)
+        private Block decode(Entry e) {
+            try {
+                return parse(ByteBuffer.wrap(inflate(e)), e);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        // The raw bytes of one block, checked against the index
+        private byte[] inflate(Entry e) throws IOException {
+            ByteBuffer data = readAt(ch, e.offset, e.compressedLength);
+            byte[] raw = new byte[e.rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data.array());
+                int len = 0;
+                while (len < raw.length) {
+                    int n = inflater.inflate(raw, len, raw.length - len);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                    len += n;
+                }
+                if (len != raw.length || !inflater.finished()) throw new IOException("Corrupt snapshot block at " + e.offset);
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupt snapshot block at " + e.offset + ": " + ex.getMessage());
+            } finally {
+                inflater.end();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            if ((int) crc.getValue() != e.crc) throw new IOException("Snapshot checksum mismatch in block at " + e.offset);
+            if (ByteBuffer.wrap(raw).getInt() != e.rows) throw new IOException("Corrupt snapshot: bad row count in block at " + e.offset);
+            return raw;
+        }
+    }
+
+    /**
+     * Decodes the row with this id straight from a raw block, or returns
+     * null. Every column has a fixed width except the titles, so only the
+     * ids and the title lengths before the row are scanned.
+     */
+    private static Movie row(ByteBuffer raw, int n, long id) {
+        int p = 8;
+        int[] directorAt = new int[raw.getInt(4)];
+        for (int d = 0; d < directorAt.length; d++) {
+            directorAt[d] = p;
+            p += 4 + raw.getInt(p);
+        }
+        int ids = p;
+        long current = 0;
+        int i = 0;
+        for (; i < n; i++) {
+            current += raw.getLong(ids + 8 * i);
+            if (current >= id) break;
+        }
+        if (i == n || current != id) return null;
+
+        int lengths = ids + 33 * n, title = ids + 37 * n;
+        for (int k = 0; k < i; k++) title += raw.getInt(lengths + 4 * k);
+        int director = directorAt[raw.getInt(ids + 29 * n + 4 * i)];
+        Movie m = new Movie(
+                new String(raw.array(), title, raw.getInt(lengths + 4 * i), StandardCharsets.UTF_8),
+                raw.getInt(ids + 8 * n + 4 * i),
+                new String(raw.array(), director + 4, raw.getInt(director), StandardCharsets.UTF_8),
+                Double.longBitsToDouble(raw.getLong(ids + 20 * n + 8 * i)),
+                raw.getInt(ids + 12 * n + 4 * i),
+                raw.getInt(ids + 16 * n + 4 * i),
+                raw.get(ids + 28 * n + i) != 0);
+        m.setId(id);
+        return m;
+    }
+
+    private static Block parse(ByteBuffer raw, Entry e) throws IOException {
+        try {
+            int n = raw.getInt();
+            if (n != e.rows) throw new IOException("Corrupt snapshot: block at " + e.offset + " has " + n + " rows");
+            int directorCount = raw.getInt();
+            if (directorCount < 0 || directorCount > n) throw new IOException("Corrupt snapshot: bad director count " + directorCount);
+            String[] directors = new String[directorCount];
+            for (int d = 0; d < directorCount; d++) directors[d] = string(raw, raw.getInt());
+
+            Block block = new Block();
+            block.ids = new long[n];
+            long id = 0;
+            for (int i = 0; i < n; i++) block.ids[i] = id += raw.getLong();
+            block.years = ints(raw, n);
+            block.runtimes = ints(raw, n);
+            block.votes = ints(raw, n);
+            block.ratings = new double[n];
+            for (int i = 0; i < n; i++) block.ratings[i] = Double.longBitsToDouble(raw.getLong());
+            block.watched = new boolean[n];
+            for (int i = 0; i < n; i++) block.watched[i] = raw.get() != 0;
+            block.directors = new String[n];
+            for (int i = 0; i < n; i++) {
+                int code = raw.getInt();
+                if (code < 0 || code >= directorCount) throw new IOException("Corrupt snapshot: bad director code " + code);
+                block.directors[i] = directors[code];
+            }
+            int[] titleLengths = ints(raw, n);
+            block.titles = new String[n];
+            for (int i = 0; i < n; i++) block.titles[i] = string(raw, titleLengths[i]);
+            return block;
+        } catch (RuntimeException ex) { // a length that runs past the block
+            throw new IOException("Corrupt snapshot block at " + e.offset + ": " + ex);
+        }
+    }
+
+    private static int[] ints(ByteBuffer raw, int n) {
+        int[] values = new int[n];
+        raw.asIntBuffer().get(values);
+        raw.position(raw.position() + 4 * n);
+        return values;
+    }
+
+    private static String string(ByteBuffer raw, int len) {
+        String s = new String(raw.array(), raw.position(), len, StandardCharsets.UTF_8);
+        raw.position(raw.position() + len);
+        return s;
+    }
+
+    private static ByteBuffer readAt(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException("Snapshot is truncated");
+        }
+        return buf.flip();
+    }
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Background writer used by MovieManager in async-save mode.
+ *
+ * Mutations only register the catalog version they produced. A single
+ * writer thread waits until the oldest pending change is commitWindowMillis
+ * old (or commitBatchSize changes are pending), then writes the current
+ * state once, so every change that arrived in the window shares one write
+ * (group commit). Callers that need to know a change is on disk wait on the
+ * future returned by submit(), which completes once a commit covering that
+ * version has finished.
+ */
+public class GroupCommitWriter {
+
+    /**
+     * How much a completed future promises.
+     */
+    public enum Durability {
+        // Written to the OS (temp file + rename), never fsynced
+        NONE,
+        // Grouped commits, each one fsynced before its futures complete
+        BATCH,
+        // No commit window: every commit starts right away and is fsynced
+        FSYNC
+    }
+
+    /**
+     * Writes the current state and returns the version it contains.
+     */
+    public interface Committer {
+        long commit(boolean fsync) throws IOException;
+    }
+
+    private static class Waiter {
+        final long version;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(long version) {
+            this.version = version;
+        }
+    }
+
+    private final Committer committer;
+    private final Durability durability;
+    private final long windowMillis;
+    private final int batchSize;
+    private final Thread thread;
+
+    // Guarded by this
+    private final List<Waiter> waiters = new ArrayList<>();
+    private long requested;        // newest version that has to be written
+    private long committed;        // newest version known to be written
+    private long firstPendingAt;   // System.nanoTime() of the oldest unwritten change
+    private int pendingChanges;
+    private boolean closed;
+    private Exception lastFailure;  // set while the newest commit attempt has failed
+
+    // Statistics
+    private long commits;
+    private long coalesced;
+
+    public GroupCommitWriter(String name, Committer committer, Durability durability,
+                             long windowMillis, int batchSize) {
+        this.committer = committer;
+        this.durability = durability;
+        this.windowMillis = durability == Durability.FSYNC ? 0 : windowMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a change that produced the given version. The future
+     * completes once that version has been committed.
+     */
+    public synchronized CompletableFuture<Void> submit(long version) {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (version > requested && version > committed) {
+            if (pendingChanges == 0) firstPendingAt = System.nanoTime();
+            requested = version;
+            pendingChanges++;
+            notifyAll();
+        }
+        return await(version);
+    }
+
+    /**
+     * Future that completes once the given version has been committed,
+     * without asking for a new commit.
+     */
+    public synchronized CompletableFuture<Void> await(long version) {
+        if (version <= committed || version > requested) return CompletableFuture.completedFuture(null);
+        if (pendingChanges == 0 && lastFailure != null) return CompletableFuture.failedFuture(lastFailure);
+        Waiter w = new Waiter(version);
+        waiters.add(w);
+        return w.future;
+    }
+
+    /**
+     * Commits whatever is pending and stops the writer thread.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getCommits() { return commits; }
+
+    // Changes that were written as part of a commit started by an earlier change
+    public synchronized long getCoalesced() { return coalesced; }
+
+    // ---------------- Writer thread ----------------
+
+    private void run() {
+        while (true) {
+            int batch;
+            synchronized (this) {
+                try {
+                    while (!closed && !dueLocked()) {
+                        if (pendingChanges == 0) wait();
+                        else wait(Math.max(1, remainingMillisLocked()));
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pendingChanges == 0) {
+                    if (closed) return;
+                    continue;
+                }
+                batch = pendingChanges;
+                pendingChanges = 0;
+            }
+
+            long version;
+            try {
+                version = committer.commit(durability != Durability.NONE);
+            } catch (IOException | RuntimeException e) {
+                failWaiters(e);
+                continue;
+            }
+
+            synchronized (this) {
+                commits++;
+                coalesced += batch - 1;
+                lastFailure = null;
+                committed = Math.max(committed, version);
+                // Changes registered while the snapshot was taken may already be in it
+                if (requested <= committed) pendingChanges = 0;
+                Iterator<Waiter> it = waiters.iterator();
+                while (it.hasNext()) {
+                    Waiter w = it.next();
+                    if (w.version <= committed) {
+                        w.future.complete(null);
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean dueLocked() {
+        return pendingChanges > 0 && (pendingChanges >= batchSize || remainingMillisLocked() <= 0);
+    }
+
+    private long remainingMillisLocked() {
+        long elapsed = (System.nanoTime() - firstPendingAt) / 1_000_000;
+        return windowMillis - elapsed;
+    }
+
+    // A failed commit fails everyone waiting; the next change retries with the full state
+    private synchronized void failWaiters(Exception e) {
+        System.out.println("Error saving movies: " + e.getMessage());
+        lastFailure = e;
+        for (Waiter w : waiters) w.future.completeExceptionally(e);
+        waiters.clear();
+    }
+}
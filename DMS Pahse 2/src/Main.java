@@ -1,12 +1,105 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 /**
  * Program entry point.
  * Uses "movies.csv" in the working directory for persistence.
+ * Pass --journal to log mutations to an append-only journal instead of
+ * rewriting the whole CSV file on every change, --parallel-upload to
+ * parse uploaded CSV files on all cores, and --async-save to write the CSV
+ * file in the background (--durability=none|batch|fsync picks whether and
+ * how often those writes are fsynced). --binary keeps the catalog in a
+ * binary snapshot (movies.csv.bin) that loads much faster than the CSV file;
+ * --compressed keeps it deflated in blocks instead (movies.csv.mvz), a
+ * fraction of the size of the CSV file. --partitioned stores one CSV segment
+ * per decade (movies.csv.parts) that is read when first needed and rewritten
+ * alone when one of its movies changes.
+ * Operation metrics (CLI "stats", JMX) are on unless --no-metrics is given.
+ * --compact-titles stores Latin-1 titles as bytes to save memory on large catalogs.
+ *
+ * --batch runs the commands of a script (--batch=script.txt) or of stdin
+ * (--batch) without menus and prints one result line per command; see
+ * MovieBatch. Saves happen once at the end, or every N changes with
+ * --commit-every=N. The exit status is 1 if any command failed.
+ *
+ * --serve serves the catalog over HTTP/JSON on 127.0.0.1:8080 (--serve=port
+ * for another port) instead of starting the menu; see MovieServer. Combine it
+ * with --async-save or --journal so writes do not rewrite the CSV file each.
  */
 public class Main {
-    public static void main(String[] args) {
-        // Use CSV only (as requested)
-        MovieManager manager = new MovieManager("movies.csv");
+    public static void main(String[] args) throws IOException {
+        MovieManager.Options options = new MovieManager.Options();
+        options.metrics = true;
+        String batch = null;
+        int commitEvery = 0;
+        int servePort = -1;
+        for (String arg : args) {
+            if (arg.equals("--journal")) options.journaled = true;
+            if (arg.equals("--parallel-upload")) options.parallelUpload = true;
+            if (arg.equals("--async-save")) options.asyncSave = true;
+            if (arg.equals("--binary")) options.binarySnapshot = true;
+            if (arg.equals("--compressed")) options.compressedSnapshot = true;
+            if (arg.equals("--partitioned")) options.partitioned = true;
+            if (arg.equals("--no-metrics")) options.metrics = false;
+            if (arg.equals("--compact-titles")) options.compactTitles = true;
+            if (arg.equals("--batch")) batch = "-";
+            if (arg.startsWith("--batch=")) batch = arg.substring("--batch=".length());
+            if (arg.startsWith("--commit-every=")) commitEvery = Integer.parseInt(arg.substring("--commit-every=".length()));
+            if (arg.equals("--serve")) servePort = 8080;
+            if (arg.startsWith("--serve=")) servePort = Integer.parseInt(arg.substring("--serve=".length()));
+            if (arg.startsWith("--durability=")) {
+                options.durability = GroupCommitWriter.Durability.valueOf(
+                        arg.substring("--durability=".length()).toUpperCase());
+            }
+        }
+
+        MovieManager manager = new MovieManager("movies.csv", options);
+        if (batch != null) {
+            System.exit(runBatch(manager, batch, commitEvery));
+        }
+        if (servePort >= 0) {
+            serve(manager, servePort);
+            return;
+        }
         MovieCLI cli = new MovieCLI(manager);
         cli.run();
+        manager.close();
     }
-}
\ No newline at end of file
+
+    // Runs until the JVM is stopped (Ctrl-C), then saves and closes
+    private static void serve(MovieManager manager, int port) throws IOException {
+        MovieServer server = new MovieServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            manager.close();
+        }));
+        server.start();
+        System.out.printf("Serving %d movies on http://127.0.0.1:%d/movies (%s)%n", manager.size(), server.getPort(),
+                server.usesVirtualThreads() ? "virtual threads" : "platform thread pool");
+    }
+
+    // Results on stdout, the summary on stderr; returns the exit status
+    private static int runBatch(MovieManager manager, String script, int commitEvery) throws IOException {
+        MovieBatch.Summary summary;
+        try (BufferedReader in = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(script))) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            summary = new MovieBatch(manager, commitEvery).run(in, out);
+        } finally {
+            manager.close();
+        }
+        System.err.printf("%d commands, %d errors in %.1f ms (%.0f commands/s)%n", summary.commands, summary.errors,
+                summary.elapsedNanos / 1e6, summary.commandsPerSecond());
+        return summary.errors == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte-level loader for the movies CSV file used by MovieManager.loadMovies.
+ *
+ * The file is memory-mapped and scanned directly for line and field
+ * boundaries. Numbers are decoded straight from the bytes, so a typical row
+ * only allocates its title and director. Any row the fast path does not
+ * fully understand (wrong field count, signs, exponents, out-of-range
+ * values, ...) is handed to Movie.fromCSV, so accepted rows and error
+ * messages are exactly the same as with the line-based reader.
+ *
+ * Directors can go through a StringPool straight from the bytes, so a
+ * director seen before costs no allocation and every row by it gets the
+ * same String.
+ *
+ * Files whose header starts with "id," carry a leading movie id column
+ * (MovieManager snapshots); otherwise every row gets id 0.
+ */
+public class MappedCsvLoader {
+
+    // Files larger than this are mapped in several windows
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    // Exact powers of ten for the double fast path
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Receives the rows of the file in order.
+     */
+    public interface Sink {
+        void row(long id, String title, int year, String director, double rating, int runtimeMinutes, int votes, boolean watched);
+
+        // Invalid row; message is the one Movie.fromCSV produced
+        void error(int lineNum, String message);
+
+        // Lines starting with '#'; return true if the line was consumed
+        default boolean directive(String line) { return false; }
+    }
+
+    private final Sink sink;
+    private final StringPool directors; // null = no interning
+    private final int currentYear = Movie.currentYear();
+    private final int[] commas = new int[6];
+    private byte[] lineBuf = new byte[256];
+    private int lineNum;
+    private boolean withIds;
+
+    private MappedCsvLoader(Sink sink, StringPool directors) {
+        this.sink = sink;
+        this.directors = directors;
+    }
+
+    public static void load(Path path, Sink sink) throws IOException {
+        load(path, sink, null);
+    }
+
+    // Directors are interned into the given pool (which may already hold some)
+    public static void load(Path path, Sink sink, StringPool directors) throws IOException {
+        new MappedCsvLoader(sink, directors).run(path);
+    }
+
+    private void run(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+            boolean skipLf = false; // previous window ended on '\r'
+            while (pos < size) {
+                long len = Math.min(WINDOW_BYTES, size - pos);
+                boolean last = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+                int limit = (int) len;
+                int start = 0;
+                if (skipLf && limit > 0 && buf.get(0) == '\n') start = 1;
+                skipLf = false;
+
+                int i = start;
+                while (i < limit) {
+                    byte b = buf.get(i);
+                    if (b == '\n' || b == '\r') {
+                        line(buf, start, i);
+                        if (b == '\r') {
+                            if (i + 1 < limit) {
+                                if (buf.get(i + 1) == '\n') i++;
+                            } else skipLf = true;
+                        }
+                        start = i + 1;
+                    }
+                    i++;
+                }
+
+                if (last) {
+                    if (start < limit) line(buf, start, limit);
+                    pos = size;
+                } else if (start == 0) {
+                    throw new IOException("Line " + (lineNum + 1) + " is longer than " + WINDOW_BYTES + " bytes");
+                } else {
+                    pos += start; // re-map the unfinished line with the next window
+                }
+            }
+        }
+    }
+
+    // ---------------- Per line ----------------
+
+    private void line(MappedByteBuffer buf, int from, int to) {
+        lineNum++;
+        int len = to - from;
+        if (lineBuf.length < len) lineBuf = new byte[Math.max(len, lineBuf.length * 2)];
+        buf.get(from, lineBuf, 0, len);
+        byte[] b = lineBuf;
+
+        int s = 0, e = len;
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        if (s == e) return;
+
+        if (lineNum == 1) {
+            String header = asString(b, s, e).toLowerCase();
+            if (header.contains("title")) {
+                withIds = header.startsWith("id,");
+                return;
+            }
+        }
+        if (b[s] == '#' && sink.directive(asString(b, s, e))) return;
+
+        long id = 0;
+        if (withIds) {
+            int comma = s;
+            while (comma < e && b[comma] != ',') comma++;
+            id = parseId(b, s, comma);
+            if (id <= 0) {
+                sink.error(lineNum, "Id is not a valid positive integer: '" + trimmedString(b, s, comma) + "'");
+                return;
+            }
+            s = Math.min(comma + 1, e);
+        }
+
+        if (!fastRow(id, b, s, e)) slowRow(id, asString(b, s, e));
+    }
+
+    /**
+     * Decodes a well-formed row without going through Strings for the
+     * numeric fields. Returns false if the row needs the full parser.
+     */
+    private boolean fastRow(long id, byte[] b, int s, int e) {
+        int n = 0;
+        for (int i = s; i < e; i++) {
+            if (b[i] == ',') {
+                if (n == commas.length) return false;
+                commas[n++] = i;
+            }
+        }
+        if (n != commas.length) return false;
+
+        long year = parseInt(b, commas[0] + 1, commas[1]);
+        if (year < 1888 || year > currentYear) return false;
+        double rating = parseRating(b, commas[2] + 1, commas[3]);
+        if (!(rating >= 0.0 && rating <= 10.0)) return false;
+        long runtime = parseInt(b, commas[3] + 1, commas[4]);
+        if (runtime <= 0) return false;
+        long votes = parseInt(b, commas[4] + 1, commas[5]);
+        if (votes < 0) return false;
+        int watched = parseWatched(b, commas[5] + 1, e);
+        if (watched < 0) return false;
+
+        String title = trimmedString(b, s, commas[0]);
+        int ds = commas[1] + 1, de = commas[2];
+        while (ds < de && (b[ds] & 0xff) <= ' ') ds++;
+        while (de > ds && (b[de - 1] & 0xff) <= ' ') de--;
+        if (title.isEmpty() || ds == de) return false;
+        String director = directors != null ? directors.intern(b, ds, de) : asString(b, ds, de);
+
+        sink.row(id, title, (int) year, director, rating, (int) runtime, (int) votes, watched == 1);
+        return true;
+    }
+
+    private void slowRow(long id, String line) {
+        try {
+            Movie m = Movie.fromCSV(line);
+            sink.row(id, m.getTitle(), m.getYear(), m.getDirector(), m.getRating(),
+                    m.getRuntimeMinutes(), m.getVotes(), m.isWatched());
+        } catch (IllegalArgumentException ex) {
+            sink.error(lineNum, ex.getMessage());
+        }
+    }
+
+    // ---------------- Field decoding ----------------
+
+    /**
+     * Plain unsigned decimal; returns -1 for anything else (the caller then
+     * falls back to the full parser) or on int overflow.
+     */
+    private static long parseInt(byte[] b, int s, int e) {
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        if (s == e || e - s > 10) return -1;
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v <= Integer.MAX_VALUE ? v : -1;
+    }
+
+    // Plain unsigned decimal of up to 18 digits; -1 otherwise
+    private static long parseId(byte[] b, int s, int e) {
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        if (s == e || e - s > 18) return -1;
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /**
+     * digits[.digits] with at most 15 significant digits: mantissa / 10^k is
+     * then exactly the value Double.parseDouble returns. NaN otherwise.
+     */
+    private static double parseRating(byte[] b, int s, int e) {
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        long mantissa = 0;
+        int digits = 0, fraction = -1;
+        for (int i = s; i < e; i++) {
+            byte c = b[i];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9 || ++digits > 15) return Double.NaN;
+            mantissa = mantissa * 10 + d;
+            if (fraction >= 0) fraction++;
+        }
+        if (digits == 0) return Double.NaN;
+        return fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+    }
+
+    // 1 = true, 0 = false, -1 = not one of the accepted spellings
+    private static int parseWatched(byte[] b, int s, int e) {
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        switch (e - s) {
+            case 1:
+                if (b[s] == '1' || (b[s] | 0x20) == 'y') return 1;
+                if (b[s] == '0' || (b[s] | 0x20) == 'n') return 0;
+                return -1;
+            case 2: return matches(b, s, "no") ? 0 : -1;
+            case 3: return matches(b, s, "yes") ? 1 : -1;
+            case 4: return matches(b, s, "true") ? 1 : -1;
+            case 5: return matches(b, s, "false") ? 0 : -1;
+            default: return -1;
+        }
+    }
+
+    // ASCII case-insensitive comparison against a lowercase word
+    private static boolean matches(byte[] b, int s, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            byte c = b[s + i];
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static String trimmedString(byte[] b, int s, int e) {
+        while (s < e && (b[s] & 0xff) <= ' ') s++;
+        while (e > s && (b[e - 1] & 0xff) <= ' ') e--;
+        return asString(b, s, e);
+    }
+
+    private static String asString(byte[] b, int s, int e) {
+        return new String(b, s, e - s, StandardCharsets.UTF_8);
+    }
+}
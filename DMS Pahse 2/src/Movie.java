@@ -1,11 +1,17 @@
+import java.nio.charset.StandardCharsets;
 import java.time.Year;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Represents a single movie and contains CSV-parsing + validation logic.
  */
 public class Movie {
     // Movie attributes
-    private String title;
+    private long id;               // assigned by MovieManager, 0 = not stored yet
+    private String title;          // null once compactTitle() moved it to latin1Title
+    private byte[] latin1Title;
     private int year;
     private String director;
     private double rating;         // 0.0 - 10.0
@@ -28,7 +34,11 @@ public class Movie {
     public Movie() {}
 
     // ----- Getters -----
-    public String getTitle() { return title; }
+    public long getId() { return id; }
+    public String getTitle() {
+        String t = title;
+        return t != null || latin1Title == null ? t : new String(latin1Title, StandardCharsets.ISO_8859_1);
+    }
     public int getYear() { return year; }
     public String getDirector() { return director; }
     public double getRating() { return rating; }
@@ -36,6 +46,41 @@ public class Movie {
     public int getVotes() { return votes; }
     public boolean isWatched() { return watched; }
 
+    // Only MovieManager assigns ids
+    void setId(long id) { this.id = id; }
+
+    // ----- Compact storage (MovieManager, before the movie is shared) -----
+
+    // Replaces the director with the pooled instance of the same value
+    void internDirector(StringPool directors) {
+        director = directors.intern(director);
+    }
+
+    /**
+     * Keeps a title that fits in Latin-1 as a bare byte[] (one byte per char,
+     * without the String object around it); getTitle() then decodes a new
+     * String on every call. Other titles are left as they are.
+     */
+    void compactTitle() {
+        String t = title;
+        if (t == null) return;
+        for (int i = 0; i < t.length(); i++) {
+            if (t.charAt(i) > 0xff) return;
+        }
+        latin1Title = t.getBytes(StandardCharsets.ISO_8859_1);
+        title = null;
+    }
+
+    /**
+     * Copy of this movie with another id.
+     */
+    Movie withId(long id) {
+        Movie copy = new Movie(title, year, director, rating, runtimeMinutes, votes, watched);
+        copy.latin1Title = latin1Title;
+        copy.id = id;
+        return copy;
+    }
+
     // ----- Calculation -----
 
     /**
@@ -54,6 +99,30 @@ public class Movie {
 
     // ----- Helpers -----
 
+    /**
+     * Two movies are equal when their id and all their attributes are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Movie)) return false;
+        Movie other = (Movie) o;
+        return id == other.id && year == other.year && Double.compare(rating, other.rating) == 0
+                && runtimeMinutes == other.runtimeMinutes && votes == other.votes
+                && watched == other.watched
+                && sameTitle(other) && Objects.equals(director, other.director);
+    }
+
+    private boolean sameTitle(Movie other) {
+        if (title == null && other.title == null) return Arrays.equals(latin1Title, other.latin1Title);
+        return Objects.equals(getTitle(), other.getTitle());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, getTitle(), year, director, rating, runtimeMinutes, votes, watched);
+    }
+
     /**
      * Convert the movie to a CSV line (same order used by parser).
      * Escaping/quoting is not implemented — fields must not contain commas.
@@ -61,7 +130,7 @@ public class Movie {
     @Override
     public String toString() {
         return String.format("%s,%d,%s,%.1f,%d,%d,%s",
-                title, year, director, rating, runtimeMinutes, votes, watched);
+                getTitle(), year, director, rating, runtimeMinutes, votes, watched);
     }
 
     /**
@@ -69,7 +138,7 @@ public class Movie {
      */
     public String prettyPrint() {
         return String.format("🎬 %s (%d) - Dir: %s | Rating: %.1f | %d min | Votes: %d | Watched: %s",
-                title, year, director, rating, runtimeMinutes, votes, watched ? "Yes" : "No");
+                getTitle(), year, director, rating, runtimeMinutes, votes, watched ? "Yes" : "No");
     }
 
     /**
@@ -80,52 +149,62 @@ public class Movie {
      * title,year,director,rating,runtimeMinutes,votes,watched
      *
      * NOTE: This parser expects simple CSV without quoted commas.
+     *
+     * The line is scanned once and numbers are parsed straight from it, so a
+     * valid line only allocates the title, the director and the Movie.
+     * Message Strings are only built when a field is invalid.
      */
     public static Movie fromCSV(String line) throws IllegalArgumentException {
         if (line == null) throw new IllegalArgumentException("Line is null");
 
-        // Split into fields (keep empty fields if any)
-        String[] parts = line.split(",", -1);
-
-        if (parts.length != 7) {
-            throw new IllegalArgumentException("Expected 7 fields but found " + parts.length);
-        }
-
-        // Trim all fields
-        for (int i = 0; i < parts.length; i++) {
-            parts[i] = parts[i].trim();
+        // Locate the 6 separators (keep empty fields if any)
+        int end = line.length();
+        int c0 = line.indexOf(',');
+        int c1 = c0 < 0 ? -1 : line.indexOf(',', c0 + 1);
+        int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+        int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+        int c4 = c3 < 0 ? -1 : line.indexOf(',', c3 + 1);
+        int c5 = c4 < 0 ? -1 : line.indexOf(',', c4 + 1);
+        if (c5 < 0 || line.indexOf(',', c5 + 1) >= 0) {
+            throw new IllegalArgumentException("Expected 7 fields but found " + countFields(line));
         }
 
         // Field 1: title (non-empty)
-        String title = parts[0];
+        String title = trimmed(line, 0, c0);
         if (title.isEmpty()) {
             throw new IllegalArgumentException("Title is empty");
         }
 
         // Field 2: year (integer, reasonable range)
         int year;
+        int s = trimStart(line, c0 + 1, c1), e = trimEnd(line, s, c1);
         try {
-            year = Integer.parseInt(parts[1]);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Year is not a valid integer: '" + parts[1] + "'");
+            year = Integer.parseInt(line, s, e, 10);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Year is not a valid integer: '" + line.substring(s, e) + "'");
         }
-        int currentYear = Year.now().getValue();
+        int currentYear = currentYear();
         if (year < 1888 || year > currentYear) { // 1888 is traditionally one of first film years
             throw new IllegalArgumentException("Year must be between 1888 and " + currentYear);
         }
 
         // Field 3: director (non-empty)
-        String director = parts[2];
+        String director = trimmed(line, c1 + 1, c2);
         if (director.isEmpty()) {
             throw new IllegalArgumentException("Director is empty");
         }
 
         // Field 4: rating (double 0.0 - 10.0)
-        double rating;
-        try {
-            rating = Double.parseDouble(parts[3]);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Rating is not a valid number: '" + parts[3] + "'");
+        s = trimStart(line, c2 + 1, c3);
+        e = trimEnd(line, s, c3);
+        double rating = parseSimpleDecimal(line, s, e);
+        if (Double.isNaN(rating)) {
+            // Anything beyond digits[.digits] (signs, exponents, ...) takes the full parser
+            try {
+                rating = Double.parseDouble(line.substring(s, e));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Rating is not a valid number: '" + line.substring(s, e) + "'");
+            }
         }
         if (rating < 0.0 || rating > 10.0) {
             throw new IllegalArgumentException("Rating must be between 0.0 and 10.0");
@@ -133,10 +212,12 @@ public class Movie {
 
         // Field 5: runtimeMinutes (positive integer)
         int runtime;
+        s = trimStart(line, c3 + 1, c4);
+        e = trimEnd(line, s, c4);
         try {
-            runtime = Integer.parseInt(parts[4]);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Runtime is not a valid integer: '" + parts[4] + "'");
+            runtime = Integer.parseInt(line, s, e, 10);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Runtime is not a valid integer: '" + line.substring(s, e) + "'");
         }
         if (runtime <= 0) {
             throw new IllegalArgumentException("Runtime must be a positive integer");
@@ -144,10 +225,12 @@ public class Movie {
 
         // Field 6: votes (non-negative integer)
         int votes;
+        s = trimStart(line, c4 + 1, c5);
+        e = trimEnd(line, s, c5);
         try {
-            votes = Integer.parseInt(parts[5]);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Votes is not a valid integer: '" + parts[5] + "'");
+            votes = Integer.parseInt(line, s, e, 10);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Votes is not a valid integer: '" + line.substring(s, e) + "'");
         }
         if (votes < 0) {
             throw new IllegalArgumentException("Votes must be 0 or greater");
@@ -155,16 +238,109 @@ public class Movie {
 
         // Field 7: watched (boolean) — accept many forms
         boolean watched;
-        String w = parts[6].toLowerCase();
-        if (w.equals("true") || w.equals("yes") || w.equals("y") || w.equals("1")) {
+        s = trimStart(line, c5 + 1, end);
+        e = trimEnd(line, s, end);
+        if (isWord(line, s, e, "true") || isWord(line, s, e, "yes") || isWord(line, s, e, "y") || isWord(line, s, e, "1")) {
             watched = true;
-        } else if (w.equals("false") || w.equals("no") || w.equals("n") || w.equals("0")) {
+        } else if (isWord(line, s, e, "false") || isWord(line, s, e, "no") || isWord(line, s, e, "n") || isWord(line, s, e, "0")) {
             watched = false;
         } else {
-            throw new IllegalArgumentException("Watched must be true/false or yes/no or 1/0: '" + parts[6] + "'");
+            throw new IllegalArgumentException("Watched must be true/false or yes/no or 1/0: '" + line.substring(s, e) + "'");
         }
 
         // If all validations pass, return a new Movie
         return new Movie(title, year, director, rating, runtime, votes, watched);
     }
+
+    // ----- Parsing helpers -----
+
+    // Exact powers of ten for parseSimpleDecimal
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    // A year and the instant it ends, published together through one volatile field
+    private static final class YearCache {
+        final int year;
+        final long endsMillis;
+
+        YearCache(int year, long endsMillis) {
+            this.year = year;
+            this.endsMillis = endsMillis;
+        }
+    }
+
+    private static volatile YearCache yearCache = new YearCache(0, 0); // expired until first use
+
+    /**
+     * The current year, as Year.now() would return it. The value is cached
+     * until the first instant of next year so parsing does not hit the
+     * clock and time zone rules on every row. Parser threads may race to
+     * refresh it; each sees a year together with its own end.
+     */
+    static int currentYear() {
+        YearCache cache = yearCache;
+        if (System.currentTimeMillis() >= cache.endsMillis) {
+            int year = Year.now().getValue();
+            long ends = Year.of(year + 1).atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            cache = new YearCache(year, ends);
+            yearCache = cache;
+        }
+        return cache.year;
+    }
+
+    /**
+     * digits[.digits] with at most 15 significant digits. In that range
+     * mantissa / 10^k is exactly what Double.parseDouble returns.
+     * Returns NaN for anything else so the caller can use the full parser.
+     */
+    private static double parseSimpleDecimal(String s, int from, int to) {
+        long mantissa = 0;
+        int digits = 0, fraction = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > 15) return Double.NaN;
+            mantissa = mantissa * 10 + (c - '0');
+            if (fraction >= 0) fraction++;
+        }
+        if (digits == 0) return Double.NaN;
+        return fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+    }
+
+    // Same result as s.substring(from, to).toLowerCase().equals(word) for the lowercase ASCII words used above
+    private static boolean isWord(String s, int from, int to, String word) {
+        if (to - from != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = s.charAt(from + i);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Same trimming rule as String.trim()
+    private static int trimStart(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(String s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+
+    private static String trimmed(String s, int from, int to) {
+        int start = trimStart(s, from, to);
+        return s.substring(start, trimEnd(s, start, to));
+    }
+
+    private static int countFields(String line) {
+        int fields = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') fields++;
+        }
+        return fields;
+    }
 }
\ No newline at end of file
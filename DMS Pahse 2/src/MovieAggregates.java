@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Running aggregates over the catalog, kept up to date by MovieManager.
+ *
+ * Totals, per-director and per-year groups each hold a count, rating,
+ * runtime and scariness sums, and a histogram of ratings in steps of 0.1.
+ * Adding or removing a movie touches three groups and a few counters, so
+ * maintenance is O(1) per change and reading a group never scans movies.
+ *
+ * Min/max ratings come from the histogram, which is what lets them survive
+ * removals without a rescan; they are exact for ratings with one decimal
+ * (the CSV format) and rounded to 0.1 otherwise. Sums are doubles and the
+ * aggregates are rebuilt on every load, so rounding cannot build up across
+ * sessions.
+ *
+ * Not thread-safe; MovieManager only changes it under its write lock and
+ * reads copies under the read lock.
+ */
+public class MovieAggregates {
+
+    private static final int RATING_STEPS = 101;     // 0.0, 0.1, ... 10.0
+    public static final int SCARINESS_BUCKETS = 10; // [0,1), [1,2), ... [9,10]
+
+    private final Group totals = new Group();
+    private final Map<String, Group> byDirector = new HashMap<>();
+    private final TreeMap<Integer, Group> byYear = new TreeMap<>();
+    private final long[] scariness = new long[SCARINESS_BUCKETS];
+
+    // Mutable running values of one group
+    private static class Group {
+        long count;
+        double ratingSum;
+        long runtimeSum;
+        double scarinessSum;
+        final int[] ratings = new int[RATING_STEPS];
+
+        void add(Movie m, double score, int sign) {
+            count += sign;
+            ratingSum += sign * m.getRating();
+            runtimeSum += sign * (long) m.getRuntimeMinutes();
+            scarinessSum += sign * score;
+            ratings[ratingStep(m.getRating())] += sign;
+        }
+
+        Stats freeze() {
+            int min = 0, max = RATING_STEPS - 1;
+            while (min < RATING_STEPS && ratings[min] == 0) min++;
+            while (max >= 0 && ratings[max] == 0) max--;
+            return count == 0 ? new Stats(0, 0, 0, 0, 0, 0)
+                    : new Stats(count, ratingSum / count, min / 10.0, max / 10.0, runtimeSum, scarinessSum / count);
+        }
+    }
+
+    /**
+     * Read-only values of one group at the time it was copied.
+     */
+    public static class Stats {
+        public final long count;
+        public final double averageRating;
+        public final double minRating;
+        public final double maxRating;
+        public final long totalRuntimeMinutes;
+        public final double averageScariness;
+
+        public Stats(long count, double averageRating, double minRating, double maxRating,
+                     long totalRuntimeMinutes, double averageScariness) {
+            this.count = count;
+            this.averageRating = averageRating;
+            this.minRating = minRating;
+            this.maxRating = maxRating;
+            this.totalRuntimeMinutes = totalRuntimeMinutes;
+            this.averageScariness = averageScariness;
+        }
+    }
+
+    // ---------------- Maintenance ----------------
+
+    public void add(Movie m) {
+        apply(m, 1);
+    }
+
+    public void remove(Movie m) {
+        apply(m, -1);
+    }
+
+    public void clear() {
+        totals.count = 0;
+        totals.ratingSum = 0;
+        totals.runtimeSum = 0;
+        totals.scarinessSum = 0;
+        Arrays.fill(totals.ratings, 0);
+        byDirector.clear();
+        byYear.clear();
+        Arrays.fill(scariness, 0);
+    }
+
+    public void rebuild(Iterable<Movie> movies) {
+        clear();
+        for (Movie m : movies) add(m);
+    }
+
+    private void apply(Movie m, int sign) {
+        double score = m.getScariness();
+        totals.add(m, score, sign);
+        scariness[scarinessBucket(score)] += sign;
+
+        Group director = byDirector.computeIfAbsent(m.getDirector(), k -> new Group());
+        director.add(m, score, sign);
+        if (director.count == 0) byDirector.remove(m.getDirector());
+
+        Group year = byYear.computeIfAbsent(m.getYear(), k -> new Group());
+        year.add(m, score, sign);
+        if (year.count == 0) byYear.remove(m.getYear());
+    }
+
+    // ---------------- Reading (copies) ----------------
+
+    public Stats totals() {
+        return totals.freeze();
+    }
+
+    // null if no movie by this director is stored
+    public Stats director(String director) {
+        Group g = byDirector.get(director);
+        return g == null ? null : g.freeze();
+    }
+
+    public Map<String, Stats> byDirector() {
+        Map<String, Stats> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Group> e : byDirector.entrySet()) copy.put(e.getKey(), e.getValue().freeze());
+        return copy;
+    }
+
+    // Ordered by year
+    public SortedMap<Integer, Stats> byYear() {
+        SortedMap<Integer, Stats> copy = new TreeMap<>();
+        for (Map.Entry<Integer, Group> e : byYear.entrySet()) copy.put(e.getKey(), e.getValue().freeze());
+        return copy;
+    }
+
+    /**
+     * Number of movies per scariness bucket: index i counts scores in
+     * [i, i + 1), with 10.0 in the last bucket.
+     */
+    public long[] scarinessHistogram() {
+        return scariness.clone();
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static int ratingStep(double rating) {
+        return (int) Math.max(0, Math.min(RATING_STEPS - 1, Math.round(rating * 10)));
+    }
+
+    private static int scarinessBucket(double score) {
+        return (int) Math.max(0, Math.min(SCARINESS_BUCKETS - 1, Math.floor(score)));
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Non-interactive command runner behind java Main --batch: reads one command
+ * per line from a script or stdin and writes one result line per command,
+ * with no prompts or menus.
+ *
+ * Commands (blank lines and lines starting with # are skipped):
+ *
+ *   add title,year,director,rating,runtimeMinutes,votes,watched
+ *   update id title,year,director,rating,runtimeMinutes,votes,watched
+ *   delete id
+ *   get id
+ *   search text
+ *   upload path / upsert path
+ *   export path          (JSON Lines for a .jsonl path, CSV otherwise)
+ *   count
+ *   commit
+ *
+ * Each result line is tab-separated: the script line number, "ok" or
+ * "error", then the result (the id of an added, updated or deleted movie;
+ * "id,csv row" for get; comma-separated ids for search; "inserted updated
+ * duplicates errors" for an upload; a count otherwise) or the error
+ * message. A failed command does not stop the script.
+ *
+ * Saves are deferred (MovieManager.deferSaves): changes are committed once
+ * at the end, every commitEvery changing commands when that is positive,
+ * and by the commit command.
+ */
+public class MovieBatch {
+
+    private static final int SEARCH_LIMIT = 100;
+
+    private final MovieManager manager;
+    private final int commitEvery;
+
+    // Totals of one run
+    public static class Summary {
+        public final int commands;
+        public final int errors;
+        public final long elapsedNanos;
+
+        public Summary(int commands, int errors, long elapsedNanos) {
+            this.commands = commands;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double commandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+        }
+    }
+
+    public MovieBatch(MovieManager manager, int commitEvery) {
+        this.manager = manager;
+        this.commitEvery = commitEvery;
+    }
+
+    /**
+     * Runs every command of the script and commits at the end. Results go
+     * to out, which is flushed but not closed.
+     */
+    public Summary run(BufferedReader script, Writer out) throws IOException {
+        long start = System.nanoTime();
+        int commands = 0, errors = 0, changes = 0;
+        StringBuilder result = new StringBuilder(128);
+        manager.deferSaves(true);
+        try {
+            String line;
+            for (int lineNum = 1; (line = script.readLine()) != null; lineNum++) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                commands++;
+
+                int space = line.indexOf(' ');
+                String command = space < 0 ? line : line.substring(0, space);
+                String args = space < 0 ? "" : line.substring(space + 1).trim();
+                result.setLength(0);
+                result.append(lineNum).append('\t');
+                try {
+                    boolean changed = execute(command, args, result.append("ok\t"));
+                    if (changed && commitEvery > 0 && ++changes % commitEvery == 0) manager.commit();
+                } catch (IllegalArgumentException | IOException e) {
+                    errors++;
+                    result.setLength(0);
+                    result.append(lineNum).append("\terror\t").append(oneLine(e.getMessage()));
+                }
+                out.write(result.append('\n').toString());
+            }
+        } finally {
+            manager.deferSaves(false); // commits what is left
+            out.flush();
+        }
+        return new Summary(commands, errors, System.nanoTime() - start);
+    }
+
+    // Appends the result of one command; returns whether it changed the catalog
+    private boolean execute(String command, String args, StringBuilder result) throws IOException {
+        switch (command) {
+            case "add" -> {
+                Movie m = Movie.fromCSV(args);
+                manager.addMovie(m);
+                result.append(m.getId());
+                return true;
+            }
+            case "update" -> {
+                int space = args.indexOf(' ');
+                if (space < 0) throw new IllegalArgumentException("Usage: update id title,year,director,...");
+                long id = parseId(args.substring(0, space));
+                if (!manager.update(id, Movie.fromCSV(args.substring(space + 1)))) throw noMovie(id);
+                result.append(id);
+                return true;
+            }
+            case "delete" -> {
+                long id = parseId(args);
+                if (!manager.remove(id)) throw noMovie(id);
+                result.append(id);
+                return true;
+            }
+            case "get" -> {
+                long id = parseId(args);
+                Movie m = manager.get(id);
+                if (m == null) throw noMovie(id);
+                result.append(id).append(',').append(m);
+                return false;
+            }
+            case "search" -> {
+                if (args.isEmpty()) throw new IllegalArgumentException("Usage: search text");
+                List<Movie> found = manager.searchTitles(args, SEARCH_LIMIT);
+                for (int i = 0; i < found.size(); i++) {
+                    if (i > 0) result.append(',');
+                    result.append(found.get(i).getId());
+                }
+                return false;
+            }
+            case "upload", "upsert" -> {
+                if (args.isEmpty()) throw new IllegalArgumentException("Usage: " + command + " path");
+                MovieManager.UploadReport report = manager.uploadCSV(args,
+                        command.equals("upsert") ? MovieManager.UploadMode.UPSERT : MovieManager.UploadMode.APPEND);
+                result.append(report.inserted).append(' ').append(report.updated).append(' ')
+                        .append(report.duplicates).append(' ').append(report.errorCount);
+                return report.inserted + report.updated > 0;
+            }
+            case "export" -> {
+                if (args.isEmpty()) throw new IllegalArgumentException("Usage: export path");
+                result.append(manager.export(args, args.toLowerCase().endsWith(".jsonl")
+                        ? MovieManager.ExportFormat.JSON_LINES : MovieManager.ExportFormat.CSV, null, null));
+                return false;
+            }
+            case "count" -> {
+                result.append(manager.size());
+                return false;
+            }
+            case "commit" -> {
+                result.append(manager.commit());
+                return false;
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private static long parseId(String s) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a movie id: '" + s.trim() + "'");
+        }
+    }
+
+    private static IllegalArgumentException noMovie(long id) {
+        return new IllegalArgumentException("No movie with id " + id);
+    }
+
+    // Keeps a message on its result line
+    private static String oneLine(String message) {
+        return message == null ? "" : message.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
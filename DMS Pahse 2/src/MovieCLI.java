@@ -1,11 +1,34 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Predicate;
 
 public class MovieCLI {
 
+    private static final int PAGE_SIZE = 20;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int ERROR_SAMPLE = 20;    // upload errors listed after an upload
+    private static final int RANKING_SIZE = 10;   // default length of a top-N list
+    private static final int IDX_WIDTH = 4, TITLE_WIDTH = 25, DIRECTOR_WIDTH = 20, YEAR_WIDTH = 6, RATING_WIDTH = 6,
+            RUNTIME_WIDTH = 8, VOTES_WIDTH = 8, WATCHED_WIDTH = 8,
+            SCARINESS_WIDTH = 9;
+    private static final String SEPARATOR = "-".repeat(IDX_WIDTH + TITLE_WIDTH + DIRECTOR_WIDTH + YEAR_WIDTH
+            + RATING_WIDTH + RUNTIME_WIDTH + VOTES_WIDTH + WATCHED_WIDTH + 21);
+
     private final MovieManager manager;
     private final Scanner sc = new Scanner(System.in);
 
+    // Table output: one buffered writer and one row buffer, reused for every row
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+    private final StringBuilder row = new StringBuilder(128);
+
     public MovieCLI(MovieManager manager) {
         this.manager = manager;
     }
@@ -17,24 +40,34 @@ public class MovieCLI {
         while (running) {
             System.out.println("\n=== HORROR MOVIES MANAGER (CLI) ===");
             System.out.println("1. Show all movies");
-            System.out.println("2. Add a new movie");
-            System.out.println("3. Delete a movie");
-            System.out.println("4. Upload movies from CSV file");
-            System.out.println("5. Edit a movie");
-            System.out.println("6. Calculate Scariness of a movie");
-            System.out.println("7. Exit");
-            System.out.print("Choose an option (1-7): ");
+            System.out.println("2. Search movies by title");
+            System.out.println("3. Add a new movie");
+            System.out.println("4. Delete a movie");
+            System.out.println("5. Upload movies from CSV file");
+            System.out.println("6. Edit a movie");
+            System.out.println("7. Calculate Scariness of a movie");
+            System.out.println("8. Export movies (CSV or JSON Lines)");
+            System.out.println("9. Analytics");
+            System.out.println("10. Rankings");
+            System.out.println("11. Show statistics");
+            System.out.println("12. Exit");
+            System.out.print("Choose an option (1-12): ");
 
             String choice = sc.nextLine().trim();
             switch (choice) {
                 case "1" -> listMovies();
-                case "2" -> addMovie();
-                case "3" -> deleteMovie();
-                case "4" -> uploadCSV();
-                case "5" -> editMovie();
-                case "6" -> showScariness();
-                case "7" -> running = false;
-                default -> System.out.println("❌ Invalid option. Please enter a number between 1 and 7.");
+                case "2" -> searchMovies();
+                case "3" -> addMovie();
+                case "4" -> deleteMovie();
+                case "5" -> uploadCSV();
+                case "6" -> editMovie();
+                case "7" -> showScariness();
+                case "8" -> exportCSV();
+                case "9" -> showAnalytics();
+                case "10" -> showRankings();
+                case "11", "stats" -> showStats();
+                case "12" -> running = false;
+                default -> System.out.println("❌ Invalid option. Please enter a number between 1 and 12.");
             }
         }
         System.out.println("👋 Goodbye!");
@@ -43,40 +76,80 @@ public class MovieCLI {
     // ----------------- Menu Actions -----------------
 
     public void listMovies() {
-        List<Movie> movies = manager.getAll();
+        List<Movie> movies = manager.snapshot();
         if (movies.isEmpty()) {
             System.out.println("No movies found.");
             return;
         }
+        showPages(movies);
+    }
+
+    /**
+     * Title search: titles starting with the query come first, then titles
+     * containing it, then close matches (a typo or two in longer queries).
+     */
+    public void searchMovies() {
+        String query = promptNonEmptyString("Title (or part of it): ");
+        long start = System.nanoTime();
+        List<Movie> found = manager.searchTitles(query, SEARCH_LIMIT);
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (found.isEmpty()) {
+            System.out.println("No movies match \"" + query + "\".");
+            return;
+        }
+        System.out.printf("Matches: %d%s (%.2f ms)%n", found.size(), found.size() == SEARCH_LIMIT ? "+" : "", millis);
+        showPages(found);
+    }
 
-        int idxWidth = 4, titleWidth = 25, directorWidth = 20, yearWidth = 6, ratingWidth = 6,
-                runtimeWidth = 8, votesWidth = 8, watchedWidth = 8;
+    /**
+     * Prints the movies PAGE_SIZE rows at a time. When there is more than one
+     * page the user can move to the next or previous page or jump to a page
+     * number; an empty line (or q) leaves the listing.
+     * Row numbers always refer to the position in the whole list.
+     */
+    private void showPages(List<Movie> movies) {
+        int pages = (movies.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        int page = 0;
+        while (true) {
+            printTable(movies, page * PAGE_SIZE, Math.min(movies.size(), (page + 1) * PAGE_SIZE));
+            if (pages <= 1) return;
+
+            System.out.print("Page " + (page + 1) + "/" + pages + " - [n]ext, [p]revious, page number, or Enter to continue: ");
+            String cmd = sc.nextLine().trim().toLowerCase();
+            if (cmd.isEmpty() || cmd.equals("q")) return;
+            if (cmd.equals("n")) page = Math.min(page + 1, pages - 1);
+            else if (cmd.equals("p")) page = Math.max(page - 1, 0);
+            else {
+                try {
+                    int target = Integer.parseInt(cmd);
+                    if (target < 1 || target > pages) System.out.println("⚠️ Page must be between 1 and " + pages);
+                    else page = target - 1;
+                } catch (NumberFormatException e) {
+                    System.out.println("⚠️ Unknown command.");
+                }
+            }
+        }
+    }
 
-        System.out.println(
-                padRight("No.", idxWidth) + " | " +
-                        padRight("Title", titleWidth) + " | " +
-                        padRight("Director", directorWidth) + " | " +
-                        padRight("Year", yearWidth) + " | " +
-                        padRight("Rating", ratingWidth) + " | " +
-                        padRight("Runtime", runtimeWidth) + " | " +
-                        padRight("Votes", votesWidth) + " | " +
-                        padRight("Watched", watchedWidth)
-        );
-        System.out.println("-".repeat(idxWidth + titleWidth + directorWidth + yearWidth + ratingWidth + runtimeWidth + votesWidth + watchedWidth + 21));
+    // Rows from (inclusive) to to (exclusive), rendered into the shared writer
+    private void printTable(List<Movie> movies, int from, int to) {
+        row.setLength(0);
+        cell("No.", IDX_WIDTH).cell("Title", TITLE_WIDTH).cell("Director", DIRECTOR_WIDTH)
+                .cell("Year", YEAR_WIDTH).cell("Rating", RATING_WIDTH).cell("Runtime", RUNTIME_WIDTH)
+                .cell("Votes", VOTES_WIDTH).lastCell("Watched", WATCHED_WIDTH);
+        out.println(row);
+        out.println(SEPARATOR);
 
-        for (int i = 0; i < movies.size(); i++) {
+        for (int i = from; i < to; i++) {
             Movie m = movies.get(i);
-            System.out.println(
-                    padRight(String.valueOf(i + 1), idxWidth) + " | " +
-                            padRight(m.getTitle(), titleWidth) + " | " +
-                            padRight(m.getDirector(), directorWidth) + " | " +
-                            padRight(String.valueOf(m.getYear()), yearWidth) + " | " +
-                            padRight(String.format("%.1f", m.getRating()), ratingWidth) + " | " +
-                            padRight(String.valueOf(m.getRuntimeMinutes()), runtimeWidth) + " | " +
-                            padRight(String.valueOf(m.getVotes()), votesWidth) + " | " +
-                            padRight(m.isWatched() ? "Yes" : "No", watchedWidth)
-            );
+            row.setLength(0);
+            cell(i + 1, IDX_WIDTH).cell(m.getTitle(), TITLE_WIDTH).cell(m.getDirector(), DIRECTOR_WIDTH)
+                    .cell(m.getYear(), YEAR_WIDTH).ratingCell(m.getRating(), RATING_WIDTH)
+                    .cell(m.getRuntimeMinutes(), RUNTIME_WIDTH).cell(m.getVotes(), VOTES_WIDTH)
+                    .lastCell(m.isWatched() ? "Yes" : "No", WATCHED_WIDTH);
+            out.println(row);
         }
+        out.flush();
     }
 
     public void addMovie() {
@@ -95,25 +168,25 @@ public class MovieCLI {
     }
 
     public void deleteMovie() {
-        List<Movie> movies = manager.getAll();
+        List<Movie> movies = manager.snapshot();
         if (movies.isEmpty()) {
             System.out.println("No movies to delete.");
             return;
         }
-        listMovies();
+        showPages(movies);
         int choice = promptInt("Enter the number of the movie to delete: ", 1, movies.size());
-        boolean removed = manager.removeMovie(choice - 1);
+        boolean removed = manager.remove(movies.get(choice - 1).getId());
         if (removed) System.out.println("🗑️ Movie deleted successfully.");
         else System.out.println("⚠️ Could not delete the movie (invalid index).");
     }
 
     public void editMovie() {
-        List<Movie> movies = manager.getAll();
+        List<Movie> movies = manager.snapshot();
         if (movies.isEmpty()) {
             System.out.println("No movies to edit.");
             return;
         }
-        listMovies();
+        showPages(movies);
         int choice = promptInt("Enter the number of the movie to edit: ", 1, movies.size());
         Movie selected = movies.get(choice - 1);
 
@@ -128,9 +201,8 @@ public class MovieCLI {
         boolean watched = promptOptionalBoolean("Watched [" + (selected.isWatched() ? "Yes" : "No") + "]: ", selected.isWatched());
 
         Movie updated = new Movie(title, year, director, rating, runtime, votes, watched);
-        manager.removeMovie(choice - 1);
-        manager.addMovie(updated);
-        System.out.println("✅ Movie updated successfully!");
+        if (manager.update(selected.getId(), updated)) System.out.println("✅ Movie updated successfully!");
+        else System.out.println("⚠️ Could not update the movie (it no longer exists).");
     }
 
     public void uploadCSV() {
@@ -142,28 +214,174 @@ public class MovieCLI {
             return;
         }
 
-        MovieManager.UploadReport report = manager.uploadCSV(path);
-        System.out.println("Upload finished. Inserted: " + report.inserted + ", Errors: " + report.errors.size());
-        if (!report.errors.isEmpty()) {
-            System.out.println("Errors (first 20 shown):");
-            int count = 0;
-            for (String err : report.errors) {
-                System.out.println(" - " + err);
-                if (++count >= 20) {
-                    System.out.println(" (more errors omitted...)");
-                    break;
+        boolean upsert = promptBoolean("Update movies already in the catalog (same title, year and director) instead of adding them again? (y/n): ");
+
+        // Rejected lines go next to the file, ready to be fixed and uploaded again
+        UploadErrors errors = new UploadErrors(ERROR_SAMPLE, Paths.get(path + ".rejected"));
+        MovieManager.UploadReport report = manager.uploadCSV(path,
+                upsert ? MovieManager.UploadMode.UPSERT : MovieManager.UploadMode.APPEND, errors,
+                (lines, bytes, nanos) -> System.out.printf("\rRead %,d lines (%.1f MB), %,.0f lines/s ",
+                        lines, bytes / 1e6, lines / Math.max(nanos / 1e9, 1e-9)));
+        System.out.println();
+        System.out.println("Upload finished. Inserted: " + report.inserted
+                + (upsert ? ", Updated: " + report.updated + ", Duplicates skipped: " + report.duplicates : "")
+                + ", Errors: " + report.errorCount);
+        if (report.errorCount == 0) return;
+
+        System.out.println("Errors by kind:");
+        for (Map.Entry<String, Long> e : report.errorsByCategory.entrySet()) {
+            System.out.println(" - " + e.getKey() + ": " + e.getValue());
+        }
+        System.out.println("Errors (first " + report.errors.size() + " shown):");
+        for (String err : report.errors) System.out.println(" - " + err);
+        if (report.errorCount > report.errors.size()) {
+            System.out.println(" (" + (report.errorCount - report.errors.size()) + " more errors omitted...)");
+        }
+        if (report.quarantine != null) System.out.println("Rejected lines written to " + report.quarantine);
+    }
+
+    /**
+     * Export of the whole catalog or of the movies passing a few optional
+     * filters, in id order or sorted by one field, as CSV or (for a .jsonl
+     * path) JSON Lines. Streamed to the file, so any catalog size works.
+     */
+    public void exportCSV() {
+        System.out.println("\n--- Export movies ---");
+        System.out.print("Enter the path of the file to write (.csv, or .jsonl for JSON Lines): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) {
+            System.out.println("No path entered. Aborting export.");
+            return;
+        }
+        MovieManager.ExportFormat format = path.toLowerCase().endsWith(".jsonl")
+                ? MovieManager.ExportFormat.JSON_LINES : MovieManager.ExportFormat.CSV;
+
+        System.out.println("Press Enter to skip a filter.");
+        int currentYear = java.time.Year.now().getValue();
+        String director = promptOptionalString("Only movies by director: ", "");
+        int fromYear = promptOptionalInt("From year: ", 1888, currentYear, 1888);
+        int toYear = promptOptionalInt("To year: ", fromYear, currentYear, currentYear);
+        double minRating = promptOptionalDouble("Minimum rating: ", 0.0, 10.0, 0.0);
+        Comparator<Movie> order;
+        while (true) {
+            String sort = promptOptionalString("Sort by (title, year, rating, votes, runtime or scariness; "
+                    + "add \"desc\" to reverse, separate keys with commas) [id]: ", "id");
+            try {
+                order = sortOrder(sort);
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("⚠️ " + e.getMessage());
+            }
+        }
+
+        Predicate<Movie> filter = null;
+        if (!director.isEmpty() || fromYear > 1888 || toYear < currentYear || minRating > 0.0) {
+            filter = m -> (director.isEmpty() || m.getDirector().equals(director))
+                    && m.getYear() >= fromYear && m.getYear() <= toYear && m.getRating() >= minRating;
+        }
+        try {
+            long start = System.nanoTime();
+            long written = manager.export(path, format, filter, order);
+            System.out.printf("✅ Exported %d movies to %s (%.0f ms)%n", written, path, (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            System.out.println("❌ Export failed: " + e.getMessage());
+        }
+    }
+
+    // "rating desc, votes desc" and the like (see MovieOrder.parse); null for id order
+    static Comparator<Movie> sortOrder(String spec) {
+        MovieOrder order = MovieOrder.parse(spec);
+        return order.isIdOrder() ? null : order;
+    }
+
+    /**
+     * Top-N lists (scariest, best rated, most voted) and the whole catalog in
+     * any order. Top-N lists go through MovieManager.top, so they never sort
+     * the catalog.
+     */
+    public void showRankings() {
+        while (true) {
+            System.out.println("\n--- Rankings ---");
+            System.out.println("1. Scariest movies");
+            System.out.println("2. Highest rated movies");
+            System.out.println("3. Most voted movies");
+            System.out.println("4. Custom order");
+            System.out.println("5. Back");
+            System.out.print("Choose an option (1-5): ");
+            switch (sc.nextLine().trim()) {
+                case "1" -> showTop("Scariest", MovieOrder.by(MovieOrder.Key.SCARINESS, true)
+                        .then(MovieOrder.Key.RATING, true));
+                case "2" -> showTop("Highest rated", MovieOrder.by(MovieOrder.Key.RATING, true)
+                        .then(MovieOrder.Key.VOTES, true));
+                case "3" -> showTop("Most voted", MovieOrder.by(MovieOrder.Key.VOTES, true)
+                        .then(MovieOrder.Key.RATING, true));
+                case "4" -> showCustomOrder();
+                case "5", "" -> {
+                    return;
                 }
+                default -> System.out.println("❌ Invalid option. Please enter a number between 1 and 5.");
+            }
+        }
+    }
+
+    private void showTop(String label, MovieOrder order) {
+        int n = promptOptionalInt("How many movies? [" + RANKING_SIZE + "]: ", 1, Integer.MAX_VALUE, RANKING_SIZE);
+        long start = System.nanoTime();
+        List<Movie> ranked = manager.top(order, n);
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (ranked.isEmpty()) {
+            System.out.println("No movies available.");
+            return;
+        }
+        System.out.printf("%s %d (%.2f ms)%n", label, ranked.size(), millis);
+        printRanking(ranked);
+    }
+
+    private void showCustomOrder() {
+        MovieOrder order;
+        while (true) {
+            String spec = promptNonEmptyString("Order by (e.g. \"year desc, rating desc, title\"): ");
+            try {
+                order = MovieOrder.parse(spec);
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("⚠️ " + e.getMessage());
             }
         }
+        long start = System.nanoTime();
+        List<Movie> sorted = manager.sorted(order);
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (sorted.isEmpty()) {
+            System.out.println("No movies available.");
+            return;
+        }
+        System.out.printf("Sorted %d movies by %s (%.0f ms)%n", sorted.size(), order, millis);
+        showPages(sorted);
+    }
+
+    // Rank, the columns rankings are about and the scariness score
+    private void printRanking(List<Movie> ranked) {
+        row.setLength(0);
+        cell("No.", IDX_WIDTH).cell("Title", TITLE_WIDTH).cell("Year", YEAR_WIDTH).cell("Rating", RATING_WIDTH)
+                .cell("Votes", VOTES_WIDTH).lastCell("Scariness", SCARINESS_WIDTH);
+        out.println(row);
+        for (int i = 0; i < ranked.size(); i++) {
+            Movie m = ranked.get(i);
+            row.setLength(0);
+            cell(i + 1, IDX_WIDTH).cell(m.getTitle(), TITLE_WIDTH).cell(m.getYear(), YEAR_WIDTH)
+                    .ratingCell(m.getRating(), RATING_WIDTH).cell(m.getVotes(), VOTES_WIDTH);
+            out.println(row.append(String.format("%.2f", m.getScariness())));
+        }
+        out.flush();
     }
 
     public void showScariness() {
-        List<Movie> movies = manager.getAll();
+        List<Movie> movies = manager.snapshot();
         if (movies.isEmpty()) {
             System.out.println("No movies available.");
             return;
         }
-        listMovies();
+        showPages(movies);
         int choice = promptInt("Enter the number of the movie to calculate scariness: ", 1, movies.size());
         Movie m = movies.get(choice - 1);
         System.out.println("\n🎬 Movie Selected:");
@@ -171,6 +389,124 @@ public class MovieCLI {
         System.out.printf("😱 Scariness Score: %.1f / 10.0%n", m.getScariness());
     }
 
+    /**
+     * Catalog statistics. Every view reads the manager's running aggregates,
+     * so it takes the same time for ten movies or ten million.
+     */
+    public void showAnalytics() {
+        while (true) {
+            System.out.println("\n--- Analytics ---");
+            System.out.println("1. Overview");
+            System.out.println("2. Movies per year");
+            System.out.println("3. Top directors");
+            System.out.println("4. Statistics of one director");
+            System.out.println("5. Back");
+            System.out.print("Choose an option (1-5): ");
+            switch (sc.nextLine().trim()) {
+                case "1" -> showOverview();
+                case "2" -> showYears();
+                case "3" -> showTopDirectors();
+                case "4" -> showDirector();
+                case "5", "" -> {
+                    return;
+                }
+                default -> System.out.println("❌ Invalid option. Please enter a number between 1 and 5.");
+            }
+        }
+    }
+
+    private void showOverview() {
+        MovieAggregates.Stats total = manager.totals();
+        if (total.count == 0) {
+            System.out.println("No movies available.");
+            return;
+        }
+        out.printf("Movies: %d%n", total.count);
+        out.printf("Rating: average %.2f, lowest %.1f, highest %.1f%n", total.averageRating, total.minRating, total.maxRating);
+        out.printf("Total runtime: %d h %d min%n", total.totalRuntimeMinutes / 60, total.totalRuntimeMinutes % 60);
+        out.printf("Average scariness: %.2f / 10.0%n", total.averageScariness);
+
+        out.println("Scariness distribution:");
+        long[] buckets = manager.scarinessHistogram();
+        long most = 1;
+        for (long b : buckets) most = Math.max(most, b);
+        for (int i = 0; i < buckets.length; i++) {
+            int bar = (int) (buckets[i] * 40 / most);
+            out.printf("%2d-%-2d | %-40s %d%n", i, i + 1, "#".repeat(bar), buckets[i]);
+        }
+        out.flush();
+    }
+
+    private void showYears() {
+        Map<Integer, MovieAggregates.Stats> years = manager.statsByYear();
+        if (years.isEmpty()) {
+            System.out.println("No movies available.");
+            return;
+        }
+        out.printf("%-6s | %8s | %10s | %6s | %6s | %12s%n", "Year", "Movies", "Avg rating", "Min", "Max", "Runtime min");
+        for (Map.Entry<Integer, MovieAggregates.Stats> e : years.entrySet()) {
+            printStats(String.valueOf(e.getKey()), 6, e.getValue());
+        }
+        out.flush();
+    }
+
+    // The 20 directors with the most movies (ties: higher average rating first)
+    private void showTopDirectors() {
+        List<Map.Entry<String, MovieAggregates.Stats>> directors = new ArrayList<>(manager.statsByDirector().entrySet());
+        if (directors.isEmpty()) {
+            System.out.println("No movies available.");
+            return;
+        }
+        directors.sort(Comparator.comparingLong((Map.Entry<String, MovieAggregates.Stats> e) -> e.getValue().count)
+                .thenComparingDouble(e -> e.getValue().averageRating).reversed());
+        out.printf("%-" + DIRECTOR_WIDTH + "s | %8s | %10s | %6s | %6s | %12s%n",
+                "Director", "Movies", "Avg rating", "Min", "Max", "Runtime min");
+        for (Map.Entry<String, MovieAggregates.Stats> e : directors.subList(0, Math.min(20, directors.size()))) {
+            printStats(e.getKey(), DIRECTOR_WIDTH, e.getValue());
+        }
+        if (directors.size() > 20) out.printf("(%d more directors)%n", directors.size() - 20);
+        out.flush();
+    }
+
+    private void showDirector() {
+        String director = promptNonEmptyString("Director: ");
+        MovieAggregates.Stats stats = manager.directorStats(director);
+        if (stats == null) {
+            System.out.println("No movies by " + director + ".");
+            return;
+        }
+        out.printf("%s: %d movies, average rating %.2f (lowest %.1f, highest %.1f), %d min in total, average scariness %.2f%n",
+                director, stats.count, stats.averageRating, stats.minRating, stats.maxRating,
+                stats.totalRuntimeMinutes, stats.averageScariness);
+        out.flush();
+    }
+
+    private void printStats(String label, int width, MovieAggregates.Stats stats) {
+        row.setLength(0);
+        cell(label, width); // cut to the column width, with the separator
+        out.printf("%s%8d | %10.2f | %6.1f | %6.1f | %12d%n", row, stats.count, stats.averageRating,
+                stats.minRating, stats.maxRating, stats.totalRuntimeMinutes);
+    }
+
+    public void showStats() {
+        MovieMetrics metrics = manager.getMetrics();
+        if (!metrics.isEnabled()) {
+            System.out.println("Metrics are disabled (start the program without --no-metrics to collect them).");
+            return;
+        }
+
+        System.out.println("\n--- Statistics ---");
+        out.printf("%-8s | %8s | %10s | %10s | %10s | %10s%n", "Op", "Count", "p50 ms", "p99 ms", "max ms", "per sec");
+        for (Map.Entry<String, MovieMetrics.OperationStats> e : metrics.getOperations().entrySet()) {
+            MovieMetrics.OperationStats op = e.getValue();
+            out.printf("%-8s | %8d | %10.3f | %10.3f | %10.3f | %10.2f%n", e.getKey(), op.getCount(),
+                    op.getP50Millis(), op.getP99Millis(), op.getMaxMillis(), op.getPerSecond());
+        }
+        out.printf("Rows loaded: %d, uploaded: %d, skipped as invalid: %d, bytes written: %d%n",
+                metrics.getRowsLoaded(), metrics.getRowsUploaded(), metrics.getRowsSkipped(), metrics.getBytesWritten());
+        out.flush();
+    }
+
     // ----------------- Input Helpers -----------------
 
     public String promptNonEmptyString(String prompt) {
@@ -269,10 +605,47 @@ public class MovieCLI {
         }
     }
 
-    // ----------------- Helpers -----------------
+    // ----------------- Table Rendering -----------------
+
+    // Appends text cut or padded to width, followed by the column separator
+    private MovieCLI cell(String text, int width) {
+        lastCell(text, width);
+        row.append(" | ");
+        return this;
+    }
+
+    private MovieCLI cell(int value, int width) {
+        int start = row.length();
+        row.append(value);
+        pad(start, width);
+        row.append(" | ");
+        return this;
+    }
+
+    private MovieCLI lastCell(String text, int width) {
+        int start = row.length();
+        row.append(text, 0, Math.min(text.length(), width));
+        return pad(start, width);
+    }
+
+    // One decimal place; ratings that already have at most one skip the Formatter
+    private MovieCLI ratingCell(double rating, int width) {
+        int start = row.length();
+        double tenths = rating * 10;
+        if (tenths >= 0 && tenths < Integer.MAX_VALUE && tenths == Math.rint(tenths)) {
+            int t = (int) tenths;
+            row.append(t / 10).append('.').append(t % 10);
+        } else {
+            row.append(String.format("%.1f", rating));
+        }
+        pad(start, width);
+        row.append(" | ");
+        return this;
+    }
 
-    private String padRight(String text, int length) {
-        if (text.length() > length) return text.substring(0, length);
-        return String.format("%-" + length + "s", text);
+    private MovieCLI pad(int start, int width) {
+        if (row.length() - start > width) row.setLength(start + width);
+        while (row.length() - start < width) row.append(' ');
+        return this;
     }
 }
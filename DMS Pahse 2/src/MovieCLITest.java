@@ -1,5 +1,10 @@
 import org.junit.jupiter.api.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.List;
+import java.util.function.Consumer;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MovieCLITest {
@@ -118,4 +123,122 @@ class MovieCLITest {
         cli.deleteMovie();
         assertEquals(0, manager.getAll().size());
     }
+
+    @Test
+    void testListMoviesCLI_PagesThroughCatalog() {
+        for (int i = 1; i <= 45; i++) {
+            manager.addMovie(new Movie("Movie " + i, 2000, "Director", 7.5, 90, i, i % 2 == 0));
+        }
+
+        // next page, jump to page 3, then leave
+        String text = runCli(manager, "n\n3\n\n", MovieCLI::listMovies);
+        assertTrue(text.contains("Page 1/3"));
+        assertTrue(text.contains("Page 2/3"));
+        assertTrue(text.contains("Page 3/3"));
+        assertTrue(text.contains("1    | Movie 1                   | Director             | 2000   | 7.5    | 90       | 1        | No      "));
+        assertTrue(text.contains("45   | Movie 45 "));
+        assertEquals(3, text.split("No\\.  ", -1).length - 1); // one table header per page shown
+    }
+
+    @Test
+    void testAnalyticsCLI_ShowsRunningAggregates() {
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+
+        // overview, years, top directors, back
+        String text = runCli(manager, "1\n2\n3\n5\n", MovieCLI::showAnalytics);
+        assertTrue(text.contains("Movies: 3"));
+        assertTrue(text.contains("Rating: average 8.17, lowest 7.8, highest 8.5"));
+        assertTrue(text.contains("Total runtime: 5 h 17 min"));
+        assertTrue(text.contains("1979   |        1 |       8.50 |    8.5 |    8.5 |          117"));
+        assertTrue(text.contains("John Carpenter       |        2 |       8.00 |    7.8 |    8.2 |          200"));
+        assertTrue(text.indexOf("John Carpenter       |") < text.indexOf("Ridley Scott         |"));
+    }
+
+    @Test
+    void testRankingsCLI_TopListsAndCustomOrder() {
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+
+        // top 2 by rating, scariest (default length), custom order, back
+        String text = runCli(manager, "2\n2\n1\n\n4\nyear desc\n5\n", MovieCLI::showRankings);
+        assertTrue(text.contains("Highest rated 2"));
+        assertTrue(text.indexOf("1    | Alien ") < text.indexOf("2    | The Thing "));
+        assertFalse(text.substring(text.indexOf("Highest rated 2"), text.indexOf("Scariest 3")).contains("Halloween"));
+        assertTrue(text.contains("Scariest 3"));
+        assertTrue(text.contains("Sorted 3 movies by year desc"));
+        assertTrue(text.lastIndexOf("The Thing") < text.lastIndexOf("Halloween"));
+    }
+
+    @Test
+    void testSearchCLI_ShowsMatchesInTable() {
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.addMovie(new Movie("Hellraiser", 1987, "Clive Barker", 6.9, 94, 130000, false));
+
+        // a search with a typo, then one without matches
+        String text = runCli(manager, "hellriser\nzzz\n", c -> {
+            c.searchMovies();
+            c.searchMovies();
+        });
+        assertTrue(text.contains("Matches: 1 ("));
+        assertTrue(text.contains("1    | Hellraiser                | Clive Barker "));
+        assertFalse(text.contains("Halloween"));
+        assertTrue(text.contains("No movies match \"zzz\"."));
+    }
+
+    @Test
+    void testBatch_RunsScriptAndReportsEachCommand() throws Exception {
+        String script = String.join("\n",
+                "# two movies, then changes",
+                "add Halloween,1978,John Carpenter,7.8,91,200000,false",
+                "add Alien,1979,Ridley Scott,8.5,117,900000,true",
+                "",
+                "update 1 Halloween,1978,John Carpenter,7.9,91,210000,true",
+                "get 1",
+                "search alien",
+                "delete 2",
+                "delete 2",
+                "add Broken,19x9,Nobody,5.0,90,1,false",
+                "frobnicate",
+                "count");
+        java.io.StringWriter out = new java.io.StringWriter();
+        MovieBatch.Summary summary = new MovieBatch(manager, 2)
+                .run(new java.io.BufferedReader(new java.io.StringReader(script)), out);
+
+        assertEquals(List.of(
+                "2\tok\t1",
+                "3\tok\t2",
+                "5\tok\t1",
+                "6\tok\t1,Halloween,1978,John Carpenter,7.9,91,210000,true",
+                "7\tok\t2",
+                "8\tok\t2",
+                "9\terror\tNo movie with id 2",
+                "10\terror\tYear is not a valid integer: '19x9'",
+                "11\terror\tUnknown command: frobnicate",
+                "12\tok\t1"), List.of(out.toString().split("\n")));
+        assertEquals(10, summary.commands);
+        assertEquals(3, summary.errors);
+        assertEquals(1, manager.size());
+    }
+
+    /**
+     * Runs commands on a new MovieCLI over mm that reads input as what the
+     * user types, and returns what it printed.
+     */
+    private static String runCli(MovieManager mm, String input, Consumer<MovieCLI> commands) {
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream(input.getBytes()));
+            System.setOut(new PrintStream(captured, true));
+            commands.accept(new MovieCLI(mm));
+        } finally {
+            System.setIn(in);
+            System.setOut(out);
+        }
+        return captured.toString();
+    }
 }
@@ -0,0 +1,176 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of movies stored in fixed-capacity chunks that supports cheap
+ * immutable snapshots (copy-on-write per chunk).
+ *
+ * snapshot() only copies the chunk directory, not the movies. The chunks
+ * it references become shared; the next write to a shared chunk copies
+ * that one chunk (at most CHUNK references) before changing it, so
+ * snapshots never see later changes. Removing a row only shifts the rest of
+ * its chunk and the directory offsets instead of the whole list.
+ *
+ * Not thread-safe on its own: MovieManager calls the mutators under its
+ * write lock and snapshot() under its read lock.
+ */
+public class MovieChunkList extends AbstractList<Movie> implements RandomAccess {
+
+    private static final int CHUNK = 1024;
+
+    private Movie[][] chunks = new Movie[4][];
+    private int[] sizes = new int[4];   // rows in each chunk
+    private int[] starts = new int[4];  // list index of the first row of each chunk
+    private int[] owner = new int[4];   // epoch in which this list last copied the chunk
+    private int chunkCount;
+    private int size;
+    private int epoch;                  // bumped by snapshot(); older chunks are shared
+
+    // ---------------- List interface ----------------
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Movie get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        int k = chunkOf(starts, chunkCount, i);
+        return chunks[k][i - starts[k]];
+    }
+
+    @Override
+    public boolean add(Movie m) {
+        int last = chunkCount - 1;
+        if (last < 0 || sizes[last] == CHUNK) {
+            appendChunk();
+            last = chunkCount - 1;
+        } else {
+            writable(last);
+        }
+        chunks[last][sizes[last]++] = m;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Movie set(int i, Movie m) {
+        Movie old = get(i);
+        int k = chunkOf(starts, chunkCount, i);
+        writable(k);
+        chunks[k][i - starts[k]] = m;
+        return old;
+    }
+
+    @Override
+    public Movie remove(int i) {
+        Movie old = get(i);
+        int k = chunkOf(starts, chunkCount, i);
+        writable(k);
+        int offset = i - starts[k];
+        System.arraycopy(chunks[k], offset + 1, chunks[k], offset, sizes[k] - offset - 1);
+        chunks[k][--sizes[k]] = null;
+        size--;
+        if (sizes[k] == 0) {
+            removeChunk(k);
+        } else {
+            for (int j = k + 1; j < chunkCount; j++) starts[j]--;
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        chunks = new Movie[4][];
+        sizes = new int[4];
+        starts = new int[4];
+        owner = new int[4];
+        chunkCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    // ---------------- Snapshots ----------------
+
+    /**
+     * Immutable view of the current contents. Costs one copy of the chunk
+     * directory (size / CHUNK entries).
+     */
+    public synchronized List<Movie> snapshot() {
+        View view = new View(Arrays.copyOf(chunks, chunkCount), Arrays.copyOf(starts, chunkCount), size);
+        epoch++;
+        return view;
+    }
+
+    private static class View extends AbstractList<Movie> implements RandomAccess {
+        private final Movie[][] chunks;
+        private final int[] starts;
+        private final int size;
+
+        View(Movie[][] chunks, int[] starts, int size) {
+            this.chunks = chunks;
+            this.starts = starts;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Movie get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            int k = chunkOf(starts, chunks.length, i);
+            return chunks[k][i - starts[k]];
+        }
+    }
+
+    // ---------------- Helpers ----------------
+
+    // Chunk holding list index i: the last chunk whose start is <= i
+    private static int chunkOf(int[] starts, int count, int i) {
+        int lo = 0, hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= i) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Copies chunk k first if a snapshot may still be reading it
+    private void writable(int k) {
+        if (owner[k] != epoch) {
+            chunks[k] = Arrays.copyOf(chunks[k], CHUNK);
+            owner[k] = epoch;
+        }
+    }
+
+    private void appendChunk() {
+        if (chunkCount == chunks.length) {
+            int n = chunkCount * 2;
+            chunks = Arrays.copyOf(chunks, n);
+            sizes = Arrays.copyOf(sizes, n);
+            starts = Arrays.copyOf(starts, n);
+            owner = Arrays.copyOf(owner, n);
+        }
+        chunks[chunkCount] = new Movie[CHUNK];
+        sizes[chunkCount] = 0;
+        starts[chunkCount] = size;
+        owner[chunkCount] = epoch;
+        chunkCount++;
+    }
+
+    private void removeChunk(int k) {
+        int tail = chunkCount - k - 1;
+        System.arraycopy(chunks, k + 1, chunks, k, tail);
+        System.arraycopy(sizes, k + 1, sizes, k, tail);
+        System.arraycopy(starts, k + 1, starts, k, tail);
+        System.arraycopy(owner, k + 1, owner, k, tail);
+        chunkCount--;
+        chunks[chunkCount] = null;
+        for (int j = k; j < chunkCount; j++) starts[j]--;
+    }
+}
@@ -0,0 +1,297 @@
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented movie storage used by MovieManager in columnar mode.
+ *
+ * Every attribute lives in its own primitive array instead of one Movie
+ * object per row: long[] for the id, int[] for year, runtime and votes, double[] for rating, a
+ * bit array for watched, dictionary codes for the (low-cardinality) director and
+ * a packed UTF-8 byte arena for the (mostly unique) title. Movie objects are
+ * only created when a row is read through the List interface, so the
+ * manager code works unchanged on top of it.
+ *
+ * snapshot() returns a read-only view of the rows as they are, built on the
+ * same arrays, which are then copied on write: appends go past the end of
+ * every view and copy nothing, while the first replace or remove after a
+ * snapshot copies the columns (not the titles) once. Slots a view can read
+ * are never written again, so views can be read without a lock.
+ */
+public class MovieColumns extends AbstractList<Movie> implements RandomAccess {
+
+    private int size;
+    private long[] id = new long[16];
+    private int[] year = new int[16];
+    private int[] runtime = new int[16];
+    private int[] votes = new int[16];
+    private double[] rating = new double[16];
+    private long[] watched = new long[1]; // one bit per row
+    private int[] director = new int[16];
+
+    // Titles are stored back to back; removed or replaced titles leave garbage
+    // behind that is reclaimed once it makes up half of the arena.
+    private int[] titleStart = new int[16];
+    private int[] titleLength = new int[16];
+    private byte[] titleBytes = new byte[256];
+    private int titleEnd;
+    private int titleGarbage;
+
+    private final StringDictionary directors = new StringDictionary();
+
+    // Whether a snapshot shares the arrays; set by readers, so volatile
+    private volatile boolean shared;
+
+    /**
+     * Maps strings to dense int codes and back.
+     * Codes are never reused, so a code stays valid for the life of the store.
+     * Values are only appended (to a new array when full), so the array a
+     * snapshot holds keeps decoding every code it can contain.
+     */
+    public static class StringDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[16];
+        private int count;
+
+        public int encode(String s) {
+            Integer code = codes.get(s);
+            if (code == null) {
+                code = count;
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count++] = s;
+                codes.put(s, code);
+            }
+            return code;
+        }
+
+        public String decode(int code) { return values[code]; }
+
+        public int size() { return count; }
+    }
+
+    // ---------------- List interface ----------------
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Movie get(int i) {
+        checkIndex(i);
+        return row(i, id, year, runtime, votes, rating, watched, director, titleStart, titleLength, titleBytes, directors.values);
+    }
+
+    @Override
+    public boolean add(Movie m) {
+        addRow(m.getId(), m.getTitle(), m.getYear(), m.getDirector(), m.getRating(),
+                m.getRuntimeMinutes(), m.getVotes(), m.isWatched());
+        return true;
+    }
+
+    @Override
+    public Movie set(int i, Movie m) {
+        Movie old = get(i);
+        unshare();
+        titleGarbage += titleLength[i];
+        writeRow(i, m.getId(), m.getTitle(), m.getYear(), m.getDirector(), m.getRating(),
+                m.getRuntimeMinutes(), m.getVotes(), m.isWatched());
+        compactTitlesIfNeeded();
+        return old;
+    }
+
+    @Override
+    public Movie remove(int i) {
+        Movie old = get(i);
+        unshare();
+        titleGarbage += titleLength[i];
+        int tail = size - i - 1;
+        System.arraycopy(id, i + 1, id, i, tail);
+        System.arraycopy(year, i + 1, year, i, tail);
+        System.arraycopy(runtime, i + 1, runtime, i, tail);
+        System.arraycopy(votes, i + 1, votes, i, tail);
+        System.arraycopy(rating, i + 1, rating, i, tail);
+        System.arraycopy(director, i + 1, director, i, tail);
+        System.arraycopy(titleStart, i + 1, titleStart, i, tail);
+        System.arraycopy(titleLength, i + 1, titleLength, i, tail);
+        for (int j = i; j < size - 1; j++) setWatched(j, isWatched(watched, j + 1));
+        setWatched(size - 1, false);
+        size--;
+        modCount++;
+        compactTitlesIfNeeded();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        // New arrays rather than overwriting ones a snapshot may hold
+        id = new long[16];
+        year = new int[16];
+        runtime = new int[16];
+        votes = new int[16];
+        rating = new double[16];
+        watched = new long[1];
+        director = new int[16];
+        titleStart = new int[16];
+        titleLength = new int[16];
+        titleBytes = new byte[256];
+        size = 0;
+        titleEnd = 0;
+        titleGarbage = 0;
+        shared = false;
+        modCount++;
+    }
+
+    /**
+     * The rows as they are now, as an immutable list that later changes do
+     * not affect. Taking one copies nothing; Movies are built as rows are read.
+     */
+    public List<Movie> snapshot() {
+        shared = true;
+        return new Snapshot(this);
+    }
+
+    // ---------------- Column access ----------------
+
+    /**
+     * Appends a row without creating a Movie (used by the loaders).
+     */
+    public void addRow(long id, String title, int year, String director, double rating,
+                       int runtimeMinutes, int votes, boolean watched) {
+        ensureCapacity(size + 1);
+        writeRow(size, id, title, year, director, rating, runtimeMinutes, votes, watched);
+        size++;
+        modCount++;
+    }
+
+    public long idAt(int i) { return id[i]; }
+    public int yearAt(int i) { return year[i]; }
+    public double ratingAt(int i) { return rating[i]; }
+    public String directorAt(int i) { return directors.decode(director[i]); }
+    public String titleAt(int i) { return new String(titleBytes, titleStart[i], titleLength[i], StandardCharsets.UTF_8); }
+
+    // ---------------- Snapshots ----------------
+
+    // The arrays of the store when the snapshot was taken, and its size
+    private static final class Snapshot extends AbstractList<Movie> implements RandomAccess {
+        private final int size;
+        private final long[] id;
+        private final int[] year, runtime, votes, director, titleStart, titleLength;
+        private final double[] rating;
+        private final long[] watched;
+        private final byte[] titleBytes;
+        private final String[] directors;
+
+        Snapshot(MovieColumns c) {
+            size = c.size;
+            id = c.id;
+            year = c.year;
+            runtime = c.runtime;
+            votes = c.votes;
+            director = c.director;
+            titleStart = c.titleStart;
+            titleLength = c.titleLength;
+            rating = c.rating;
+            watched = c.watched;
+            titleBytes = c.titleBytes;
+            directors = c.directors.values;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Movie get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            return row(i, id, year, runtime, votes, rating, watched, director, titleStart, titleLength, titleBytes, directors);
+        }
+    }
+
+    private static Movie row(int i, long[] id, int[] year, int[] runtime, int[] votes, double[] rating, long[] watched,
+                             int[] director, int[] titleStart, int[] titleLength, byte[] titleBytes, String[] directors) {
+        Movie m = new Movie(new String(titleBytes, titleStart[i], titleLength[i], StandardCharsets.UTF_8), year[i],
+                directors[director[i]], rating[i], runtime[i], votes[i], isWatched(watched, i));
+        m.setId(id[i]);
+        return m;
+    }
+
+    // Copies the columns a snapshot shares before rows it can see are overwritten
+    private void unshare() {
+        if (!shared) return;
+        id = id.clone();
+        year = year.clone();
+        runtime = runtime.clone();
+        votes = votes.clone();
+        rating = rating.clone();
+        watched = watched.clone();
+        director = director.clone();
+        titleStart = titleStart.clone();
+        titleLength = titleLength.clone();
+        shared = false; // titles are only appended (or compacted into a new arena)
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static boolean isWatched(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void setWatched(int i, boolean value) {
+        if (value) watched[i >>> 6] |= 1L << i;
+        else watched[i >>> 6] &= ~(1L << i);
+    }
+
+    private void writeRow(int i, long id, String title, int year, String director, double rating,
+                          int runtimeMinutes, int votes, boolean watched) {
+        byte[] t = title.getBytes(StandardCharsets.UTF_8);
+        if (titleEnd + t.length > titleBytes.length) {
+            titleBytes = Arrays.copyOf(titleBytes, Math.max(titleEnd + t.length, titleBytes.length * 2));
+        }
+        System.arraycopy(t, 0, titleBytes, titleEnd, t.length);
+        titleStart[i] = titleEnd;
+        titleLength[i] = t.length;
+        titleEnd += t.length;
+
+        this.id[i] = id;
+        this.year[i] = year;
+        this.runtime[i] = runtimeMinutes;
+        this.votes[i] = votes;
+        this.rating[i] = rating;
+        setWatched(i, watched);
+        this.director[i] = directors.encode(director);
+    }
+
+    private void compactTitlesIfNeeded() {
+        if (titleGarbage < 4096 || titleGarbage * 2 < titleEnd) return;
+        byte[] packed = new byte[Math.max(256, titleEnd - titleGarbage)];
+        int end = 0;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(titleBytes, titleStart[i], packed, end, titleLength[i]);
+            titleStart[i] = end; // callers unshare() first
+            end += titleLength[i];
+        }
+        titleBytes = packed;
+        titleEnd = end;
+        titleGarbage = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= year.length) return;
+        int n = Math.max(capacity, year.length + (year.length >> 1));
+        id = Arrays.copyOf(id, n);
+        year = Arrays.copyOf(year, n);
+        runtime = Arrays.copyOf(runtime, n);
+        votes = Arrays.copyOf(votes, n);
+        rating = Arrays.copyOf(rating, n);
+        watched = Arrays.copyOf(watched, (n + 63) >>> 6);
+        director = Arrays.copyOf(director, n);
+        titleStart = Arrays.copyOf(titleStart, n);
+        titleLength = Arrays.copyOf(titleLength, n);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+}
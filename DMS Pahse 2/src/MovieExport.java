@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Streams a filtered, optionally sorted part of a catalog snapshot to a CSV
+ * or JSON Lines file (MovieManager.export).
+ *
+ * Rows are encoded into a 1 MB buffer that is written to a FileChannel, and
+ * nothing is collected in id order. A sorted export never holds more than
+ * RUN rows at a time: it sorts the positions of matching rows in runs,
+ * spills each full run to a temporary file (4 bytes per row) and merges the
+ * runs while writing. Positions index the snapshot, which is immutable, so
+ * the movies themselves are never copied. Memory is the run (its positions
+ * and references), the output buffer and a 64 KB read buffer per spilled run.
+ */
+public final class MovieExport {
+
+    private static final int RUN = 1 << 18;            // positions sorted in memory at a time
+    private static final int OUTPUT_BUFFER = 1 << 20;
+    private static final int RUN_READ_BUFFER = 1 << 16;
+
+    private MovieExport() {
+    }
+
+    /**
+     * Writes the rows of snapshot that pass filter (all when null), in
+     * order (id order when null; rows that compare equal keep id order).
+     * Returns the number of rows written.
+     */
+    public static long write(List<Movie> snapshot, Path path, MovieManager.ExportFormat format,
+                             Predicate<Movie> filter, Comparator<Movie> order) throws IOException {
+        return write(snapshot, path, format, filter, order, RUN);
+    }
+
+    // runSize: positions sorted in memory before a run is spilled (tests use tiny runs)
+    static long write(List<Movie> snapshot, Path path, MovieManager.ExportFormat format,
+                      Predicate<Movie> filter, Comparator<Movie> order, int runSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Output out = new Output(channel, format)) {
+            if (format == MovieManager.ExportFormat.CSV) out.ascii(MovieManager.EXPORT_HEADER).ascii("\n");
+            if (order == null) {
+                long written = 0;
+                for (Movie m : snapshot) {
+                    if (filter != null && !filter.test(m)) continue;
+                    out.row(m);
+                    written++;
+                }
+                return written;
+            }
+            return writeSorted(snapshot, path, filter, order, runSize, out);
+        }
+    }
+
+    private static long writeSorted(List<Movie> snapshot, Path path, Predicate<Movie> filter,
+                                    Comparator<Movie> order, int runSize, Output out) throws IOException {
+        // A run keeps the movies next to their positions, so sorting it does
+        // not look rows up in the snapshot for every comparison
+        int capacity = Math.min(runSize, Math.max(1, snapshot.size()));
+        Movie[] rows = new Movie[capacity];
+        int[] positions = new int[capacity];
+        int[] perm = new int[capacity];
+        int[] scratch = new int[capacity];
+        MovieSort.IndexOrder inRun = (a, b) -> {
+            int c = order.compare(rows[a], rows[b]);
+            return c != 0 ? c : Integer.compare(positions[a], positions[b]);
+        };
+        int n = 0;
+        List<Path> spilled = new ArrayList<>();
+        try {
+            for (int i = 0; i < snapshot.size(); i++) {
+                Movie m = snapshot.get(i);
+                if (filter != null && !filter.test(m)) continue;
+                if (n == capacity) {
+                    sortRun(perm, scratch, positions, n, inRun);
+                    spilled.add(spill(positions, n, path));
+                    n = 0;
+                }
+                rows[n] = m;
+                positions[n++] = i;
+            }
+            sortRun(perm, scratch, positions, n, inRun);
+            Arrays.fill(rows, null);
+
+            if (spilled.isEmpty()) {
+                for (int i = 0; i < n; i++) out.row(snapshot.get(positions[i]));
+                return n;
+            }
+            return merge(snapshot, spilled, positions, n, order, out);
+        } finally {
+            for (Path p : spilled) Files.deleteIfExists(p);
+        }
+    }
+
+    // Sorts the first n entries of the run; positions ends up in sorted order
+    private static void sortRun(int[] perm, int[] scratch, int[] positions, int n, MovieSort.IndexOrder inRun) {
+        for (int i = 0; i < n; i++) perm[i] = i;
+        MovieSort.sort(perm, scratch, 0, n, inRun);
+        for (int i = 0; i < n; i++) scratch[i] = positions[perm[i]];
+        System.arraycopy(scratch, 0, positions, 0, n);
+    }
+
+    // k-way merge of the spilled runs and the last run, still in memory
+    private static long merge(List<Movie> snapshot, List<Path> spilled, int[] last, int lastSize,
+                              Comparator<Movie> order, Output out) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> {
+                int c = order.compare(a.movie, b.movie);
+                return c != 0 ? c : Integer.compare(a.current, b.current);
+            });
+            for (Path p : spilled) {
+                RunReader r = new RunReader(snapshot, FileChannel.open(p, StandardOpenOption.READ), null, 0);
+                readers.add(r);
+                if (r.advance()) queue.add(r);
+            }
+            RunReader memory = new RunReader(snapshot, null, last, lastSize);
+            if (memory.advance()) queue.add(memory);
+
+            long written = 0;
+            while (!queue.isEmpty()) {
+                RunReader r = queue.poll();
+                out.row(r.movie);
+                written++;
+                if (r.advance()) queue.add(r);
+            }
+            return written;
+        } finally {
+            for (RunReader r : readers) r.close();
+        }
+    }
+
+    // Writes a sorted run next to the export target and returns the file
+    private static Path spill(int[] run, int n, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path file = Files.createTempFile(dir, "export-run", ".tmp");
+        ByteBuffer bytes = ByteBuffer.allocate(RUN_READ_BUFFER);
+        IntBuffer ints = bytes.asIntBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < n; ) {
+                int count = Math.min(ints.capacity(), n - i);
+                ints.clear();
+                ints.put(run, i, count);
+                bytes.clear().limit(count * 4);
+                while (bytes.hasRemaining()) channel.write(bytes);
+                i += count;
+            }
+        }
+        return file;
+    }
+
+    // Positions of one sorted run, from its file or from memory, and the movie at the current one
+    private static final class RunReader {
+        private final List<Movie> snapshot;
+        private final FileChannel channel;
+        private final int[] memory;
+        private final int memorySize;
+        private final ByteBuffer bytes;
+        private int index;
+        int current;
+        Movie movie;
+
+        RunReader(List<Movie> snapshot, FileChannel channel, int[] memory, int memorySize) {
+            this.snapshot = snapshot;
+            this.channel = channel;
+            this.memory = memory;
+            this.memorySize = memorySize;
+            this.bytes = channel == null ? null : ByteBuffer.allocate(RUN_READ_BUFFER).flip();
+        }
+
+        // Moves to the next position; false at the end of the run
+        boolean advance() throws IOException {
+            if (memory != null) {
+                if (index == memorySize) return false;
+                current = memory[index++];
+                movie = snapshot.get(current);
+                return true;
+            }
+            if (bytes.remaining() < 4) {
+                bytes.compact();
+                while (bytes.hasRemaining() && channel.read(bytes) > 0) { }
+                bytes.flip();
+                if (bytes.remaining() < 4) return false;
+            }
+            current = bytes.getInt();
+            movie = snapshot.get(current);
+            return true;
+        }
+
+        void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    // Encoded rows in a large heap buffer, written to the channel when full
+    private static final class Output extends MovieOutput implements AutoCloseable {
+        private final FileChannel channel;
+        private final MovieManager.ExportFormat format;
+
+        Output(FileChannel channel, MovieManager.ExportFormat format) {
+            super(new byte[OUTPUT_BUFFER]);
+            this.channel = channel;
+            this.format = format;
+        }
+
+        void row(Movie m) throws IOException {
+            if (format == MovieManager.ExportFormat.CSV) csv(m); else json(m);
+            if (pos == buf.length) drain();
+            buf[pos++] = '\n';
+        }
+
+        @Override
+        protected void drain() throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(buf, 0, pos);
+            while (bytes.hasRemaining()) channel.write(bytes);
+            pos = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Open-addressing hash map from movie id (a positive long) to Movie.
+ *
+ * Keys live in a primitive long[] with linear probing, so lookups do not box
+ * the id or chase entry objects. Removed slots become tombstones that keep
+ * probe chains intact; they are reused by inserts and dropped when the table
+ * is rebuilt.
+ */
+public class MovieIdMap {
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    private long[] keys = new long[16];
+    private Movie[] values = new Movie[16];
+    private int size;
+    private int used; // live entries + tombstones
+
+    public int size() { return size; }
+
+    public Movie get(long id) {
+        int slot = find(id);
+        return slot < 0 ? null : values[slot];
+    }
+
+    public void put(long id, Movie m) {
+        if (id <= 0) throw new IllegalArgumentException("Movie id must be positive: " + id);
+        int slot = find(id);
+        if (slot >= 0) {
+            values[slot] = m;
+            return;
+        }
+        if ((used + 1) * 4L > keys.length * 3L) rehash(size + 1);
+
+        int mask = keys.length - 1;
+        int i = mix(id) & mask;
+        while (keys[i] != EMPTY && keys[i] != TOMBSTONE) i = (i + 1) & mask;
+        if (keys[i] == EMPTY) used++;
+        keys[i] = id;
+        values[i] = m;
+        size++;
+    }
+
+    public Movie remove(long id) {
+        int slot = find(id);
+        if (slot < 0) return null;
+        Movie old = values[slot];
+        keys[slot] = TOMBSTONE;
+        values[slot] = null;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        keys = new long[16];
+        values = new Movie[16];
+        size = 0;
+        used = 0;
+    }
+
+    // ---------------- Helpers ----------------
+
+    private int find(long id) {
+        if (id <= 0) return -1;
+        int mask = keys.length - 1;
+        int i = mix(id) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == id) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Rebuilds the table for the given number of live entries, dropping tombstones
+    private void rehash(int expected) {
+        int capacity = 16;
+        while (capacity * 3L < expected * 4L * 2) capacity <<= 1; // keep it at most ~37% full after rebuild
+        long[] oldKeys = keys;
+        Movie[] oldValues = values;
+        keys = new long[capacity];
+        values = new Movie[capacity];
+        used = 0;
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k == EMPTY || k == TOMBSTONE) continue;
+            int i = mix(k) & mask;
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+            used++;
+        }
+    }
+
+    // Ids are sequential, so spread them before masking (murmur3 finalizer)
+    private static int mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        return (int) k;
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the movie catalog, kept up to date by MovieManager.
+ *
+ * - director: hash index, O(1) lookup
+ * - year and rating: sorted indexes, O(log n + k) range queries
+ *
+ * Each key maps to the movies with that value in insertion order, keyed by
+ * id so that removing or replacing a movie does not scan its bucket.
+ */
+public class MovieIndex {
+
+    private final Map<String, Map<Long, Movie>> byDirector = new HashMap<>();
+    private final TreeMap<Integer, Map<Long, Movie>> byYear = new TreeMap<>();
+    private final TreeMap<Double, Map<Long, Movie>> byRating = new TreeMap<>();
+
+    public void add(Movie m) {
+        byDirector.computeIfAbsent(m.getDirector(), k -> new LinkedHashMap<>()).put(m.getId(), m);
+        byYear.computeIfAbsent(m.getYear(), k -> new LinkedHashMap<>()).put(m.getId(), m);
+        byRating.computeIfAbsent(m.getRating(), k -> new LinkedHashMap<>()).put(m.getId(), m);
+    }
+
+    public void remove(Movie m) {
+        removeFrom(byDirector, m.getDirector(), m);
+        removeFrom(byYear, m.getYear(), m);
+        removeFrom(byRating, m.getRating(), m);
+    }
+
+    public void clear() {
+        byDirector.clear();
+        byYear.clear();
+        byRating.clear();
+    }
+
+    public void rebuild(List<Movie> movies) {
+        clear();
+        for (Movie m : movies) add(m);
+    }
+
+    // ---------------- Queries ----------------
+
+    public List<Movie> findByDirector(String director) {
+        Map<Long, Movie> found = byDirector.get(director);
+        return found == null ? new ArrayList<>() : new ArrayList<>(found.values());
+    }
+
+    // Movies with fromYear <= year <= toYear, ordered by year
+    public List<Movie> findByYearRange(int fromYear, int toYear) {
+        if (fromYear > toYear) return new ArrayList<>();
+        return flatten(byYear.subMap(fromYear, true, toYear, true));
+    }
+
+    // Movies with rating > minRating, ordered by rating
+    public List<Movie> findByRatingAbove(double minRating) {
+        return flatten(byRating.tailMap(minRating, false));
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static <K> void removeFrom(Map<K, Map<Long, Movie>> index, K key, Movie m) {
+        Map<Long, Movie> bucket = index.get(key);
+        if (bucket == null) return;
+        bucket.remove(m.getId());
+        if (bucket.isEmpty()) index.remove(key);
+    }
+
+    private static <K> List<Movie> flatten(NavigableMap<K, Map<Long, Movie>> range) {
+        List<Movie> result = new ArrayList<>();
+        for (Map<Long, Movie> bucket : range.values()) result.addAll(bucket.values());
+        return result;
+    }
+}
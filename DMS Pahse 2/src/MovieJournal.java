@@ -0,0 +1,224 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log used by MovieManager in journaled mode.
+ *
+ * The log is split into numbered segments next to the CSV file
+ * (movies.csv.0.log, movies.csv.1.log, ...). Every record is one line:
+ *
+ *   op|payload|crc32
+ *
+ * where crc32 (hex) covers "op|payload". Adds and updates carry "id,csv row",
+ * removals just the movie id. A final line without a newline or
+ * with a bad checksum is a torn write from a crash; it is dropped and the
+ * segment is truncated back to the last good record.
+ */
+public class MovieJournal {
+
+    public static final char ADD = 'A';
+    public static final char REMOVE = 'R';
+    public static final char UPDATE = 'U';
+
+    private final String basePath;
+    private int generation;          // segment currently appended to
+    private int pendingRecords;      // records in the current segment
+    private OutputStream out;
+    private FileOutputStream file;   // underlying file of out, for sync()
+
+    public MovieJournal(String basePath) {
+        this.basePath = basePath;
+    }
+
+    public int getGeneration() { return generation; }
+    public int getPendingRecords() { return pendingRecords; }
+
+    // ---------------- Recovery ----------------
+
+    /**
+     * Replays every segment with generation >= fromGeneration in order and
+     * opens the newest one for appending. Segments older than fromGeneration
+     * are already folded into the snapshot and are deleted.
+     * Returns the number of records replayed.
+     */
+    public int replay(int fromGeneration, BiConsumer<Character, String> apply) {
+        close();
+        int replayed = 0;
+        generation = fromGeneration;
+        pendingRecords = 0;
+        for (int gen : listGenerations()) {
+            if (gen < fromGeneration) {
+                segmentFile(gen).delete();
+                continue;
+            }
+            int records = replaySegment(gen, apply);
+            replayed += records;
+            generation = gen;
+            pendingRecords = records;
+        }
+        openSegment();
+        return replayed;
+    }
+
+    private int replaySegment(int gen, BiConsumer<Character, String> apply) {
+        File f = segmentFile(gen);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(f.toPath());
+        } catch (IOException e) {
+            System.out.println("Error reading journal '" + f + "': " + e.getMessage());
+            return 0;
+        }
+
+        int records = 0;
+        int start = 0;
+        while (start < data.length) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') end++;
+            if (end == data.length) break; // no newline: torn final record
+
+            String line = new String(data, start, end - start, StandardCharsets.UTF_8);
+            int sep = line.lastIndexOf('|');
+            if (line.length() < 2 || line.charAt(1) != '|' || sep < 1
+                    || !checksum(line.substring(0, sep)).equals(line.substring(sep + 1))) {
+                break; // corrupt record: nothing after it can be trusted
+            }
+            apply.accept(line.charAt(0), sep > 2 ? line.substring(2, sep) : "");
+            records++;
+            start = end + 1;
+        }
+
+        if (start < data.length) {
+            System.out.println("Dropping " + (data.length - start) + " bytes of torn journal data in '" + f + "'");
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(start);
+            } catch (IOException e) {
+                System.out.println("Error truncating journal '" + f + "': " + e.getMessage());
+            }
+        }
+        return records;
+    }
+
+    // ---------------- Appending ----------------
+
+    public int append(char op, String payload) {
+        List<String> one = new ArrayList<>(1);
+        one.add(payload);
+        return appendAll(op, one);
+    }
+
+    /**
+     * Appends several records of the same kind with a single flush.
+     * Returns the number of bytes written.
+     */
+    public int appendAll(char op, List<String> payloads) {
+        if (out == null) openSegment();
+        StringBuilder sb = new StringBuilder();
+        for (String payload : payloads) {
+            String body = op + "|" + payload;
+            sb.append(body).append('|').append(checksum(body)).append('\n');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            out.write(bytes);
+            out.flush();
+            pendingRecords += payloads.size();
+            return bytes.length;
+        } catch (IOException e) {
+            System.out.println("Error writing journal '" + segmentFile(generation) + "': " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Forces the records appended so far to disk.
+     */
+    public void sync() {
+        if (file == null) return;
+        try {
+            file.getFD().sync();
+        } catch (IOException e) {
+            System.out.println("Error syncing journal '" + segmentFile(generation) + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a new segment. Everything appended before this call is covered by
+     * a snapshot that declares the returned generation as its replay start.
+     */
+    public int rotate() {
+        close();
+        generation++;
+        pendingRecords = 0;
+        openSegment();
+        return generation;
+    }
+
+    /**
+     * Deletes the segments older than the given generation once a snapshot
+     * covering them has been written.
+     */
+    public void deleteBefore(int gen) {
+        for (int g : listGenerations()) {
+            if (g < gen) segmentFile(g).delete();
+        }
+    }
+
+    public void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Error closing journal: " + e.getMessage());
+        }
+        out = null;
+        file = null;
+    }
+
+    // ---------------- Helpers ----------------
+
+    private void openSegment() {
+        File f = segmentFile(generation);
+        try {
+            file = new FileOutputStream(f, true);
+            out = new BufferedOutputStream(file);
+        } catch (IOException e) {
+            System.out.println("Error opening journal '" + f + "': " + e.getMessage());
+        }
+    }
+
+    private File segmentFile(int gen) {
+        return new File(basePath + "." + gen + ".log");
+    }
+
+    private List<Integer> listGenerations() {
+        File base = new File(basePath).getAbsoluteFile();
+        String prefix = base.getName() + ".";
+        List<Integer> gens = new ArrayList<>();
+        File[] files = base.getParentFile().listFiles();
+        if (files == null) return gens;
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.startsWith(prefix) || !name.endsWith(".log")) continue;
+            try {
+                gens.add(Integer.parseInt(name.substring(prefix.length(), name.length() - 4)));
+            } catch (NumberFormatException ignored) {
+                // not one of our segments
+            }
+        }
+        gens.sort(null);
+        return gens;
+    }
+
+    private static String checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.function.LongPredicate;
+
+/**
+ * Index on the natural key of a movie (title, year, director), used by
+ * upsert imports to find the movie a CSV row refers to.
+ *
+ * The table maps a 64-bit hash of the key to movie ids with open addressing
+ * in two primitive arrays. Several movies can share a hash (a collision, or
+ * a catalog that already holds duplicates), so lookups hand every candidate
+ * id to the caller, which confirms the match by comparing the fields.
+ *
+ * In front of the table sits a Bloom filter (about 10 bits per key, 7 probes,
+ * roughly 1% false positives). Rows that are new to the catalog usually fail
+ * the filter and never touch the much larger table. Bits cannot be cleared,
+ * so removed keys linger until the filter is rebuilt with the table.
+ */
+public class MovieKeyIndex {
+
+    private static final long EMPTY = 0;    // hash slot never used
+    private static final long REMOVED = 0;  // id of a removed entry (ids are positive)
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_PROBES = 7;
+
+    private long[] hashes;
+    private long[] ids;
+    private long[] bloom;
+    private int bloomBits;
+    private int size;
+    private int used; // live entries + removed ones
+
+    public MovieKeyIndex(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Hash of the natural key. Title and director are compared exactly (as
+     * Movie.fromCSV trims them), so the hash is over their raw characters.
+     */
+    public static long keyHash(String title, int year, String director) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < title.length(); i++) h = (h ^ title.charAt(i)) * 0x100000001b3L;
+        h = (h ^ 0x1f) * 0x100000001b3L; // separator, so ("ab","c") and ("a","bc") differ
+        h = (h ^ year) * 0x100000001b3L;
+        for (int i = 0; i < director.length(); i++) h = (h ^ director.charAt(i)) * 0x100000001b3L;
+        h = mix(h);
+        return h == EMPTY ? 1 : h;
+    }
+
+    public static long keyHash(Movie m) {
+        return keyHash(m.getTitle(), m.getYear(), m.getDirector());
+    }
+
+    public void add(long hash, long id) {
+        if ((used + 1) * 4L > hashes.length * 3L) rehash(size + 1);
+        int mask = hashes.length - 1;
+        int i = (int) hash & mask;
+        while (hashes[i] != EMPTY && ids[i] != REMOVED) i = (i + 1) & mask;
+        if (hashes[i] == EMPTY) used++;
+        hashes[i] = hash;
+        ids[i] = id;
+        size++;
+        setBloom(hash);
+    }
+
+    public void remove(long hash, long id) {
+        int mask = hashes.length - 1;
+        for (int i = (int) hash & mask; hashes[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash && ids[i] == id) {
+                ids[i] = REMOVED; // the hash stays so probe chains remain intact
+                size--;
+                return;
+            }
+        }
+    }
+
+    // False means no movie with this key is indexed; true means "maybe"
+    public boolean mightContain(long hash) {
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int k = 0; k < BLOOM_PROBES; k++) {
+            int bit = (int) Long.remainderUnsigned(hash + k * h2, bloomBits);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * First indexed id with this hash that the caller confirms, or 0.
+     */
+    public long find(long hash, LongPredicate matches) {
+        if (!mightContain(hash)) return 0;
+        int mask = hashes.length - 1;
+        for (int i = (int) hash & mask; hashes[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash && ids[i] != REMOVED && matches.test(ids[i])) return ids[i];
+        }
+        return 0;
+    }
+
+    // ---------------- Helpers ----------------
+
+    private void setBloom(long hash) {
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int k = 0; k < BLOOM_PROBES; k++) {
+            int bit = (int) Long.remainderUnsigned(hash + k * h2, bloomBits);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // Table at most 3/4 full before it grows; at about 3/8 right after a rebuild
+    private static int capacityFor(int expected) {
+        int capacity = 16;
+        while (capacity * 3L < expected * 4L * 2) capacity <<= 1;
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        ids = new long[capacity];
+        // sized for the most keys the table holds before its next rebuild
+        long bits = Math.max(64, (long) capacity * 3 / 4 * BLOOM_BITS_PER_KEY);
+        bloomBits = (int) Math.min(bits, Integer.MAX_VALUE - 63);
+        bloom = new long[(bloomBits + 63) >>> 6];
+        size = 0;
+        used = 0;
+    }
+
+    // Rebuilds table and filter for the given number of live entries, dropping removed ones
+    private void rehash(int expected) {
+        long[] oldHashes = hashes;
+        long[] oldIds = ids;
+        allocate(capacityFor(expected));
+        int mask = hashes.length - 1;
+        for (int j = 0; j < oldHashes.length; j++) {
+            if (oldHashes[j] == EMPTY || oldIds[j] == REMOVED) continue;
+            int i = (int) oldHashes[j] & mask;
+            while (hashes[i] != EMPTY) i = (i + 1) & mask;
+            hashes[i] = oldHashes[j];
+            ids[i] = oldIds[j];
+            used++;
+            size++;
+            setBloom(oldHashes[j]);
+        }
+    }
+
+    // murmur3 64-bit finalizer
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -1,126 +1,1487 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Manages the in-memory movie list and persistence to a CSV file.
  * CSV file must use this header/order:
- * title,year,director,rating,runtimeMinutes,votes,watched
+ * id,title,year,director,rating,runtimeMinutes,votes,watched
+ * (files without the id column are still read; their movies get new ids)
+ *
+ * Every stored movie has a stable id, assigned in increasing order, so the
+ * list is always sorted by id.
+ *
+ * Thread-safe: mutations are serialized by a write lock, and readers can use
+ * snapshot() to get an immutable view of the catalog without copying it.
+ *
+ * In async-save mode mutations return before the file is written; a
+ * background GroupCommitWriter writes the catalog once per commit window
+ * and whenDurable() tells callers when their changes are on disk.
+ *
+ * uploadCSV can append every row or upsert on the natural key (title, year,
+ * director); see UploadMode.
+ *
+ * Totals, per-director and per-year statistics are kept as running
+ * aggregates (MovieAggregates), so reading them does not scan the catalog.
+ *
+ * In partitioned mode the catalog is stored as one segment per decade
+ * (MoviePartitions). Segments are only read once an operation needs them:
+ * year-range queries and adds read the decades they touch, anything else
+ * reads the rest. A save rewrites only the segments of changed decades.
  */
 public class MovieManager {
 
+    static final String HEADER = "id,title,year,director,rating,runtimeMinutes,votes,watched";
+    static final String EXPORT_HEADER = "title,year,director,rating,runtimeMinutes,votes,watched";
+    private static final String GENERATION_MARKER = "#journal-generation=";
+    private static final String NEXT_ID_MARKER = "#next-id=";
+    // Lines between two progress callbacks of a sequential upload
+    public static final int PROGRESS_LINES = 1 << 16;
+
     private final String filePath;  // must be initialized in constructor
-    private List<Movie> movies = new ArrayList<>();
+    private final Options options;
+    private List<Movie> movies = new MovieChunkList();
+    private long nextId = 1;
+
+    // Writers hold the write lock; index lookups hold the read lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long version;               // bumped on every change to the list
+    private volatile Snapshot cachedSnapshot;    // latest snapshot handed out
+
+    private static class Snapshot {
+        final long version;
+        final List<Movie> rows;
+
+        Snapshot(long version, List<Movie> rows) {
+            this.version = version;
+            this.rows = rows;
+        }
+    }
+
+    // Id and secondary indexes (null in columnar mode, where lookups search the columns)
+    private final MovieIdMap byId;
+    private final MovieIndex movieIndex;
+    // Running statistics, in every mode
+    private final MovieAggregates aggregates = new MovieAggregates();
+
+    // Journaled mode only (null otherwise)
+    private final MovieJournal journal;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+
+    // Async-save mode only (null otherwise)
+    private final GroupCommitWriter writer;
+
+    // MovieMetrics.DISABLED unless options.metrics is set
+    private final MovieMetrics metrics;
+    private final ObjectName mbeanName;
+
+    // Natural-key index for upsert imports; built by the first one, null until then
+    private MovieKeyIndex keyIndex;
+
+    // Title search index; built by the first search, dropped once too many changes pile up
+    private MovieTitleIndex titleIndex;
+
+    // One String per distinct director (options.internDirectors); guarded by the write lock
+    private final StringPool directorPool = new StringPool();
+
+    // Partitioned mode only (null otherwise). Decades on disk that are not in
+    // memory yet, and decades changed since the last save; guarded by the write lock
+    private final MoviePartitions partitions;
+    private final NavigableSet<Integer> unloadedDecades = new TreeSet<>();
+    private final SortedSet<Integer> dirtyDecades = new TreeSet<>();
+    private volatile boolean partitionsLoaded = true;
+
+    // Batch mode (deferSaves): changes since the last commit, which saves them in one go
+    private boolean deferSaves;
+    private long uncommitted;
+
+    // Serializes writes of the CSV file; fileVersion is the catalog version it holds
+    private final Object fileLock = new Object();
+    private long fileVersion = -1;
+
+    /**
+     * Optional behaviour for a MovieManager. The defaults match the original
+     * behaviour: every mutation rewrites the whole CSV file.
+     */
+    public static class Options {
+        // Append each mutation to a write-ahead log instead of rewriting the CSV
+        public boolean journaled = false;
+        // Number of journal records after which the log is folded into a new snapshot
+        public int compactAfter = 10_000;
+        // Parse uploaded CSV files in line-aligned chunks on a fork-join pool
+        public boolean parallelUpload = false;
+        // Chunk size for parallel uploads in bytes (0 = derived from file size and core count)
+        public int uploadChunkBytes = 0;
+        // Keep the catalog in primitive column arrays (MovieColumns) instead of Movie objects
+        public boolean columnar = false;
+        // Rewrite the CSV file on a background thread, grouping the changes of one commit window
+        public boolean asyncSave = false;
+        // What a completed whenDurable() future promises. FSYNC also makes the
+        // synchronous paths (full rewrites, journal appends) fsync every write
+        public GroupCommitWriter.Durability durability = GroupCommitWriter.Durability.BATCH;
+        // Async save: how long the first change of a group waits for others to join it
+        public long commitWindowMillis = 20;
+        // Async save: a group is written right away once it has this many changes
+        public int commitBatchSize = 1000;
+        // Save snapshots in the binary format (<file>.bin) instead of CSV; see BinarySnapshot
+        public boolean binarySnapshot = false;
+        // Save snapshots deflated in blocks (<file>.mvz) instead; see CompressedSnapshot. Wins over binarySnapshot
+        public boolean compressedSnapshot = false;
+        // Record operation latencies and counters (see getMetrics()) and publish them over JMX
+        public boolean metrics = false;
+        // Share one String per distinct director between all stored movies
+        public boolean internDirectors = true;
+        // Keep Latin-1 titles as bare byte arrays (smaller, but getTitle() allocates); see Movie.compactTitle
+        public boolean compactTitles = false;
+        // Store one CSV segment per decade (<file>.parts) that loads on demand and is saved on its own;
+        // see MoviePartitions. Journaled, async-save, columnar and binary/compressed snapshots do not apply
+        public boolean partitioned = false;
+    }
+
+    /**
+     * How uploadCSV treats rows that describe a movie already in the catalog.
+     */
+    public enum UploadMode {
+        // Every valid row becomes a new movie
+        APPEND,
+        // A row with the title, year and director of a stored movie updates it in
+        // place (keeping its id); a row identical to it is skipped as a duplicate
+        UPSERT
+    }
+
+    /**
+     * File format of export(): CSV with the columns of an upload file, or
+     * JSON Lines (one movie object per line, with its id, as the HTTP API
+     * returns it).
+     */
+    public enum ExportFormat {
+        CSV,
+        JSON_LINES
+    }
+
+    /**
+     * Progress of a running upload: lines and bytes read from the file so
+     * far and the time since the upload started.
+     */
+    public interface UploadProgress {
+        void update(long lines, long bytes, long elapsedNanos);
+    }
 
     // Simple report returned by uploadCSV so the CLI can display results
     public static class UploadReport {
         public final int inserted;
-        public final List<String> errors;
+        public final int updated;     // upsert only
+        public final int duplicates;  // upsert only: rows identical to a stored movie
+        public final List<String> errors;             // the first errors only (see UploadErrors)
+        public final long errorCount;
+        public final Map<String, Long> errorsByCategory;
+        public final Path quarantine;                 // the rejected lines, or null when none were written
+
+        public UploadReport(int inserted, UploadErrors errors) {
+            this(inserted, 0, 0, errors);
+        }
 
-        public UploadReport(int inserted, List<String> errors) {
+        public UploadReport(int inserted, int updated, int duplicates, UploadErrors errors) {
             this.inserted = inserted;
-            this.errors = errors;
+            this.updated = updated;
+            this.duplicates = duplicates;
+            this.errors = errors.sample();
+            this.errorCount = errors.count();
+            this.errorsByCategory = errors.byCategory();
+            this.quarantine = errors.quarantineFile();
         }
     }
 
     // Constructor requires file path
     public MovieManager(String filePath) {
+        this(filePath, new Options());
+    }
+
+    public MovieManager(String filePath, Options options) {
         this.filePath = filePath;
+        this.options = options;
+        this.partitions = options.partitioned ? new MoviePartitions(filePath) : null;
+        this.journal = options.journaled && partitions == null ? new MovieJournal(filePath) : null;
+        boolean columnar = options.columnar && partitions == null;
+        if (columnar) movies = new MovieColumns();
+        this.byId = columnar ? null : new MovieIdMap();
+        this.movieIndex = columnar ? null : new MovieIndex();
+        this.metrics = options.metrics ? new MovieMetrics() : MovieMetrics.DISABLED;
+        this.mbeanName = options.metrics ? registerMBean() : null;
         loadMovies();
+        this.writer = options.asyncSave && !options.journaled && partitions == null
+                ? new GroupCommitWriter("movie-writer", this::commitSnapshot, options.durability,
+                        options.commitWindowMillis, options.commitBatchSize)
+                : null;
     }
 
     // ---------------- CSV Persistence ----------------
 
     public void loadMovies() {
+        awaitWriter(); // pending changes are part of what is being reloaded
+        long start = metrics.start();
+        lock.writeLock().lock();
+        try {
+            awaitCompaction();
+            movies.clear();
+            directorPool.clear();
+            uncommitted = 0; // reloading drops them
+            version++;
+            nextId = 1;
+            int generation = partitions != null ? openPartitions() : readSnapshot();
+            rebuildIndexes();
+            if (journal != null) replayJournal(generation);
+            metrics.rowsLoaded(movies.size());
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(MovieMetrics.Op.LOAD, start);
+        }
+    }
+
+    private void rebuildIndexes() {
+        if (byId != null) {
+            byId.clear();
+            for (Movie m : movies) byId.put(m.getId(), m);
+        }
+        if (movieIndex != null) movieIndex.rebuild(movies);
+        aggregates.rebuild(movies);
+        keyIndex = null; // rebuilt by the next upsert import
+        titleIndex = null; // rebuilt by the next search
+    }
+
+    /**
+     * Partitioned mode: reads only the next id and which decades have a
+     * segment; loadPartitions reads segments when they are needed. Without
+     * segments yet, the CSV file is read in full and every decade in it is
+     * marked changed, so the next save writes the segments.
+     */
+    private int openPartitions() {
+        unloadedDecades.clear();
+        dirtyDecades.clear();
+        partitionsLoaded = true;
+        if (!partitions.exists()) {
+            int generation = readSnapshot();
+            for (Movie m : movies) dirtyDecades.add(MoviePartitions.decadeOf(m.getYear()));
+            return generation;
+        }
+        try {
+            partitions.open();
+            nextId = partitions.nextId();
+            unloadedDecades.addAll(partitions.decades());
+        } catch (IOException e) {
+            System.out.println("Error reading partitions of '" + filePath + "': " + e.getMessage());
+        }
+        partitionsLoaded = unloadedDecades.isEmpty();
+        return 0;
+    }
+
+    /**
+     * Partitioned mode: reads the segments of the decades between fromYear
+     * and toYear that are not in memory yet and merges their movies into the
+     * list (kept in id order). Public methods call this before taking the
+     * lock, with the years they can touch.
+     */
+    private void loadPartitions(int fromYear, int toYear) {
+        if (partitionsLoaded) return;
+        lock.writeLock().lock();
+        try {
+            SortedSet<Integer> wanted = unloadedDecades.subSet(
+                    MoviePartitions.decadeOf(fromYear), true, MoviePartitions.decadeOf(toYear), true);
+            if (wanted.isEmpty()) return;
+            long start = metrics.start();
+            List<Movie> rows = new ArrayList<>();
+            MappedCsvLoader.Sink sink = new MappedCsvLoader.Sink() {
+                @Override
+                public void row(long id, String title, int year, String director, double rating,
+                                int runtimeMinutes, int votes, boolean watched) {
+                    Movie m = new Movie(title, year, director, rating, runtimeMinutes, votes, watched);
+                    m.setId(id);
+                    compact(m);
+                    rows.add(m);
+                }
+
+                @Override
+                public void error(int lineNum, String message) {
+                    metrics.rowsSkipped(1);
+                    System.out.println("Skipping invalid partition line " + lineNum + ": " + message);
+                }
+            };
+            for (int decade : new ArrayList<>(wanted)) {
+                try {
+                    partitions.read(decade, sink, options.internDirectors ? directorPool : null);
+                } catch (IOException e) {
+                    System.out.println("Error reading partition " + decade + "s: " + e.getMessage());
+                }
+                unloadedDecades.remove(decade);
+            }
+            mergeById(rows);
+            version++;
+            rebuildIndexes();
+            partitionsLoaded = unloadedDecades.isEmpty();
+            metrics.rowsLoaded(rows.size());
+            metrics.stop(MovieMetrics.Op.LOAD, start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadAllPartitions() {
+        loadPartitions(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    // Merges rows into the list, which stays sorted by id; a row whose id is taken is dropped
+    private void mergeById(List<Movie> rows) {
+        rows.sort(Comparator.comparingLong(Movie::getId));
+        List<Movie> merged = new ArrayList<>(movies.size() + rows.size());
+        int i = 0;
+        for (Movie m : movies) {
+            while (i < rows.size() && rows.get(i).getId() <= m.getId()) {
+                Movie row = rows.get(i++);
+                if (row.getId() < m.getId()) merged.add(row);
+            }
+            merged.add(m);
+        }
+        while (i < rows.size()) merged.add(rows.get(i++));
         movies.clear();
-        File f = new File(filePath);
-        if (!f.exists()) return; // no file yet
+        movies.addAll(merged);
+        if (!merged.isEmpty()) nextId = Math.max(nextId, merged.get(merged.size() - 1).getId() + 1);
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            int lineNum = 0;
-            while ((line = br.readLine()) != null) {
-                lineNum++;
-                line = line.trim();
-                if (line.isEmpty()) continue;
+    // Decades whose segment has not been read yet (partitioned mode; tests)
+    SortedSet<Integer> unloadedPartitions() {
+        lock.readLock().lock();
+        try {
+            return new TreeSet<>(unloadedDecades);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                // skip header
-                if (lineNum == 1 && line.toLowerCase().contains("title")) continue;
+    /**
+     * Reads the snapshot into the list: the compressed or binary snapshot in
+     * those modes (falling back to the CSV file if there is none yet or it is
+     * damaged), otherwise the CSV file through the memory-mapped loader.
+     * Returns the journal generation recorded in the snapshot (0 if none).
+     */
+    private int readSnapshot() {
+        int[] generation = {0};
+        long[] lastId = {0};
+        MappedCsvLoader.Sink sink = new MappedCsvLoader.Sink() {
+            @Override
+            public void row(long id, String title, int year, String director, double rating,
+                            int runtimeMinutes, int votes, boolean watched) {
+                // Keep ids strictly increasing; rows without one (old files) get the next id
+                if (id <= lastId[0]) {
+                    if (id != 0) System.out.println("Reassigning duplicate or out-of-order movie id " + id);
+                    id = lastId[0] + 1;
+                }
+                lastId[0] = id;
+                if (movies instanceof MovieColumns) {
+                    ((MovieColumns) movies).addRow(id, title, year, director, rating, runtimeMinutes, votes, watched);
+                } else {
+                    Movie m = new Movie(title, year, director, rating, runtimeMinutes, votes, watched);
+                    m.setId(id);
+                    compact(m);
+                    movies.add(m);
+                }
+            }
+
+            @Override
+            public void error(int lineNum, String message) {
+                metrics.rowsSkipped(1);
+                System.out.println("Skipping invalid CSV line " + lineNum + ": " + message);
+            }
 
+            // snapshots record the next id to hand out, so ids of deleted movies are
+            // never reused, and (journaled mode) which log segment replay starts from
+            @Override
+            public boolean directive(String line) {
                 try {
-                    movies.add(Movie.fromCSV(line));
-                } catch (IllegalArgumentException ex) {
-                    System.out.println("Skipping invalid CSV line " + lineNum + ": " + ex.getMessage());
+                    if (line.startsWith(GENERATION_MARKER)) {
+                        generation[0] = Integer.parseInt(line.substring(GENERATION_MARKER.length()));
+                    } else if (line.startsWith(NEXT_ID_MARKER)) {
+                        nextId = Math.max(nextId, Long.parseLong(line.substring(NEXT_ID_MARKER.length())));
+                    } else {
+                        return false;
+                    }
+                } catch (NumberFormatException ex) {
+                    System.out.println("Skipping invalid marker: " + line);
                 }
+                return true;
             }
+        };
+
+        File bin = new File(snapshotPath());
+        if ((options.compressedSnapshot || options.binarySnapshot) && bin.exists()) {
+            try {
+                BinarySnapshot.Header header = options.compressedSnapshot
+                        ? CompressedSnapshot.read(bin.toPath(), sink)
+                        : BinarySnapshot.read(bin.toPath(), sink);
+                nextId = Math.max(nextId, Math.max(header.nextId, lastId[0] + 1));
+                return header.generation;
+            } catch (IOException e) {
+                System.out.println("Error reading snapshot '" + bin + "': " + e.getMessage()
+                        + " (loading '" + filePath + "' instead)");
+                movies.clear();
+                lastId[0] = 0;
+            }
+        }
+
+        File f = new File(filePath);
+        if (!f.exists()) return 0; // no file yet
+        try {
+            MappedCsvLoader.load(f.toPath(), sink, options.internDirectors && !options.columnar ? directorPool : null);
         } catch (IOException e) {
             System.out.println("Error reading file '" + filePath + "': " + e.getMessage());
         }
+        nextId = Math.max(nextId, lastId[0] + 1);
+        return generation[0];
+    }
+
+    private void replayJournal(int generation) {
+        journal.replay(generation, (op, payload) -> {
+            try {
+                if (op == MovieJournal.REMOVE) {
+                    int pos = positionOf(Long.parseLong(payload));
+                    if (pos >= 0) unstore(pos);
+                    return;
+                }
+                int comma = payload.indexOf(',');
+                long id = Long.parseLong(payload.substring(0, Math.max(comma, 0)));
+                Movie m = Movie.fromCSV(payload.substring(comma + 1));
+                m.setId(id);
+                if (op == MovieJournal.ADD && id >= nextId) {
+                    store(m);
+                } else if (op == MovieJournal.UPDATE) {
+                    int pos = positionOf(id);
+                    if (pos >= 0) replace(pos, m);
+                }
+            } catch (IllegalArgumentException ex) {
+                metrics.rowsSkipped(1);
+                System.out.println("Skipping invalid journal record: " + ex.getMessage());
+            }
+        });
     }
 
     public void saveMovies() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            bw.write("title,year,director,rating,runtimeMinutes,votes,watched");
-            bw.newLine();
-            for (Movie m : movies) {
-                bw.write(m.toString());
-                bw.newLine();
+        lock.writeLock().lock();
+        try {
+            awaitCompaction();
+            boolean fsync = options.durability == GroupCommitWriter.Durability.FSYNC;
+            if (partitions != null) {
+                savePartitions(fsync);
+                return;
             }
+            if (journal == null) {
+                writeSnapshot(movies, version, 0, nextId, fsync);
+                return;
+            }
+            // The snapshot covers everything logged so far; replay restarts at the new segment
+            int generation = journal.rotate();
+            writeSnapshot(movies, version, generation, nextId, fsync);
+            journal.deleteBefore(generation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Partitioned mode: rewrites the segments of the decades changed since
+     * the last save (from the year index, so the other decades are not even
+     * scanned) and commits them with the next id in one manifest write.
+     */
+    private void savePartitions(boolean fsync) {
+        long start = metrics.start();
+        try {
+            Map<Integer, List<Movie>> changed = new TreeMap<>();
+            for (int decade : dirtyDecades) {
+                loadPartitions(decade, decade + 9); // a segment is only rewritten whole
+                List<Movie> rows = movieIndex.findByYearRange(decade, decade + 9);
+                rows.sort(Comparator.comparingLong(Movie::getId));
+                changed.put(decade, rows);
+            }
+            metrics.bytesWritten(partitions.save(changed, nextId, fsync));
+            dirtyDecades.clear();
+        } catch (IOException e) {
+            System.out.println("Error saving partitions of '" + filePath + "': " + e.getMessage());
+        }
+        metrics.stop(MovieMetrics.Op.SAVE, start);
+    }
+
+    private void writeSnapshot(List<Movie> rows, long rowsVersion, int generation, long nextId, boolean fsync) {
+        try {
+            writeSnapshotFile(rows, rowsVersion, generation, nextId, fsync);
         } catch (IOException e) {
             System.out.println("Error saving to file '" + filePath + "': " + e.getMessage());
         }
     }
 
+    /**
+     * Writes the rows to a temporary file and renames it over the snapshot
+     * (the CSV file, or the compressed or binary snapshot), so a crash
+     * mid-write never leaves a half-written snapshot behind.
+     * With fsync the file and the rename are forced to disk before returning.
+     * A snapshot older than the one already in the file is skipped.
+     */
+    private void writeSnapshotFile(List<Movie> rows, long rowsVersion, int generation, long nextId,
+                                   boolean fsync) throws IOException {
+        synchronized (fileLock) {
+            if (rowsVersion < fileVersion) return;
+            long start = metrics.start();
+            Path target = Paths.get(snapshotPath());
+            Path tmp = Paths.get(target + ".tmp");
+            if (options.compressedSnapshot) {
+                CompressedSnapshot.write(tmp, rows, generation, nextId, fsync);
+            } else if (options.binarySnapshot) {
+                BinarySnapshot.write(tmp, rows, generation, nextId, fsync);
+            } else {
+                writeCsvFile(tmp, rows, generation, nextId, fsync);
+            }
+            if (metrics.isEnabled()) metrics.bytesWritten(Files.size(tmp));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (fsync) syncDirectory(target);
+            fileVersion = rowsVersion;
+            metrics.stop(MovieMetrics.Op.SAVE, start);
+        }
+    }
+
+    private static void writeCsvFile(Path path, List<Movie> rows, int generation, long nextId,
+                                     boolean fsync) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(path.toFile());
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            bw.write(HEADER);
+            bw.newLine();
+            if (generation > 0) {
+                bw.write(GENERATION_MARKER + generation);
+                bw.newLine();
+            }
+            bw.write(NEXT_ID_MARKER + nextId);
+            bw.newLine();
+            for (Movie m : rows) {
+                bw.write(csvRow(m));
+                bw.newLine();
+            }
+            bw.flush();
+            if (fsync) fos.getFD().sync();
+        }
+    }
+
+    // Where snapshots are saved: the CSV file unless a compressed or binary snapshot is used
+    private String snapshotPath() {
+        if (options.compressedSnapshot) return filePath + ".mvz";
+        return options.binarySnapshot ? filePath + ".bin" : filePath;
+    }
+
+    /**
+     * Writes the catalog as a plain CSV file (no ids, same columns as an
+     * upload file), so it can be read back with uploadCSV or by other tools.
+     * Returns the number of movies written.
+     */
+    public int exportCSV(String path) throws IOException {
+        return (int) export(path, ExportFormat.CSV, null, null);
+    }
+
+    /**
+     * Streams the movies that pass filter (all when null) to path, in order
+     * (id order when null; ties keep id order). Reads one snapshot, so later
+     * changes do not show up in a running export, and holds no lock while
+     * writing. Memory use does not depend on the size of the catalog; see
+     * MovieExport. Returns the number of movies written.
+     */
+    public long export(String path, ExportFormat format, Predicate<Movie> filter, Comparator<Movie> order)
+            throws IOException {
+        long start = metrics.start();
+        long written = MovieExport.write(snapshot(), Paths.get(path), format, filter, order);
+        if (metrics.isEnabled()) metrics.bytesWritten(Files.size(Paths.get(path)));
+        metrics.stop(MovieMetrics.Op.EXPORT, start);
+        return written;
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory
+    private static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    // ---------------- Journal ----------------
+
+    /**
+     * Folds the journal into a fresh snapshot on a background thread once it
+     * has grown past options.compactAfter records. Only taking the snapshot
+     * happens on the caller's thread.
+     */
+    private void maybeCompact() {
+        if (journal.getPendingRecords() < options.compactAfter) return;
+        if (compaction != null && !compaction.isDone()) return;
+
+        Snapshot rows = currentSnapshot();
+        long rowsNextId = nextId;
+        int generation = journal.rotate();
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "movie-journal-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        compaction = compactor.submit(() -> {
+            writeSnapshot(rows.rows, rows.version, generation, rowsNextId,
+                    options.durability == GroupCommitWriter.Durability.FSYNC);
+            journal.deleteBefore(generation);
+        });
+    }
+
+    private void awaitCompaction() {
+        if (compaction == null) return;
+        try {
+            compaction.get();
+        } catch (Exception e) {
+            System.out.println("Journal compaction failed: " + e.getMessage());
+        }
+        compaction = null;
+    }
+
+    private static String csvRow(Movie m) {
+        return m.getId() + "," + m;
+    }
+
+    /**
+     * Persists one mutation: a journal record in journaled mode, a full
+     * rewrite otherwise.
+     */
+    private void persist(char op, String payload) {
+        if (deferSaves) {
+            uncommitted++;
+        } else if (journal != null) {
+            metrics.bytesWritten(journal.append(op, payload));
+            syncJournal();
+            maybeCompact();
+        } else if (writer != null) {
+            writer.submit(version);
+        } else saveMovies();
+    }
+
+    // Bulk variant of persist for uploads and updateWhere; payloads are only collected in journaled mode.
+    // Adds are logged first, so an update of a movie added by the same upload replays after it
+    private void persistBatch(List<String> added, List<String> updated) {
+        if (deferSaves) {
+            uncommitted++;
+        } else if (journal != null) {
+            if (!added.isEmpty()) metrics.bytesWritten(journal.appendAll(MovieJournal.ADD, added));
+            if (!updated.isEmpty()) metrics.bytesWritten(journal.appendAll(MovieJournal.UPDATE, updated));
+            syncJournal();
+            maybeCompact();
+        } else if (writer != null) {
+            writer.submit(version);
+        } else saveMovies();
+    }
+
+    /**
+     * Batch mode: while on, changes are only made in memory and commit()
+     * saves them together with one snapshot (whatever the storage mode),
+     * instead of one save or journal record per change. Turning it off
+     * commits what is pending. Uncommitted changes are lost if the process
+     * dies before the next commit.
+     */
+    public void deferSaves(boolean defer) {
+        lock.writeLock().lock();
+        try {
+            deferSaves = defer;
+            if (!defer) commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the changes held back by deferSaves. Returns how many changes
+     * (an upload counts once) were pending; nothing is written if none were.
+     */
+    public long commit() {
+        lock.writeLock().lock();
+        try {
+            long pending = uncommitted;
+            if (pending > 0) saveMovies();
+            uncommitted = 0;
+            return pending;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void syncJournal() {
+        if (options.durability == GroupCommitWriter.Durability.FSYNC) journal.sync();
+    }
+
+    // ---------------- Async save ----------------
+
+    /**
+     * Called on the writer thread: takes a snapshot under the read lock and
+     * writes it without holding any lock, so writers are only blocked while
+     * the snapshot is taken.
+     */
+    private long commitSnapshot(boolean fsync) throws IOException {
+        Snapshot rows;
+        long rowsNextId;
+        lock.readLock().lock();
+        try {
+            rows = currentSnapshot();
+            rowsNextId = nextId;
+        } finally {
+            lock.readLock().unlock();
+        }
+        writeSnapshotFile(rows.rows, rows.version, 0, rowsNextId, fsync);
+        return rows.version;
+    }
+
+    /**
+     * Future that completes once every change made so far is saved as
+     * promised by options.durability. Completes immediately unless async
+     * save is enabled, because the other modes save before returning.
+     */
+    public CompletableFuture<Void> whenDurable() {
+        if (writer == null) return CompletableFuture.completedFuture(null);
+        return writer.await(version);
+    }
+
+    /**
+     * Writes any pending changes and stops the background threads.
+     */
+    public void close() {
+        commit();
+        if (writer != null) writer.close();
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ignored) {
+                // already replaced by a newer manager for the same file
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            awaitCompaction();
+            if (compactor != null) compactor.shutdown();
+            if (journal != null) journal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- Metrics ----------------
+
+    public MovieMetrics getMetrics() {
+        return metrics;
+    }
+
+    // A newer manager for the same file takes over the name
+    private ObjectName registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("dms:type=MovieManager,file=" + ObjectName.quote(filePath));
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(metrics, name);
+            return name;
+        } catch (JMException e) {
+            System.out.println("Could not publish metrics over JMX: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void awaitWriter() {
+        if (writer == null) return;
+        try {
+            whenDurable().join();
+        } catch (RuntimeException e) {
+            System.out.println("Pending changes could not be saved: " + e.getMessage());
+        }
+    }
+
+    // ---------------- Storage primitives ----------------
+    // All changes to the list go through these so the indexes stay in sync.
+
+    // Gives the movie the next id (copying it if it already belongs to the catalog)
+    private Movie withNewId(Movie m) {
+        Movie stored = m.getId() == 0 ? m : m.withId(0);
+        stored.setId(nextId++);
+        return stored;
+    }
+
+    private void store(Movie m) {
+        compact(m);
+        movies.add(m);
+        version++;
+        changed(m);
+        nextId = Math.max(nextId, m.getId() + 1);
+        if (byId != null) byId.put(m.getId(), m);
+        if (movieIndex != null) movieIndex.add(m);
+        aggregates.add(m);
+        if (keyIndex != null) keyIndex.add(MovieKeyIndex.keyHash(m), m.getId());
+        if (titleIndex != null) {
+            titleIndex.add(m);
+            trimTitleIndex();
+        }
+    }
+
+    private Movie unstore(int pos) {
+        Movie removed = movies.remove(pos);
+        version++;
+        changed(removed);
+        if (byId != null) byId.remove(removed.getId());
+        if (movieIndex != null) movieIndex.remove(removed);
+        aggregates.remove(removed);
+        if (keyIndex != null) keyIndex.remove(MovieKeyIndex.keyHash(removed), removed.getId());
+        if (titleIndex != null) {
+            titleIndex.remove(removed);
+            trimTitleIndex();
+        }
+        return removed;
+    }
+
+    private void replace(int pos, Movie m) {
+        compact(m);
+        Movie old = movies.set(pos, m);
+        version++;
+        changed(old);
+        changed(m);
+        if (byId != null) byId.put(m.getId(), m);
+        if (movieIndex != null) {
+            movieIndex.remove(old);
+            movieIndex.add(m);
+        }
+        aggregates.remove(old);
+        aggregates.add(m);
+        if (keyIndex != null) {
+            long oldHash = MovieKeyIndex.keyHash(old), newHash = MovieKeyIndex.keyHash(m);
+            if (oldHash != newHash) {
+                keyIndex.remove(oldHash, old.getId());
+                keyIndex.add(newHash, m.getId());
+            }
+        }
+        if (titleIndex != null && !old.getTitle().equals(m.getTitle())) {
+            titleIndex.remove(old);
+            titleIndex.add(m);
+            trimTitleIndex();
+        }
+    }
+
+    // Partitioned mode: the movie's decade has to be saved
+    private void changed(Movie m) {
+        if (partitions != null) dirtyDecades.add(MoviePartitions.decadeOf(m.getYear()));
+    }
+
+    // Compact string storage for a movie about to be stored (columnar mode has its own)
+    private void compact(Movie m) {
+        if (options.columnar) return;
+        if (options.internDirectors) m.internDirector(directorPool);
+        if (options.compactTitles) m.compactTitle();
+    }
+
+    /**
+     * Drops the title index once the changes made since its build exceed a
+     * quarter of it (at least 4096), so its unsorted part stays small; the
+     * next search builds a new one.
+     */
+    private void trimTitleIndex() {
+        if (titleIndex.changes() > Math.max(4096, titleIndex.segmentSize() / 4)) titleIndex = null;
+    }
+
+    private void buildKeyIndex() {
+        keyIndex = new MovieKeyIndex(movies.size());
+        for (Movie m : movies) keyIndex.add(MovieKeyIndex.keyHash(m), m.getId());
+    }
+
+    /**
+     * Position of the movie with this id, or -1. The list is sorted by id,
+     * so this is a binary search.
+     */
+    private int positionOf(long id) {
+        int lo = 0, hi = movies.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = idAt(mid);
+            if (midId < id) lo = mid + 1;
+            else if (midId > id) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private long idAt(int pos) {
+        if (movies instanceof MovieColumns) return ((MovieColumns) movies).idAt(pos);
+        return movies.get(pos).getId();
+    }
+
     // ---------------- Movie Operations ----------------
 
+    // Mutable copy of the catalog; prefer snapshot() for read-only access
     public List<Movie> getAll() {
-        return new ArrayList<>(movies);
+        return new ArrayList<>(snapshot());
+    }
+
+    /**
+     * Immutable view of the catalog at this moment. Later changes are not
+     * visible through it. Repeated calls between two changes return the same
+     * view; taking a new one only copies the chunk directory of the list
+     * (columnar mode shares its column arrays and copies them on the next
+     * replace or remove, building a Movie only when a row is read).
+     */
+    public List<Movie> snapshot() {
+        loadAllPartitions();
+        return currentSnapshot().rows;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot s = cachedSnapshot;
+        if (s != null && s.version == version) return s;
+
+        lock.readLock().lock();
+        try {
+            s = cachedSnapshot;
+            if (s == null || s.version != version) {
+                List<Movie> rows = movies instanceof MovieChunkList
+                        ? ((MovieChunkList) movies).snapshot()
+                        : movies instanceof MovieColumns
+                        ? ((MovieColumns) movies).snapshot()
+                        : Collections.unmodifiableList(new ArrayList<>(movies));
+                s = new Snapshot(version, rows);
+                cachedSnapshot = s;
+            }
+            return s;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sequential stream over a snapshot of the catalog, in id order.
+     */
+    public Stream<Movie> stream() {
+        return snapshot().stream();
+    }
+
+    /**
+     * Up to limit movies starting at position offset (in id order), without
+     * copying the rest of the catalog. Positions past the end give an empty page.
+     */
+    public List<Movie> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must not be negative");
+        List<Movie> rows = snapshot();
+        int from = Math.min(offset, rows.size());
+        return rows.subList(from, (int) Math.min((long) from + limit, rows.size()));
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    // Number of changes made to the catalog so far
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The movie with this id, or null. O(1) through the id map
+     * (a binary search over the id column in columnar mode).
+     */
+    public Movie get(long id) {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            if (byId != null) return byId.get(id);
+            int pos = positionOf(id);
+            return pos < 0 ? null : movies.get(pos);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the attributes of the movie with this id, keeping its id and
+     * its place in the list. Returns false if there is no such movie.
+     */
+    public boolean update(long id, Movie updated) {
+        long start = metrics.start();
+        loadAllPartitions();
+        lock.writeLock().lock();
+        try {
+            int pos = positionOf(id);
+            if (pos < 0) return false;
+            Movie stored = updated.getId() == 0 ? updated : updated.withId(0);
+            stored.setId(id);
+            replace(pos, stored);
+            persist(MovieJournal.UPDATE, csvRow(stored));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(MovieMetrics.Op.UPDATE, start);
+        }
+    }
+
+    /**
+     * Bulk edit: every movie that passes filter is replaced by change(movie),
+     * in one pass under the write lock, and all of them are persisted in one
+     * step (one save, one journal append, or the changed decades). change
+     * must not modify its argument; it returns the new attributes (the id
+     * is kept) or the movie itself to leave it as it is. Returns the number
+     * of movies changed.
+     *
+     * "Mark everything by a director watched":
+     *   updateWhere(m -> m.getDirector().equals(d), m -> new Movie(m.getTitle(), ..., true))
+     */
+    public int updateWhere(Predicate<Movie> filter, UnaryOperator<Movie> change) {
+        long start = metrics.start();
+        loadAllPartitions();
+        lock.writeLock().lock();
+        try {
+            int changed = 0;
+            List<String> payloads = new ArrayList<>(); // journaled mode only
+            for (int pos = 0; pos < movies.size(); pos++) {
+                Movie old = movies.get(pos);
+                if (!filter.test(old)) continue;
+                Movie updated = change.apply(old);
+                if (updated == old) continue;
+                Movie stored = updated.withId(old.getId());
+                if (stored.equals(old)) continue;
+                replace(pos, stored);
+                if (journal != null) payloads.add(csvRow(stored));
+                changed++;
+            }
+            if (changed > 0) persistBatch(List.of(), payloads);
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(MovieMetrics.Op.UPDATE, start);
+        }
+    }
+
+    /**
+     * Removes the movie with this id. Returns false if there is no such movie.
+     */
+    public boolean remove(long id) {
+        long start = metrics.start();
+        loadAllPartitions();
+        lock.writeLock().lock();
+        try {
+            int pos = positionOf(id);
+            if (pos < 0) return false;
+            unstore(pos);
+            persist(MovieJournal.REMOVE, String.valueOf(id));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(MovieMetrics.Op.REMOVE, start);
+        }
     }
 
+    // ---------------- Queries ----------------
+
+    /**
+     * Movies by the given director, in insertion order. O(1) index lookup.
+     */
+    public List<Movie> findByDirector(String director) {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            if (movieIndex != null) return movieIndex.findByDirector(director);
+            List<Movie> found = new ArrayList<>();
+            if (movies instanceof MovieColumns) {
+                MovieColumns columns = (MovieColumns) movies;
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.directorAt(i).equals(director)) found.add(columns.get(i));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Movies released between fromYear and toYear (both inclusive), ordered by year.
+     * In partitioned mode only the segments of those decades are read.
+     */
+    public List<Movie> findByYearRange(int fromYear, int toYear) {
+        if (fromYear <= toYear) loadPartitions(fromYear, toYear);
+        lock.readLock().lock();
+        try {
+            if (movieIndex != null) return movieIndex.findByYearRange(fromYear, toYear);
+            List<Movie> found = new ArrayList<>();
+            if (movies instanceof MovieColumns) {
+                MovieColumns columns = (MovieColumns) movies;
+                for (int i = 0; i < columns.size(); i++) {
+                    int year = columns.yearAt(i);
+                    if (year >= fromYear && year <= toYear) found.add(columns.get(i));
+                }
+            }
+            found.sort(Comparator.comparingInt(Movie::getYear));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Movies rated strictly above minRating, ordered by rating.
+     */
+    public List<Movie> findByRatingAbove(double minRating) {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            if (movieIndex != null) return movieIndex.findByRatingAbove(minRating);
+            List<Movie> found = new ArrayList<>();
+            if (movies instanceof MovieColumns) {
+                MovieColumns columns = (MovieColumns) movies;
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.ratingAt(i) > minRating) found.add(columns.get(i));
+                }
+            }
+            found.sort(Comparator.comparingDouble(Movie::getRating));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Movies whose title matches the query, case-insensitively: titles that
+     * start with it first, then titles containing it, then titles containing
+     * it with a typo or two (see MovieTitleIndex). At most limit results.
+     *
+     * The first search after a load (or after many changes) builds the index
+     * under the write lock; later ones only read it.
+     */
+    public List<Movie> searchTitles(String query, int limit) {
+        long start = metrics.start();
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            if (titleIndex == null) {
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    if (titleIndex == null) titleIndex = MovieTitleIndex.build(movies);
+                } finally {
+                    lock.readLock().lock(); // downgrade: no writer can slip in before the search
+                    lock.writeLock().unlock();
+                }
+            }
+            List<Movie> found = new ArrayList<>();
+            for (long id : titleIndex.search(query, limit)) {
+                if (byId != null) {
+                    found.add(byId.get(id));
+                } else {
+                    found.add(movies.get(positionOf(id)));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(MovieMetrics.Op.SEARCH, start);
+        }
+    }
+
+    // ---------------- Ordering ----------------
+    // Both read one snapshot and hold no lock while sorting.
+
+    /**
+     * The whole catalog in order (ties in id order). Large catalogs are
+     * sorted by primitive key columns on the common fork-join pool; see
+     * MovieSort.
+     */
+    public List<Movie> sorted(MovieOrder order) {
+        List<Movie> rows = snapshot();
+        if (order.isIdOrder()) return rows;
+        return MovieSort.sort(rows, order, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The first k movies of sorted(order), found with a heap of k movies in
+     * O(n log k) instead of sorting the catalog.
+     */
+    public List<Movie> top(MovieOrder order, int k) {
+        List<Movie> rows = snapshot();
+        if (order.isIdOrder() && k >= 0) return rows.subList(0, Math.min(k, rows.size()));
+        return MovieSort.top(rows, order, k);
+    }
+
+    // ---------------- Aggregates ----------------
+    // Each call copies the requested groups under the read lock; none scans the catalog.
+
+    /**
+     * Average scariness over the whole catalog, from the running totals.
+     */
+    public double averageScariness() {
+        return totals().averageScariness;
+    }
+
+    // Count, rating, runtime and scariness over the whole catalog
+    public MovieAggregates.Stats totals() {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            return aggregates.totals();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Statistics of one director's movies, or null if there are none
+    public MovieAggregates.Stats directorStats(String director) {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            return aggregates.director(director);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, MovieAggregates.Stats> statsByDirector() {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            return aggregates.byDirector();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ordered by year
+    public SortedMap<Integer, MovieAggregates.Stats> statsByYear() {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            return aggregates.byYear();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Movies per scariness bucket; see MovieAggregates.scarinessHistogram
+    public long[] scarinessHistogram() {
+        loadAllPartitions();
+        lock.readLock().lock();
+        try {
+            return aggregates.scarinessHistogram();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the movie with a newly assigned id (see Movie.getId()).
+     */
     public void addMovie(Movie m) {
-        movies.add(m);
-        saveMovies();
+        long start = metrics.start();
+        loadPartitions(m.getYear(), m.getYear()); // its segment is rewritten whole
+        lock.writeLock().lock();
+        try {
+            Movie stored = withNewId(m);
+            store(stored);
+            persist(MovieJournal.ADD, csvRow(stored));
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(MovieMetrics.Op.ADD, start);
+        }
     }
 
+    // Removes by list position (as shown in the CLI)
     public boolean removeMovie(int index) {
-        if (index >= 0 && index < movies.size()) {
-            movies.remove(index);
-            saveMovies();
-            return true;
-        } else return false;
+        loadAllPartitions(); // positions count every decade
+        lock.writeLock().lock();
+        try {
+            if (index >= 0 && index < movies.size()) {
+                return remove(idAt(index));
+            } else return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public UploadReport uploadCSV(String csvPath) {
-        int inserted = 0;
-        List<String> errors = new ArrayList<>();
+        return uploadCSV(csvPath, UploadMode.APPEND);
+    }
+
+    /**
+     * Imports the movies of a CSV file (same columns as exportCSV writes).
+     * Invalid lines are skipped and reported. In UPSERT mode each row is
+     * matched against the catalog through the natural-key index, so the
+     * import stays linear in the number of rows.
+     */
+    public UploadReport uploadCSV(String csvPath, UploadMode mode) {
+        return uploadCSV(csvPath, mode, new UploadErrors(), null);
+    }
+
+    /**
+     * uploadCSV reporting rejected lines to errors (which keeps counts, a
+     * sample and optionally a quarantine file; it is closed when the upload
+     * ends) and, when progress is not null, calling it every PROGRESS_LINES
+     * (65536) lines, or after every chunk of a parallel upload, and once at
+     * the end.
+     */
+    public UploadReport uploadCSV(String csvPath, UploadMode mode, UploadErrors errors, UploadProgress progress) {
+        long start = metrics.start();
+        loadAllPartitions();
+        UploadReport report = importCSV(csvPath, mode, errors, progress);
+        try {
+            errors.close();
+        } catch (IOException e) {
+            // the rows are in; only the end of the quarantine file may be missing
+            errors.reject(0, null, "Quarantine file not written: " + e.getMessage());
+            report = new UploadReport(report.inserted, report.updated, report.duplicates, errors);
+        }
+        metrics.stop(MovieMetrics.Op.UPLOAD, start);
+        metrics.rowsUploaded(report.inserted + report.updated);
+        return report;
+    }
+
+    private UploadReport importCSV(String csvPath, UploadMode mode, UploadErrors errors, UploadProgress progress) {
         File f = new File(csvPath);
         if (!f.exists()) {
-            errors.add("File not found: " + csvPath);
+            errors.reject(0, null, "File not found: " + csvPath);
             return new UploadReport(0, errors);
         }
+        if (options.parallelUpload) return uploadCSVParallel(f, mode, errors, progress);
 
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
+        lock.writeLock().lock();
+        try {
+            UploadBatch batch = new UploadBatch(mode);
+            long started = System.nanoTime();
             int lineNum = 0;
-            while ((line = br.readLine()) != null) {
-                lineNum++;
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                if (lineNum == 1 && line.toLowerCase().contains("title")) continue;
+            try (FileInputStream in = new FileInputStream(f);
+                 BufferedReader br = new BufferedReader(new InputStreamReader(in))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lineNum++;
+                    if (progress != null && lineNum % PROGRESS_LINES == 0) {
+                        progress.update(lineNum, in.getChannel().position(), System.nanoTime() - started);
+                    }
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    if (lineNum == 1 && line.toLowerCase().contains("title")) continue;
 
-                try {
-                    Movie m = Movie.fromCSV(line);
-                    movies.add(m);
-                    inserted++;
-                } catch (IllegalArgumentException ex) {
-                    errors.add("Line " + lineNum + ": " + ex.getMessage());
+                    try {
+                        batch.apply(Movie.fromCSV(line));
+                    } catch (IllegalArgumentException ex) {
+                        metrics.rowsSkipped(1);
+                        errors.reject(lineNum, line, ex.getMessage());
+                    }
                 }
+            } catch (IOException e) {
+                errors.reject(0, null, "I/O error while reading the file: " + e.getMessage());
             }
-            if (inserted > 0) saveMovies();
+            if (progress != null) progress.update(lineNum, f.length(), System.nanoTime() - started);
+            batch.persist(); // rows read before an I/O error are kept
+            return batch.report(errors);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private UploadReport uploadCSVParallel(File f, UploadMode mode, UploadErrors errors, UploadProgress progress) {
+        ParallelCsvReader.Result result;
+        try {
+            result = ParallelCsvReader.read(f.toPath(), ForkJoinPool.commonPool(), options.uploadChunkBytes,
+                    errors, progress);
         } catch (IOException e) {
-            errors.add("I/O error while reading the file: " + e.getMessage());
+            errors.reject(0, null, "I/O error while reading the file: " + e.getMessage());
+            return new UploadReport(0, errors);
         }
 
-        return new UploadReport(inserted, errors);
+        // Parsing ran without the lock; only applying the rows blocks other writers
+        metrics.rowsSkipped(result.errors);
+        lock.writeLock().lock();
+        try {
+            UploadBatch batch = new UploadBatch(mode);
+            for (Movie m : result.movies) batch.apply(m);
+            batch.persist();
+            return batch.report(errors);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rows of one upload applied to the catalog, in file order. The caller
+     * holds the write lock from the constructor until persist().
+     */
+    private class UploadBatch {
+        private final boolean upsert;
+        private int inserted, updated, duplicates;
+        // journal payloads, collected in journaled mode only
+        private final List<String> added = new ArrayList<>();
+        private final List<String> changed = new ArrayList<>();
+
+        UploadBatch(UploadMode mode) {
+            upsert = mode == UploadMode.UPSERT;
+            if (upsert && keyIndex == null) buildKeyIndex();
+        }
+
+        void apply(Movie m) {
+            if (upsert) {
+                // Bloom filter first: a new movie usually costs no table probe at all
+                long id = keyIndex.find(MovieKeyIndex.keyHash(m), candidate -> sameKey(candidate, m));
+                if (id != 0) {
+                    int pos = positionOf(id);
+                    m.setId(id);
+                    if (movies.get(pos).equals(m)) {
+                        duplicates++;
+                        return;
+                    }
+                    replace(pos, m);
+                    if (journal != null) changed.add(csvRow(m));
+                    updated++;
+                    return;
+                }
+            }
+            Movie stored = withNewId(m);
+            store(stored);
+            if (journal != null) added.add(csvRow(stored));
+            inserted++;
+        }
+
+        void persist() {
+            if (inserted + updated > 0) persistBatch(added, changed);
+        }
+
+        UploadReport report(UploadErrors errors) {
+            return new UploadReport(inserted, updated, duplicates, errors);
+        }
+
+        // Confirms a key-index candidate, since different keys can share a hash
+        private boolean sameKey(long id, Movie m) {
+            Movie stored = byId != null ? byId.get(id) : movies.get(positionOf(id));
+            return stored.getYear() == m.getYear() && stored.getTitle().equals(m.getTitle())
+                    && stored.getDirector().equals(m.getDirector());
+        }
     }
 }
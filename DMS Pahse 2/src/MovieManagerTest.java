@@ -1,6 +1,11 @@
 import org.junit.jupiter.api.*;
 import java.io.*;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,15 +19,34 @@ class MovieManagerTest {
         // Delete test file if exists
         File f = new File(TEST_FILE);
         if (f.exists()) f.delete();
+        deleteJournalSegments();
 
         manager = new MovieManager(TEST_FILE);
     }
 
     @AfterEach
     void tearDown() {
-        // Clean up test file after each test
+        // Clean up test file (and any journal segments) after each test
         File f = new File(TEST_FILE);
         if (f.exists()) f.delete();
+        deleteJournalSegments();
+    }
+
+    private static void deleteJournalSegments() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith(TEST_FILE + "."));
+        if (files == null) return;
+        for (File f : files) {
+            File[] children = f.listFiles(); // partition directory
+            if (children != null) for (File c : children) c.delete();
+            f.delete();
+        }
+    }
+
+    private static MovieManager journaledManager(int compactAfter) {
+        MovieManager.Options options = new MovieManager.Options();
+        options.journaled = true;
+        options.compactAfter = compactAfter;
+        return new MovieManager(TEST_FILE, options);
     }
 
     // ------------------- 1️⃣ File open test -------------------
@@ -100,6 +124,96 @@ class MovieManagerTest {
         assertEquals(6.8, m.getRating());
     }
 
+    @Test
+    void testUpdate_InPlaceWithOneSave() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.metrics = true;
+        MovieManager measured = new MovieManager(TEST_FILE, options);
+        measured.addMovie(new Movie("It", 2017, "Andy Muschietti", 7.3, 135, 350000, true));
+        measured.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        long id = measured.getAll().get(0).getId();
+
+        assertTrue(measured.update(id, new Movie("It Chapter Two", 2019, "Andy Muschietti", 6.8, 165, 400000, true)));
+        List<Movie> all = measured.getAll();
+        assertEquals(id, all.get(0).getId()); // same id, same place
+        assertEquals("It Chapter Two", all.get(0).getTitle());
+        assertEquals(3, measured.getMetrics().latency(MovieMetrics.Op.SAVE).count()); // two adds, one edit
+        assertEquals(all, new MovieManager(TEST_FILE).getAll());
+        measured.close();
+    }
+
+    @Test
+    void testUpdateWhere_ChangesMatchingMoviesInOneStep() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.metrics = true;
+        MovieManager measured = new MovieManager(TEST_FILE, options);
+        measured.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        measured.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        measured.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        measured.addMovie(new Movie("They Live", 1988, "John Carpenter", 7.2, 94, 150000, true));
+        List<Movie> before = measured.getAll();
+        MovieMetrics metrics = measured.getMetrics();
+
+        // Mark everything by John Carpenter watched: They Live already is
+        int changed = measured.updateWhere(m -> m.getDirector().equals("John Carpenter"), m -> watched(m, true));
+        assertEquals(2, changed);
+        assertEquals(5, metrics.latency(MovieMetrics.Op.SAVE).count()); // four adds, one bulk edit
+        List<Movie> after = measured.getAll();
+        for (int i = 0; i < after.size(); i++) assertEquals(before.get(i).getId(), after.get(i).getId());
+        assertTrue(after.get(0).isWatched());
+        assertTrue(after.get(2).isWatched());
+        assertEquals(before.get(1), after.get(1));
+        assertEquals(after.stream().mapToDouble(Movie::getScariness).average().orElse(0),
+                measured.averageScariness(), 1e-9); // aggregates follow
+
+        // Votes for the 1980s, then edits that change nothing and save nothing
+        assertEquals(2, measured.updateWhere(m -> m.getYear() / 10 == 198,
+                m -> new Movie(m.getTitle(), m.getYear(), m.getDirector(), m.getRating(), m.getRuntimeMinutes(),
+                        m.getVotes() + 1000, m.isWatched())));
+        assertEquals(451000, measured.getAll().get(2).getVotes());
+        assertEquals(2, measured.findByYearRange(1980, 1989).size());
+        assertEquals(0, measured.updateWhere(m -> m.getYear() > 2000, m -> watched(m, false)));
+        assertEquals(0, measured.updateWhere(m -> true, m -> m));
+        assertEquals(6, metrics.latency(MovieMetrics.Op.SAVE).count());
+        assertEquals(measured.getAll(), new MovieManager(TEST_FILE).getAll());
+        measured.close();
+
+        // Journaled: one append for the whole edit, replayed on the next open
+        MovieManager.Options journalOptions = new MovieManager.Options();
+        journalOptions.journaled = true;
+        MovieManager journaled = new MovieManager(TEST_FILE, journalOptions);
+        assertEquals(4, journaled.updateWhere(m -> true, m -> watched(m, false)));
+        List<Movie> expected = journaled.getAll();
+        journaled.close();
+        assertEquals(expected, new MovieManager(TEST_FILE, journalOptions).getAll());
+    }
+
+    @Test
+    void testUpdateWhere_LargeSameYearSet() {
+        // 40,000 movies in one year bucket (and a few rating buckets) of the index
+        int n = 40000;
+        manager.deferSaves(true);
+        for (int i = 0; i < n; i++) {
+            manager.addMovie(new Movie("Movie " + i, 2000, "Director " + (i % 50), 5.0 + i % 5, 90, 1000, false));
+        }
+        manager.deferSaves(false);
+
+        // Used to take seconds, as every replaced row was searched for in its buckets
+        int changed = assertTimeout(Duration.ofSeconds(10), () -> manager.updateWhere(m -> m.getYear() == 2000,
+                m -> new Movie(m.getTitle(), m.getYear(), m.getDirector(), m.getRating(), m.getRuntimeMinutes(),
+                        m.getVotes() + 1, m.isWatched())));
+        assertEquals(n, changed);
+        List<Movie> year = manager.findByYearRange(2000, 2000);
+        assertEquals(n, year.size());
+        assertTrue(year.stream().allMatch(m -> m.getVotes() == 1001));
+        assertEquals(n / 50, manager.findByDirector("Director 7").size());
+        assertEquals(2 * n / 5, manager.findByRatingAbove(7.5).size());
+    }
+
+    private static Movie watched(Movie m, boolean watched) {
+        return new Movie(m.getTitle(), m.getYear(), m.getDirector(), m.getRating(), m.getRuntimeMinutes(), m.getVotes(), watched);
+    }
+
     // ------------------- 6️⃣ Custom action test: scariness -------------------
     @Test
     void testMovieScariness() {
@@ -107,4 +221,1135 @@ class MovieManagerTest {
         double score = m.getScariness();
         assertTrue(score > 0 && score <= 10, "Scariness score should be between 0 and 10");
     }
+
+    // ------------------- 7️⃣ Journaled persistence -------------------
+    @Test
+    void testJournal_ReplaysMutationsOnReload() {
+        MovieManager journaled = journaledManager(1000);
+        journaled.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        journaled.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        journaled.addMovie(new Movie("Psycho", 1960, "Alfred Hitchcock", 8.5, 109, 700000, true));
+        journaled.removeMovie(1);
+
+        // No snapshot was written, everything lives in the journal
+        assertFalse(new File(TEST_FILE).exists());
+
+        List<Movie> all = journaledManager(1000).getAll();
+        assertEquals(2, all.size());
+        assertEquals("Alien", all.get(0).getTitle());
+        assertEquals("Psycho", all.get(1).getTitle());
+    }
+
+    @Test
+    void testJournal_DropsTornFinalRecord() throws IOException {
+        MovieManager journaled = journaledManager(1000);
+        journaled.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+
+        // Simulate a crash in the middle of writing the next record
+        try (FileWriter fw = new FileWriter(TEST_FILE + ".0.log", true)) {
+            fw.write("A|The Thing,1982,John Carp");
+        }
+
+        List<Movie> all = journaledManager(1000).getAll();
+        assertEquals(1, all.size());
+        assertEquals("Alien", all.get(0).getTitle());
+    }
+
+    @Test
+    void testJournal_CompactsIntoSnapshot() {
+        MovieManager journaled = journaledManager(2);
+        journaled.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        journaled.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        journaled.addMovie(new Movie("Psycho", 1960, "Alfred Hitchcock", 8.5, 109, 700000, true));
+
+        // Reloading waits for the background compaction, then replays the rest
+        journaled.loadMovies();
+        assertTrue(new File(TEST_FILE).exists());
+        assertEquals(3, journaled.getAll().size());
+        assertEquals(3, journaledManager(2).getAll().size());
+    }
+
+    // ------------------- 8️⃣ Parallel CSV upload -------------------
+    @Test
+    void testUploadCSV_ParallelKeepsOrderAndLineNumbers() throws IOException {
+        File tempCsv = new File("upload_parallel_test.csv");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\n");
+            for (int i = 1; i <= 500; i++) {
+                if (i % 100 == 0) bw.write("Broken " + i + ",notayear,Nobody,5.0,90,10,true\n");
+                else if (i % 77 == 0) bw.write("\n");
+                else bw.write("Movie " + i + ",2000,Director " + (i % 7) + ",5.5,90," + i + ",false\n");
+            }
+        }
+
+        MovieManager.Options options = new MovieManager.Options();
+        options.parallelUpload = true;
+        options.uploadChunkBytes = 256; // force many small chunks
+        MovieManager parallel = new MovieManager(TEST_FILE, options);
+
+        MovieManager.UploadReport report = parallel.uploadCSV("upload_parallel_test.csv");
+        tempCsv.delete();
+
+        assertEquals(500 - 5 - 6, report.inserted);
+        assertEquals(5, report.errors.size());
+        // header is line 1, so movie row i is on line i + 1
+        assertTrue(report.errors.get(0).startsWith("Line 101: "));
+        assertTrue(report.errors.get(4).startsWith("Line 501: "));
+
+        List<Movie> all = parallel.getAll();
+        assertEquals("Movie 1", all.get(0).getTitle());
+        assertEquals("Movie 499", all.get(all.size() - 1).getTitle());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getVotes() < all.get(i).getVotes(), "rows must stay in file order");
+        }
+    }
+
+    @Test
+    void testUploadCSV_ParallelSplitsLinesLikeReadLine() throws IOException {
+        // '\n', '\r' and "\r\n" breaks, a blank line of each kind and errors after each
+        String[] breaks = {"\n", "\r", "\r\n"};
+        StringBuilder csv = new StringBuilder("title,year,director,rating,runtimeMinutes,votes,watched\r");
+        for (int i = 1; i <= 60; i++) {
+            String row = i % 10 == 0 ? "Broken " + i + ",19x9,Nobody,5.0,90,1,no"
+                    : i % 13 == 0 ? "" : "Movie " + i + ",2000,D,6.0,90," + i + ",no";
+            csv.append(row).append(breaks[i % 3]);
+        }
+        File tempCsv = new File("upload_line_breaks_test.csv");
+        try (Writer w = new FileWriter(tempCsv)) {
+            w.write(csv.toString());
+        }
+
+        try {
+            MovieManager sequential = new MovieManager(TEST_FILE);
+            MovieManager.UploadReport expected = sequential.uploadCSV(tempCsv.getPath());
+            assertEquals(60 - 6 - 4, expected.inserted);
+            List<Movie> rows = sequential.getAll();
+            // Every chunk size, so chunk boundaries land on every kind of break
+            for (int chunkBytes = 1; chunkBytes <= 48; chunkBytes++) {
+                new File(TEST_FILE).delete();
+                MovieManager.Options options = new MovieManager.Options();
+                options.parallelUpload = true;
+                options.uploadChunkBytes = chunkBytes;
+                MovieManager parallel = new MovieManager(TEST_FILE, options);
+                MovieManager.UploadReport report = parallel.uploadCSV(tempCsv.getPath());
+                assertEquals(expected.inserted, report.inserted, "chunk size " + chunkBytes);
+                assertEquals(expected.errors, report.errors, "chunk size " + chunkBytes);
+                assertEquals(rows, parallel.getAll(), "chunk size " + chunkBytes);
+            }
+        } finally {
+            tempCsv.delete();
+        }
+    }
+
+    // ------------------- 9️⃣ Memory-mapped loader -------------------
+    @Test
+    void testLoadMovies_MappedLoaderMatchesFromCSV() throws IOException {
+        String[] rows = {
+                "Inception,2010,Christopher Nolan,8.8,148,2000000,true",
+                "  Alien , 1979 , Ridley Scott , 8.5 , 117 , 900000 , YES ",
+                "Signed,+1999,Someone,.5,90,0,n",
+                "Exponent,2001,Someone,7.5e0,90,12,0",
+                "Broken,19x9,Someone,5.0,90,12,true",
+                "TooFew,2000,Someone,5.0,90,12",
+                "Négatif,1990,Ünïcode,0,1,2147483647,False"
+        };
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(TEST_FILE, java.nio.charset.StandardCharsets.UTF_8))) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\r\n");
+            for (String row : rows) bw.write(row + "\r\n");
+        }
+
+        manager.loadMovies();
+        List<Movie> all = manager.getAll();
+        assertEquals(5, all.size());
+
+        int i = 0;
+        for (String row : rows) {
+            Movie expected;
+            try {
+                expected = Movie.fromCSV(row);
+            } catch (IllegalArgumentException ex) {
+                continue;
+            }
+            assertEquals(expected.toString(), all.get(i++).toString());
+        }
+    }
+
+    // ------------------- 🔟 CSV parser messages -------------------
+    @Test
+    void testFromCSV_ValidationMessages() {
+        String[][] cases = {
+                {"a,b,c", "Expected 7 fields but found 3"},
+                {" ,2000,D,5.0,90,1,true", "Title is empty"},
+                {"T, 20x0 ,D,5.0,90,1,true", "Year is not a valid integer: '20x0'"},
+                {"T,1800,D,5.0,90,1,true", "Year must be between 1888 and " + java.time.Year.now().getValue()},
+                {"T,2000, ,5.0,90,1,true", "Director is empty"},
+                {"T,2000,D,five,90,1,true", "Rating is not a valid number: 'five'"},
+                {"T,2000,D,10.5,90,1,true", "Rating must be between 0.0 and 10.0"},
+                {"T,2000,D,5.0,,1,true", "Runtime is not a valid integer: ''"},
+                {"T,2000,D,5.0,0,1,true", "Runtime must be a positive integer"},
+                {"T,2000,D,5.0,90,-1,true", "Votes must be 0 or greater"},
+                {"T,2000,D,5.0,90,1, maybe ", "Watched must be true/false or yes/no or 1/0: 'maybe'"}
+        };
+        for (String[] c : cases) {
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> Movie.fromCSV(c[0]));
+            assertEquals(c[1], ex.getMessage());
+        }
+
+        Movie m = Movie.fromCSV(" Alien , 1979 , Ridley Scott , 8.5 , 117 , 900000 , YES ");
+        assertEquals("Alien,1979,Ridley Scott,8.5,117,900000,true", m.toString());
+    }
+
+    // ------------------- 1️⃣1️⃣ Columnar storage -------------------
+    @Test
+    void testColumnarStorage_MatchesListStorage() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.columnar = true;
+        MovieManager columnar = new MovieManager(TEST_FILE, options);
+
+        columnar.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        columnar.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, false));
+        columnar.addMovie(new Movie("Nosferatu", 2024, "Robert Eggers", 7.2, 132, 1000, false));
+        columnar.addMovie(new Movie("The Witch", 2015, "Robert Eggers", 6.9, 92, 250000, true));
+        assertTrue(columnar.removeMovie(2));
+
+        // Reload through the file in both storage modes and compare row by row
+        List<Movie> expected = new MovieManager(TEST_FILE).getAll();
+        List<Movie> actual = new MovieManager(TEST_FILE, options).getAll();
+        assertEquals(3, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+        assertEquals(new MovieManager(TEST_FILE).averageScariness(), columnar.averageScariness(), 1e-9);
+    }
+
+    // ------------------- 1️⃣2️⃣ Secondary indexes -------------------
+    @Test
+    void testSecondaryIndexes_FollowMutations() {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        manager.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, false));
+
+        assertEquals(2, manager.findByDirector("John Carpenter").size());
+        assertTrue(manager.findByDirector("Nobody").isEmpty());
+
+        List<Movie> seventies = manager.findByYearRange(1970, 1979);
+        assertEquals(2, seventies.size());
+        assertEquals("Halloween", seventies.get(0).getTitle()); // ordered by year
+        assertEquals("Alien", seventies.get(1).getTitle());
+
+        List<Movie> good = manager.findByRatingAbove(7.7);
+        assertEquals(2, good.size());
+        assertEquals("The Thing", good.get(0).getTitle()); // ordered by rating, 7.7 excluded
+
+        manager.removeMovie(2); // The Thing
+        assertEquals(1, manager.findByDirector("John Carpenter").size());
+        assertEquals(1, manager.findByRatingAbove(7.7).size());
+        assertTrue(manager.findByYearRange(1980, 1989).isEmpty());
+
+        // Indexes are rebuilt on reload
+        manager.loadMovies();
+        assertEquals(2, manager.findByDirector("Ridley Scott").size());
+    }
+
+    // ------------------- 1️⃣3️⃣ Stable ids -------------------
+    @Test
+    void testStableIds_GetUpdateRemove() {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+
+        List<Movie> all = manager.getAll();
+        long alien = all.get(0).getId(), halloween = all.get(1).getId(), thing = all.get(2).getId();
+        assertTrue(alien < halloween && halloween < thing);
+        assertEquals("Halloween", manager.get(halloween).getTitle());
+
+        // Update keeps the id and the position
+        assertTrue(manager.update(alien, new Movie("Aliens", 1986, "James Cameron", 8.4, 137, 700000, true)));
+        assertEquals("Aliens", manager.getAll().get(0).getTitle());
+        assertEquals(alien, manager.getAll().get(0).getId());
+
+        assertTrue(manager.remove(thing));
+        assertFalse(manager.remove(thing));
+        assertNull(manager.get(thing));
+
+        // Ids survive a reload and are never handed out twice
+        manager.loadMovies();
+        assertEquals("Aliens", manager.get(alien).getTitle());
+        assertEquals("Halloween", manager.get(halloween).getTitle());
+        manager.addMovie(new Movie("Psycho", 1960, "Alfred Hitchcock", 8.5, 109, 700000, true));
+        assertTrue(manager.getAll().get(2).getId() > thing);
+    }
+
+    @Test
+    void testStableIds_JournalReplay() {
+        MovieManager journaled = journaledManager(1000);
+        journaled.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        journaled.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        long halloween = journaled.getAll().get(1).getId();
+        journaled.update(halloween, new Movie("Halloween II", 1981, "Rick Rosenthal", 6.5, 92, 100000, false));
+        journaled.remove(journaled.getAll().get(0).getId());
+
+        MovieManager reopened = journaledManager(1000);
+        assertEquals(1, reopened.getAll().size());
+        assertEquals("Halloween II", reopened.get(halloween).getTitle());
+    }
+
+    // ------------------- 1️⃣4️⃣ Concurrent access -------------------
+    @Test
+    void testSnapshot_IsolatedFromLaterWrites() {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+
+        List<Movie> before = manager.snapshot();
+        assertSame(before, manager.snapshot()); // cached until the next write
+        manager.removeMovie(0);
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+
+        assertEquals(2, before.size());
+        assertEquals("Alien", before.get(0).getTitle());
+        assertEquals("Halloween", manager.snapshot().get(0).getTitle());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+    }
+
+    @Test
+    void testSnapshot_ColumnarIsolatedFromLaterWrites() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.columnar = true;
+        MovieManager columnar = new MovieManager(TEST_FILE, options);
+        columnar.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        columnar.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+
+        List<Movie> before = columnar.snapshot();
+        assertSame(before, columnar.snapshot());
+        columnar.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        List<Movie> appended = columnar.snapshot();
+        columnar.removeMovie(0);
+        columnar.addMovie(new Movie("Nosferatu", 2024, "Robert Eggers", 7.2, 132, 1000, false));
+
+        assertEquals(2, before.size());
+        assertEquals("Alien", before.get(0).getTitle());
+        assertTrue(before.get(0).isWatched());
+        assertEquals(3, appended.size());
+        assertEquals("The Thing", appended.get(2).getTitle());
+        assertEquals("Halloween", columnar.snapshot().get(0).getTitle());
+        assertEquals("Robert Eggers", columnar.snapshot().get(2).getDirector());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+    }
+
+    @Test
+    void testConcurrentWritersAndReaders() throws Exception {
+        MovieManager shared = new MovieManager(TEST_FILE) {
+            @Override
+            public void saveMovies() { } // keep the test about the in-memory catalog
+        };
+        int writers = 4, perWriter = 2000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perWriter; i++) {
+                        shared.addMovie(new Movie("Movie " + i, 2000, "Director", 5.0, 90, 100, false));
+                        if (i % 2 == 1) shared.removeMovie(0);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        List<Movie> rows = shared.snapshot();
+                        for (int j = 1; j < rows.size(); j++) {
+                            assertTrue(rows.get(j - 1).getId() < rows.get(j).getId());
+                        }
+                        shared.findByDirector("Director");
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+
+        assertNull(failure.get());
+        assertEquals(writers * perWriter / 2, shared.getAll().size()); // no lost updates
+        assertEquals(writers * perWriter / 2, shared.findByDirector("Director").size());
+    }
+
+    // ------------------- 1️⃣5️⃣ Async save -------------------
+    private static MovieManager asyncManager(GroupCommitWriter.Durability durability, long windowMillis) {
+        MovieManager.Options options = new MovieManager.Options();
+        options.asyncSave = true;
+        options.durability = durability;
+        options.commitWindowMillis = windowMillis;
+        return new MovieManager(TEST_FILE, options);
+    }
+
+    @Test
+    void testAsyncSave_GroupsChangesUntilClose() {
+        MovieManager async = asyncManager(GroupCommitWriter.Durability.NONE, 60_000);
+        async.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        async.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        async.removeMovie(0);
+        assertEquals(1, async.getAll().size());
+        assertEquals(0, new MovieManager(TEST_FILE).getAll().size()); // still inside the commit window
+
+        async.close(); // writes the pending group
+        List<Movie> saved = new MovieManager(TEST_FILE).getAll();
+        assertEquals(1, saved.size());
+        assertEquals("Halloween", saved.get(0).getTitle());
+    }
+
+    @Test
+    void testAsyncSave_WhenDurableCompletesAfterWrite() throws Exception {
+        MovieManager async = asyncManager(GroupCommitWriter.Durability.FSYNC, 0);
+        for (int i = 0; i < 50; i++) {
+            async.addMovie(new Movie("Movie " + i, 2000, "Director", 5.0, 90, 100, false));
+        }
+        async.whenDurable().get(10, TimeUnit.SECONDS);
+
+        assertEquals(50, new MovieManager(TEST_FILE).getAll().size());
+        assertFalse(new File(TEST_FILE + ".tmp").exists());
+        async.close();
+    }
+
+    // ------------------- 1️⃣6️⃣ Binary snapshot & export -------------------
+    private static MovieManager binaryManager() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.binarySnapshot = true;
+        return new MovieManager(TEST_FILE, options);
+    }
+
+    @Test
+    void testBinarySnapshot_RoundTrip() throws IOException {
+        // An existing CSV catalog is picked up on the first start in binary mode
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        MovieManager binary = binaryManager();
+        assertEquals(2, binary.getAll().size());
+
+        binary.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        binary.addMovie(new Movie("Psycho", 1960, "Alfred Hitchcock", 8.5, 109, 700000, true));
+        long psycho = binary.getAll().get(3).getId();
+        binary.removeMovie(3);
+        assertTrue(new File(TEST_FILE + ".bin").exists());
+
+        MovieManager reopened = binaryManager();
+        assertEquals(binary.getAll(), reopened.getAll()); // ids and every attribute
+        assertSame(reopened.getAll().get(1).getDirector(), reopened.getAll().get(2).getDirector());
+        reopened.addMovie(new Movie("Psycho", 1960, "Alfred Hitchcock", 8.5, 109, 700000, true));
+        assertTrue(reopened.getAll().get(3).getId() > psycho); // next id survives
+    }
+
+    @Test
+    void testBinarySnapshot_CorruptFileFallsBackToCsv() throws IOException {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        MovieManager binary = binaryManager();
+        binary.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+
+        // Flip one byte of the last title: only the checksum can notice
+        File bin = new File(TEST_FILE + ".bin");
+        byte[] data = java.nio.file.Files.readAllBytes(bin.toPath());
+        data[data.length - 6] ^= 1;
+        java.nio.file.Files.write(bin.toPath(), data);
+
+        List<Movie> loaded = binaryManager().getAll();
+        assertEquals(1, loaded.size()); // movies.csv from before binary mode
+        assertEquals("Alien", loaded.get(0).getTitle());
+    }
+
+    @Test
+    void testCompressedSnapshot_RoundTripAndCorruptBlock() throws IOException {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        MovieManager.Options options = new MovieManager.Options();
+        options.compressedSnapshot = true;
+        MovieManager compressed = new MovieManager(TEST_FILE, options);
+        compressed.addMovie(new Movie("Häxan", 1922, "Benjamin Christensen", 7.6, 91, 11000, false));
+        compressed.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, true));
+        compressed.removeMovie(0);
+        File mvz = new File(TEST_FILE + ".mvz");
+        assertTrue(mvz.exists());
+
+        MovieManager reopened = new MovieManager(TEST_FILE, options);
+        assertEquals(compressed.getAll(), reopened.getAll());
+
+        // Flip a byte inside the only block: its checksum catches it and movies.csv is loaded instead
+        byte[] data = java.nio.file.Files.readAllBytes(mvz.toPath());
+        data[30] ^= 1;
+        java.nio.file.Files.write(mvz.toPath(), data);
+        List<Movie> loaded = new MovieManager(TEST_FILE, options).getAll();
+        assertEquals(1, loaded.size());
+        assertEquals("Alien", loaded.get(0).getTitle());
+    }
+
+    @Test
+    void testCompressedSnapshot_PointReadsInflateOneBlock() throws IOException {
+        List<Movie> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Movie m = new Movie("Movie " + i, 1970 + i, "Director " + i % 3, i, 90 + i, 1000 * i, i % 2 == 0);
+            m.setId(3L * i + 1); // 1, 4, ..., 28: gaps between ids
+            rows.add(m);
+        }
+        java.nio.file.Path path = java.nio.file.Path.of(TEST_FILE + ".mvz");
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4); // blocks finish out of order
+        CompressedSnapshot.write(path, rows, 2, 99, false, 4, pool);
+
+        try (CompressedSnapshot.Reader reader = CompressedSnapshot.Reader.open(path)) {
+            assertEquals(3, reader.blockCount());
+            assertEquals(10, reader.rows());
+            assertEquals(rows.get(5), reader.get(16));
+            assertEquals(1, reader.blocksRead());
+            assertEquals(rows.get(6), reader.get(19)); // same block
+            assertEquals(1, reader.blocksRead());
+            assertNull(reader.get(17)); // between two ids of that block
+            assertNull(reader.get(100));
+            assertEquals(rows.get(9), reader.get(28));
+            assertEquals(2, reader.blocksRead());
+        }
+
+        List<Movie> read = new ArrayList<>();
+        BinarySnapshot.Header header = CompressedSnapshot.read(path, new MappedCsvLoader.Sink() {
+            @Override
+            public void row(long id, String title, int year, String director, double rating,
+                            int runtimeMinutes, int votes, boolean watched) {
+                Movie m = new Movie(title, year, director, rating, runtimeMinutes, votes, watched);
+                m.setId(id);
+                read.add(m);
+            }
+
+            @Override
+            public void error(int lineNum, String message) {
+                fail(message);
+            }
+        }, pool);
+        pool.shutdown();
+        assertEquals(rows, read);
+        assertEquals(2, header.generation);
+        assertEquals(99, header.nextId);
+    }
+
+    @Test
+    void testExportCSV_CanBeUploadedAgain() throws IOException {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween II", 1981, "Rick Rosenthal", 6.5, 92, 100000, false));
+        String export = TEST_FILE + ".export";
+        assertEquals(2, manager.exportCSV(export));
+
+        MovieManager copy = new MovieManager(TEST_FILE + ".copy");
+        MovieManager.UploadReport report = copy.uploadCSV(export);
+        assertEquals(2, report.inserted);
+        assertTrue(report.errors.isEmpty());
+        assertEquals(manager.getAll().get(1).toString(), copy.getAll().get(1).toString());
+    }
+
+    @Test
+    void testExport_FilteredAndSortedCsvAndJsonLines() throws IOException {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Halloween II", 1981, "Rick Rosenthal", 6.5, 92, 100000, false));
+        manager.addMovie(new Movie("Häxan", 1922, "Benjamin Christensen", 7.6, 91, 11000, false));
+        manager.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, true));
+        manager.addMovie(new Movie("Odd Rating", 2001, "Nobody", 7.25, 90, 10, false));
+        String export = TEST_FILE + ".export";
+
+        long written = manager.export(export, MovieManager.ExportFormat.CSV, m -> m.getRating() >= 7.0,
+                java.util.Comparator.comparingInt(Movie::getYear).reversed());
+        assertEquals(4, written);
+        assertEquals(List.of("title,year,director,rating,runtimeMinutes,votes,watched",
+                "Prometheus,2012,Ridley Scott,7.0,124,600000,true",
+                "Odd Rating,2001,Nobody,7.3,90,10,false", // rounded like Movie.toString
+                "Alien,1979,Ridley Scott,8.5,117,900000,true",
+                "Häxan,1922,Benjamin Christensen,7.6,91,11000,false"),
+                java.nio.file.Files.readAllLines(java.nio.file.Path.of(export)));
+
+        manager.export(export, MovieManager.ExportFormat.JSON_LINES, m -> m.getDirector().equals("Ridley Scott"), null);
+        assertEquals(List.of(
+                "{\"id\":1,\"title\":\"Alien\",\"year\":1979,\"director\":\"Ridley Scott\",\"rating\":8.5,"
+                        + "\"runtimeMinutes\":117,\"votes\":900000,\"watched\":true}",
+                "{\"id\":4,\"title\":\"Prometheus\",\"year\":2012,\"director\":\"Ridley Scott\",\"rating\":7.0,"
+                        + "\"runtimeMinutes\":124,\"votes\":600000,\"watched\":true}"),
+                java.nio.file.Files.readAllLines(java.nio.file.Path.of(export)));
+    }
+
+    @Test
+    void testExport_SpilledRunsMergeInOrder() throws IOException {
+        List<Movie> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Movie m = new Movie("Movie " + i, 1950 + (i * 37) % 70, "Director " + i % 4, (i * 13) % 11 * 0.9, 90, i, i % 2 == 0);
+            m.setId(i + 1);
+            rows.add(m);
+        }
+        java.util.Comparator<Movie> byRating = java.util.Comparator.comparingDouble(Movie::getRating);
+        File export = new File(TEST_FILE + ".export");
+        // runs of 3 positions: 12 spilled runs merged with the one left in memory
+        assertEquals(37, MovieExport.write(rows, export.toPath(), MovieManager.ExportFormat.CSV,
+                m -> !m.getDirector().equals("Director 1"), byRating, 3));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("title,year,director,rating,runtimeMinutes,votes,watched");
+        rows.stream().filter(m -> !m.getDirector().equals("Director 1")).sorted(byRating) // stable: ties by id
+                .forEach(m -> expected.add(m.toString()));
+        assertEquals(expected, java.nio.file.Files.readAllLines(export.toPath()));
+        String[] runs = new File(".").list((dir, name) -> name.startsWith("export-run"));
+        assertEquals(0, runs == null ? 0 : runs.length);
+    }
+
+    // ------------------- 1️⃣7️⃣ Paging & streaming -------------------
+    @Test
+    void testPageAndStream() {
+        for (int i = 0; i < 25; i++) {
+            manager.addMovie(new Movie("Movie " + i, 2000 + i % 3, "Director", 5.0, 90, 100, i % 2 == 0));
+        }
+
+        List<Movie> page = manager.page(20, 10);
+        assertEquals(5, page.size()); // last, partial page
+        assertEquals("Movie 20", page.get(0).getTitle());
+        assertTrue(manager.page(30, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> manager.page(-1, 10));
+
+        assertEquals(25, manager.size());
+        assertEquals(13, manager.stream().filter(Movie::isWatched).count());
+        assertEquals("Movie 24", manager.stream().reduce((a, b) -> b).get().getTitle());
+    }
+
+    // ------------------- 1️⃣8️⃣ Metrics -------------------
+    @Test
+    void testMetricsHistogram_PercentilesWithinBucketError() {
+        MovieMetrics.Histogram h = new MovieMetrics.Histogram();
+        for (long v = 1; v <= 10_000; v++) h.record(v * 1000);
+
+        assertEquals(10_000, h.count());
+        assertEquals(10_000_000, h.max());
+        long p50 = h.percentile(0.50), p99 = h.percentile(0.99);
+        assertTrue(p50 >= 5_000_000 && p50 <= 5_000_000 * 1.0625, "p50 was " + p50);
+        assertTrue(p99 >= 9_900_000 && p99 <= 9_900_000 * 1.0625, "p99 was " + p99);
+        assertEquals(10_000_000, h.percentile(1.0));
+        assertEquals(0, new MovieMetrics.Histogram().percentile(0.5));
+    }
+
+    @Test
+    void testMetrics_RecordedAndPublishedOverJmx() throws Exception {
+        MovieManager.Options options = new MovieManager.Options();
+        options.metrics = true;
+        MovieManager measured = new MovieManager(TEST_FILE, options);
+        measured.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        measured.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        measured.update(measured.getAll().get(0).getId(), new Movie("Aliens", 1986, "James Cameron", 8.4, 137, 700000, true));
+        measured.removeMovie(1);
+
+        String upload = TEST_FILE + ".upload";
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(upload))) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\n");
+            bw.write("The Thing,1982,John Carpenter,8.2,109,450000,false\n");
+            bw.write("Broken,19x9,Someone,5.0,90,12,true\n");
+        }
+        measured.uploadCSV(upload);
+        measured.loadMovies();
+
+        MovieMetrics metrics = measured.getMetrics();
+        assertEquals(2, metrics.latency(MovieMetrics.Op.ADD).count());
+        assertEquals(1, metrics.latency(MovieMetrics.Op.UPDATE).count());
+        assertEquals(1, metrics.latency(MovieMetrics.Op.REMOVE).count());
+        assertEquals(1, metrics.latency(MovieMetrics.Op.UPLOAD).count());
+        assertEquals(2, metrics.latency(MovieMetrics.Op.LOAD).count()); // constructor + reload
+        assertEquals(5, metrics.latency(MovieMetrics.Op.SAVE).count());
+        assertEquals(1, metrics.getRowsUploaded());
+        assertEquals(1, metrics.getRowsSkipped());
+        assertEquals(2, metrics.getRowsLoaded());
+        assertTrue(metrics.getBytesWritten() > 0);
+        assertTrue(metrics.getOperations().get("add").getMaxMillis() > 0);
+
+        javax.management.ObjectName name = new javax.management.ObjectName(
+                "dms:type=MovieManager,file=" + javax.management.ObjectName.quote(TEST_FILE));
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        assertEquals(2L, server.getAttribute(name, "RowsLoaded"));
+        measured.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void testMetrics_DisabledByDefault() {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        MovieMetrics metrics = manager.getMetrics();
+        assertFalse(metrics.isEnabled());
+        assertEquals(0, metrics.latency(MovieMetrics.Op.ADD).count());
+        assertEquals(0, metrics.getBytesWritten());
+    }
+
+    // ------------------- 1️⃣9️⃣ Year partitions -------------------
+    private static MovieManager partitionedManager() {
+        MovieManager.Options options = new MovieManager.Options();
+        options.partitioned = true;
+        return new MovieManager(TEST_FILE, options);
+    }
+
+    // File name of a decade's segment ("1980s.2.csv"; a save writes new ones), or null
+    private static String segmentFile(String decade) {
+        String[] names = new File(TEST_FILE + ".parts").list((dir, name) -> name.startsWith(decade + "s."));
+        assertTrue(names.length <= 1, "superseded segments are deleted");
+        return names.length == 0 ? null : names[0];
+    }
+
+    @Test
+    void testPartitioned_SaveRewritesOnlyChangedDecades() throws IOException {
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        MovieManager partitioned = partitionedManager(); // migrates movies.csv on its first save
+        partitioned.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        partitioned.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, true));
+        String seventies = segmentFile("1970"), eighties = segmentFile("1980"), tens = segmentFile("2010");
+
+        long thing = partitioned.getAll().get(1).getId();
+        partitioned.update(thing, new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 460000, true));
+        assertNotEquals(eighties, segmentFile("1980"));
+        assertEquals(seventies, segmentFile("1970"));
+        assertEquals(tens, segmentFile("2010"));
+
+        // Moving a movie to another decade rewrites both
+        partitioned.update(thing, new Movie("The Thing", 2011, "John Carpenter", 8.2, 109, 460000, true));
+        assertNull(segmentFile("1980")); // emptied
+        assertNotEquals(tens, segmentFile("2010"));
+        assertEquals(seventies, segmentFile("1970"));
+        assertEquals(partitioned.getAll(), partitionedManager().getAll());
+    }
+
+    @Test
+    void testPartitioned_SaveCommitsAtTheManifest() throws IOException {
+        MovieManager partitioned = partitionedManager();
+        partitioned.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        partitioned.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        List<Movie> committed = partitioned.getAll();
+        java.nio.file.Path dir = java.nio.file.Paths.get(TEST_FILE + ".parts");
+        java.nio.file.Path manifest = dir.resolve("manifest");
+        byte[] oldManifest = java.nio.file.Files.readAllBytes(manifest);
+        String oldSeventies = segmentFile("1970"), oldEighties = segmentFile("1980");
+        byte[] seventiesRows = java.nio.file.Files.readAllBytes(dir.resolve(oldSeventies));
+        byte[] eightiesRows = java.nio.file.Files.readAllBytes(dir.resolve(oldEighties));
+
+        // A save moving a movie across decades and adding one, then a "crash" before its manifest:
+        // the old manifest and segments are back, the new segments are left behind
+        long thing = committed.get(1).getId();
+        partitioned.update(thing, new Movie("The Thing", 1977, "John Carpenter", 8.2, 109, 450000, false));
+        partitioned.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        java.nio.file.Files.write(manifest, oldManifest);
+        java.nio.file.Files.write(dir.resolve(oldSeventies), seventiesRows);
+        java.nio.file.Files.write(dir.resolve(oldEighties), eightiesRows);
+
+        MovieManager reopened = partitionedManager();
+        assertEquals(oldSeventies, segmentFile("1970")); // uncommitted segments are deleted on open
+        assertEquals(oldEighties, segmentFile("1980"));
+        assertEquals(committed, reopened.getAll()); // the movie is in one decade, not both or none
+
+        // The manifest holds the next id with the segments, so new ids never collide
+        reopened.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, true));
+        assertEquals(3, reopened.getAll().get(2).getId());
+        assertEquals(reopened.getAll(), partitionedManager().getAll());
+    }
+
+    @Test
+    void testPartitioned_LoadsOnlyTheDecadesNeeded() {
+        MovieManager partitioned = partitionedManager();
+        partitioned.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        partitioned.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        partitioned.addMovie(new Movie("The Fly", 1986, "David Cronenberg", 7.6, 96, 190000, false));
+        partitioned.addMovie(new Movie("Prometheus", 2012, "Ridley Scott", 7.0, 124, 600000, true));
+        List<Movie> all = partitioned.getAll();
+
+        MovieManager reopened = partitionedManager();
+        assertEquals(java.util.Set.of(1970, 1980, 2010), reopened.unloadedPartitions());
+        List<Movie> eighties = reopened.findByYearRange(1980, 1989);
+        assertEquals(List.of(all.get(1), all.get(2)), eighties);
+        assertEquals(java.util.Set.of(1970, 2010), reopened.unloadedPartitions());
+
+        reopened.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.7, 91, 300000, true));
+        assertEquals(java.util.Set.of(2010), reopened.unloadedPartitions());
+        assertNotNull(segmentFile("2010")); // untouched, not lost
+
+        List<Movie> reloaded = reopened.getAll(); // reads the rest, in id order
+        assertTrue(reopened.unloadedPartitions().isEmpty());
+        assertEquals(all, reloaded.subList(0, 4));
+        assertEquals("Halloween", reloaded.get(4).getTitle());
+        assertEquals(5, reloaded.get(4).getId()); // next id survives without reading every decade
+    }
+
+    // ------------------- 2️⃣0️⃣ Sorting & top-k -------------------
+    @Test
+    void testSortedAndTop_SeveralKeysAndDirections() {
+        manager.addMovie(new Movie("the Fly", 1986, "David Cronenberg", 7.6, 96, 190000, false));
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        manager.addMovie(new Movie("Aliens", 1986, "James Cameron", 8.4, 137, 700000, false));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.6, 91, 300000, false));
+
+        MovieOrder byYear = MovieOrder.parse("year desc, RATING desc, title");
+        assertEquals("year desc, rating desc, title asc", byYear.toString());
+        assertEquals(List.of("Aliens", "the Fly", "The Thing", "Alien", "Halloween"), titles(manager.sorted(byYear)));
+        assertEquals(List.of("Aliens", "the Fly"), titles(manager.top(byYear, 2)));
+
+        // Equal keys fall back to id order; titles compare without case
+        MovieOrder byRating = MovieOrder.by(MovieOrder.Key.RATING);
+        assertEquals(List.of("the Fly", "Halloween", "The Thing"), titles(manager.top(byRating, 3)));
+        assertEquals(List.of("Alien", "Aliens", "Halloween", "the Fly", "The Thing"),
+                titles(manager.sorted(MovieOrder.parse("title"))));
+        assertEquals(manager.snapshot(), manager.sorted(MovieOrder.parse("id")));
+        assertEquals(5, manager.top(byRating, 100).size());
+        assertTrue(manager.top(byRating, 0).isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> MovieOrder.parse("rating sideways"));
+        assertThrows(IllegalArgumentException.class, () -> MovieOrder.parse("budget"));
+        assertThrows(IllegalArgumentException.class, () -> MovieOrder.parse("year,,title"));
+        for (String empty : List.of("", ",", " , ")) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MovieOrder.parse(empty));
+            assertTrue(e.getMessage().startsWith("Empty sort"), e.getMessage());
+        }
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR")); // "title".toUpperCase() would be "TİTLE"
+            assertEquals("title asc", MovieOrder.parse("title").toString());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+        assertThrows(IllegalArgumentException.class, () -> manager.top(byRating, -1));
+    }
+
+    @Test
+    void testMovieSort_ParallelColumnSortMatchesComparator() {
+        java.util.Random random = new java.util.Random(23);
+        List<Movie> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Movie m = new Movie((random.nextBoolean() ? "movie " : "Movie ") + random.nextInt(50), 1950 + random.nextInt(70),
+                    "Director", random.nextInt(101) / 10.0, 60 + random.nextInt(100), random.nextInt(2_000_000),
+                    random.nextBoolean());
+            m.setId(2L * i + 1);
+            rows.add(m);
+        }
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        for (String spec : new String[]{"rating desc, votes", "scariness desc", "title desc, year", "runtime, id desc"}) {
+            MovieOrder order = MovieOrder.parse(spec);
+            List<Movie> expected = new ArrayList<>(rows);
+            expected.sort(order);
+            assertEquals(expected, MovieSort.sort(rows, order, pool, 64), spec); // many leaves and merges
+            assertEquals(expected, MovieSort.sort(rows, order, pool), spec);     // one sequential sort
+            assertEquals(expected.subList(0, 25), MovieSort.top(rows, order, 25), spec);
+        }
+        pool.shutdown();
+    }
+
+    // ------------------- 2️⃣1️⃣ Upsert & key index -------------------
+    @Test
+    void testUploadCSV_UpsertUpdatesInPlaceAndSkipsDuplicates() throws IOException {
+        MovieManager.Options options = new MovieManager.Options();
+        options.journaled = true;
+        MovieManager journaled = new MovieManager(TEST_FILE, options);
+        journaled.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        journaled.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+
+        File tempCsv = new File("upsert_test.csv");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\n");
+            bw.write("Halloween,1978,John Carpenter,7.7,91,250000,true\n");  // update
+            bw.write("Alien,1979,Ridley Scott,8.5,117,900000,true\n");       // identical
+            bw.write("Halloween,2018,David Gordon Green,6.5,106,150000,false\n"); // same title, new key
+            bw.write("Halloween,2018,David Gordon Green,6.6,106,160000,false\n"); // updates the row above
+            bw.write("Broken,19x9,Nobody,5.0,90,1,true\n");
+        }
+
+        MovieManager.UploadReport report = journaled.uploadCSV("upsert_test.csv", MovieManager.UploadMode.UPSERT);
+        assertEquals(1, report.inserted);
+        assertEquals(2, report.updated);
+        assertEquals(1, report.duplicates);
+        assertEquals(1, report.errors.size());
+
+        List<Movie> all = journaled.getAll();
+        assertEquals(3, all.size());
+        assertEquals(1, all.get(0).getId()); // updated in place, id kept
+        assertEquals(250000, all.get(0).getVotes());
+        assertTrue(all.get(0).isWatched());
+        assertEquals(160000, all.get(2).getVotes());
+
+        // Appending the same file again adds every valid row
+        assertEquals(4, journaled.uploadCSV("upsert_test.csv").inserted);
+        tempCsv.delete();
+        journaled.close();
+
+        // Adds and updates of the upload replay from the journal in the right order
+        MovieManager reloaded = new MovieManager(TEST_FILE, options);
+        assertEquals(7, reloaded.size());
+        assertEquals(all, reloaded.getAll().subList(0, 3));
+        reloaded.close();
+    }
+
+    @Test
+    void testMovieKeyIndex_FindsEveryKeyAndForgetsRemovedOnes() {
+        MovieKeyIndex index = new MovieKeyIndex(0);
+        int n = 50_000;
+        for (int i = 1; i <= n; i++) index.add(MovieKeyIndex.keyHash("Movie " + i, 2000, "Director"), i);
+        assertEquals(n, index.size());
+
+        for (int i = 1; i <= n; i++) {
+            long id = i;
+            assertEquals(id, index.find(MovieKeyIndex.keyHash("Movie " + i, 2000, "Director"), c -> c == id));
+        }
+        for (int i = 1; i <= n; i += 2) index.remove(MovieKeyIndex.keyHash("Movie " + i, 2000, "Director"), i);
+        assertEquals(n / 2, index.size());
+        assertEquals(0, index.find(MovieKeyIndex.keyHash("Movie 1", 2000, "Director"), c -> true));
+        assertEquals(2, index.find(MovieKeyIndex.keyHash("Movie 2", 2000, "Director"), c -> true));
+
+        // Keys that were never added almost always fail the Bloom filter
+        int maybe = 0;
+        for (int i = 1; i <= 10_000; i++) {
+            if (index.mightContain(MovieKeyIndex.keyHash("Other " + i, 1999, "Director"))) maybe++;
+        }
+        assertTrue(maybe < 300, "Bloom filter false positives: " + maybe);
+        assertNotEquals(MovieKeyIndex.keyHash("ab", 2000, "c"), MovieKeyIndex.keyHash("a", 2000, "bc"));
+    }
+
+    // ------------------- 2️⃣2️⃣ Shared and compact strings -------------------
+    @Test
+    void testStringPool_SameInstanceFromStringsAndBytes() {
+        StringPool pool = new StringPool();
+        String carpenter = pool.intern(new String("John Carpenter"));
+        byte[] line = "x, John Carpenter ,y".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        assertSame(carpenter, pool.intern(line, 3, 17));
+        assertSame(carpenter, pool.intern(new String("John Carpenter")));
+
+        byte[] utf8 = "Ünïcode".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        String unicode = pool.intern(utf8, 0, utf8.length);
+        assertEquals("Ünïcode", unicode);
+        assertSame(unicode, pool.intern("Ünïcode"));
+
+        for (int i = 0; i < 1000; i++) pool.intern("Director " + i);
+        assertEquals(1002, pool.size());
+        assertSame(carpenter, pool.intern("John Carpenter"));
+    }
+
+    @Test
+    void testCompactStrings_DirectorsSharedAndTitlesKept() throws IOException {
+        MovieManager.Options options = new MovieManager.Options();
+        options.compactTitles = true;
+        MovieManager compact = new MovieManager(TEST_FILE, options);
+        compact.addMovie(new Movie("Halloween", 1978, new String("John Carpenter"), 7.8, 91, 200000, true));
+        compact.addMovie(new Movie("The Thing", 1982, new String("John Carpenter"), 8.2, 109, 450000, false));
+        compact.addMovie(new Movie("Ringu 👻", 1998, "Hideo Nakata", 7.2, 96, 60000, true)); // not Latin-1
+
+        File tempCsv = new File("compact_upload.csv");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            bw.write("They Live,1988,John Carpenter,7.2,94,150000,false\n");
+            bw.write("Demons,1985,Lamberto Bava,6.6,88,25000,true\n");
+        }
+        assertEquals(2, compact.uploadCSV("compact_upload.csv").inserted);
+        tempCsv.delete();
+        compact.addMovie(new Movie("Dèmoni 2", 1986, "Lamberto Bava", 6.0, 91, 12000, false));
+
+        List<Movie> all = compact.getAll();
+        assertSame(all.get(0).getDirector(), all.get(1).getDirector());
+        assertSame(all.get(0).getDirector(), all.get(3).getDirector());
+        assertEquals("Ringu 👻", all.get(2).getTitle());
+        assertEquals("Dèmoni 2", all.get(5).getTitle());
+        assertEquals(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, true).toString(), all.get(0).toString());
+
+        // Reloading the file gives equal movies, again sharing one director string
+        MovieManager reloaded = new MovieManager(TEST_FILE, options);
+        List<Movie> loaded = reloaded.getAll();
+        assertEquals(all, loaded);
+        assertSame(loaded.get(0).getDirector(), loaded.get(3).getDirector());
+        assertEquals(2, reloaded.findByDirector("Lamberto Bava").size());
+    }
+
+    // ------------------- 2️⃣3️⃣ Running aggregates -------------------
+    @Test
+    void testAggregates_MaintainedOnEveryChangeAndReload() throws IOException {
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.addMovie(new Movie("The Fog", 1980, "John Carpenter", 6.8, 89, 80000, false));
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.addMovie(new Movie("Suspiria", 1977, "Dario Argento", 7.4, 99, 90000, false));
+
+        long fog = manager.getAll().get(1).getId();
+        manager.update(fog, new Movie("The Fog", 1980, "John Carpenter", 6.9, 89, 85000, true));
+        manager.removeMovie(3); // Suspiria
+
+        File tempCsv = new File("aggregates_upload.csv");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            bw.write("The Thing,1982,John Carpenter,8.2,109,450000,false\n");
+            bw.write("Halloween,1978,John Carpenter,7.7,91,250000,true\n");
+        }
+        manager.uploadCSV("aggregates_upload.csv", MovieManager.UploadMode.UPSERT);
+        tempCsv.delete();
+
+        List<Movie> all = manager.getAll();
+        MovieAggregates.Stats totals = manager.totals();
+        assertEquals(all.size(), totals.count);
+        assertEquals(all.stream().mapToDouble(Movie::getRating).average().orElse(0), totals.averageRating, 1e-9);
+        assertEquals(all.stream().mapToLong(Movie::getRuntimeMinutes).sum(), totals.totalRuntimeMinutes);
+        assertEquals(all.stream().mapToDouble(Movie::getScariness).average().orElse(0), manager.averageScariness(), 1e-9);
+        assertEquals(6.9, totals.minRating);
+        assertEquals(8.5, totals.maxRating);
+
+        MovieAggregates.Stats carpenter = manager.directorStats("John Carpenter");
+        assertEquals(3, carpenter.count);
+        assertEquals((7.7 + 6.9 + 8.2) / 3, carpenter.averageRating, 1e-9);
+        assertEquals(6.9, carpenter.minRating);
+        assertEquals(8.2, carpenter.maxRating);
+        assertNull(manager.directorStats("Dario Argento")); // its only movie was removed
+        assertEquals(List.of(1978, 1979, 1980, 1982), new ArrayList<>(manager.statsByYear().keySet()));
+
+        long[] histogram = manager.scarinessHistogram();
+        assertEquals(all.size(), java.util.Arrays.stream(histogram).sum());
+        assertEquals(2, histogram[9]); // Alien (9.3) and The Thing (9.1)
+        assertEquals(1, histogram[7]); // Halloween after the upsert (7.2)
+
+        MovieManager reloaded = new MovieManager(TEST_FILE);
+        assertEquals(totals.averageRating, reloaded.totals().averageRating, 1e-9);
+        assertEquals(3, reloaded.directorStats("John Carpenter").count);
+        assertArrayEquals(histogram, reloaded.scarinessHistogram());
+    }
+
+    // ------------------- 2️⃣4️⃣ Title search -------------------
+    @Test
+    void testSearchTitles_PrefixThenSubstringThenTypos() {
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.addMovie(new Movie("Halloween III", 1982, "Tommy Lee Wallace", 4.7, 98, 60000, false));
+        manager.addMovie(new Movie("Trick 'r Treat", 2007, "Michael Dougherty", 6.7, 82, 150000, false));
+        manager.addMovie(new Movie("The Texas Chain Saw Massacre", 1974, "Tobe Hooper", 7.4, 83, 160000, true));
+        manager.addMovie(new Movie("Hellraiser", 1987, "Clive Barker", 6.9, 94, 130000, false));
+
+        assertEquals(List.of("Halloween", "Halloween III"), titles(manager.searchTitles("hallo", 10)));
+        // prefix matches first, then titles containing the query
+        assertEquals(List.of("The Texas Chain Saw Massacre", "The Thing"), titles(manager.searchTitles("THE T", 10)));
+        assertEquals(List.of("The Texas Chain Saw Massacre"), titles(manager.searchTitles("saw", 10)));
+        // one typo in a 6+ character query, two in a 9+ character one
+        assertEquals(List.of("Hellraiser"), titles(manager.searchTitles("helraiser", 10)));
+        assertEquals(List.of("The Texas Chain Saw Massacre"), titles(manager.searchTitles("chainsaw masacre", 10)));
+        assertEquals(List.of("Halloween"), titles(manager.searchTitles("hallo", 1)));
+        assertTrue(manager.searchTitles("xyz", 10).isEmpty());
+        assertTrue(manager.searchTitles("  ", 10).isEmpty());
+    }
+
+    @Test
+    void testSearchTitles_FollowsChangesAndMatchesFullScan() throws IOException {
+        java.util.Random random = new java.util.Random(17);
+        String[] words = {"night", "dead", "house", "blood", "scream", "shadow", "grave", "witch"};
+        File tempCsv = new File("search_upload.csv");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            for (int i = 0; i < 2000; i++) {
+                String title = words[random.nextInt(words.length)] + " of the " + words[random.nextInt(words.length)] + " " + i;
+                bw.write(title + ",1990,Director " + (i % 50) + ",6.0,90,100,false\n");
+            }
+        }
+        manager.uploadCSV("search_upload.csv");
+        assertEquals(10, manager.searchTitles("night", 10).size()); // builds the index
+
+        // changes after the build: updates, removals, and enough adds to force a rebuild
+        for (int i = 0; i < 100; i++) manager.removeMovie(random.nextInt(manager.getAll().size()));
+        for (int i = 0; i < 100; i++) {
+            Movie m = manager.getAll().get(random.nextInt(manager.getAll().size()));
+            manager.update(m.getId(), new Movie("Shadwo house " + i, m.getYear(), m.getDirector(), 5.0, 80, 10, true));
+        }
+        manager.addMovie(new Movie("Nightmare on Elm Street", 1984, "Wes Craven", 7.4, 91, 250000, false));
+        assertEquals("Nightmare on Elm Street", manager.searchTitles("nightmare", 10).get(0).getTitle());
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            for (int i = 0; i < 5000; i++) bw.write("Witch house " + i + ",2000,Someone,5.0,80,10,false\n");
+        }
+        manager.uploadCSV("search_upload.csv");
+        tempCsv.delete();
+
+        for (String query : new String[] {"night", "shadow house", "grave 1", "od of th", "witch hous 12", "shadwo"}) {
+            int maxDistance = query.length() >= 9 ? 2 : query.length() >= 6 ? 1 : 0;
+            java.util.Set<Long> expected = new java.util.HashSet<>();
+            for (Movie m : manager.getAll()) {
+                if (MovieTitleIndex.substringDistance(query, m.getTitle().toLowerCase(), maxDistance) <= maxDistance) {
+                    expected.add(m.getId());
+                }
+            }
+            java.util.Set<Long> found = new java.util.HashSet<>();
+            for (Movie m : manager.searchTitles(query, Integer.MAX_VALUE)) found.add(m.getId());
+            assertEquals(expected, found, query);
+        }
+    }
+
+    private static List<String> titles(List<Movie> movies) {
+        List<String> titles = new ArrayList<>();
+        for (Movie m : movies) titles.add(m.getTitle());
+        return titles;
+    }
+
+    // ------------------- 2️⃣5️⃣ Deferred saves -------------------
+    @Test
+    void testDeferSaves_ChangesSavedOnCommit() {
+        manager.addMovie(new Movie("Halloween", 1978, "John Carpenter", 7.8, 91, 200000, false));
+        manager.deferSaves(true);
+        manager.addMovie(new Movie("The Fog", 1980, "John Carpenter", 6.8, 89, 80000, false));
+        manager.addMovie(new Movie("Alien", 1979, "Ridley Scott", 8.5, 117, 900000, true));
+        manager.remove(manager.getAll().get(0).getId());
+        assertEquals(1, new MovieManager(TEST_FILE).size()); // nothing saved yet
+
+        assertEquals(3, manager.commit());
+        assertEquals(List.of("The Fog", "Alien"), titles(new MovieManager(TEST_FILE).getAll()));
+        assertEquals(0, manager.commit());
+
+        manager.addMovie(new Movie("Suspiria", 1977, "Dario Argento", 7.4, 99, 90000, false));
+        manager.deferSaves(false); // commits the rest
+        assertEquals(3, new MovieManager(TEST_FILE).size());
+        manager.addMovie(new Movie("The Thing", 1982, "John Carpenter", 8.2, 109, 450000, false));
+        assertEquals(4, new MovieManager(TEST_FILE).size()); // saved right away again
+    }
+
+    // ------------------- 2️⃣6️⃣ Upload error reporting -------------------
+    @Test
+    void testUploadCSV_BoundedErrorsQuarantineAndProgress() throws IOException {
+        File tempCsv = new File("upload_errors_test.csv");
+        List<String> rejected = new ArrayList<>();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(tempCsv))) {
+            bw.write("title,year,director,rating,runtimeMinutes,votes,watched\n");
+            for (int i = 1; i <= 1000; i++) {
+                String row;
+                if (i % 5 == 0) row = "Bad Year " + i + ",19x" + i + ",Nobody,5.0,90,10,true";
+                else if (i % 10 == 3) row = "Bad Rating " + i + ",2000,Nobody,1" + i + ",90,10,true";
+                else row = "Movie " + i + ",2000,Director,5.5,90," + i + ",false";
+                if (!row.startsWith("Movie")) rejected.add(row);
+                bw.write(row + "\n");
+            }
+        }
+
+        for (boolean parallelUpload : new boolean[]{false, true}) {
+            MovieManager.Options options = new MovieManager.Options();
+            options.parallelUpload = parallelUpload;
+            options.uploadChunkBytes = 4096;
+            MovieManager target = new MovieManager(TEST_FILE + "." + parallelUpload, options);
+            java.nio.file.Path quarantine = java.nio.file.Path.of("upload_errors_test.rejected");
+            long[] last = new long[2];
+            MovieManager.UploadReport report = target.uploadCSV(tempCsv.getPath(), MovieManager.UploadMode.APPEND,
+                    new UploadErrors(5, quarantine), (lines, bytes, nanos) -> {
+                        assertTrue(lines >= last[0] && bytes >= last[1]);
+                        last[0] = lines;
+                        last[1] = bytes;
+                    });
+
+            assertEquals(700, report.inserted);
+            assertEquals(300, report.errorCount);
+            assertEquals(5, report.errors.size()); // only the sample is kept
+            assertEquals("Line 4: Rating must be between 0.0 and 10.0", report.errors.get(0));
+            assertEquals("Line 6: Year is not a valid integer: '19x5'", report.errors.get(1));
+            assertEquals(java.util.Map.of("Year is not a valid integer", 200L,
+                    "Rating must be between 0.0 and 10.0", 100L), report.errorsByCategory);
+            assertEquals(1001, last[0]);
+            assertEquals(tempCsv.length(), last[1]);
+
+            // The rejected lines, in file order, as a file that can be uploaded again
+            List<String> quarantined = java.nio.file.Files.readAllLines(report.quarantine);
+            assertEquals(MovieManager.EXPORT_HEADER, quarantined.get(0));
+            assertEquals(rejected, quarantined.subList(1, quarantined.size()));
+            assertEquals(300, target.uploadCSV(report.quarantine.toString()).errorCount);
+            assertEquals(0, new File(".").list((dir, name) -> name.startsWith("upload_errors_test.rejected.part")).length,
+                    "chunk spill files are merged and deleted");
+
+            java.nio.file.Files.delete(quarantine);
+            new File(TEST_FILE + "." + parallelUpload).delete();
+        }
+        tempCsv.delete();
+    }
 }
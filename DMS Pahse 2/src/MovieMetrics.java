@@ -0,0 +1,190 @@
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation timings and counters for a MovieManager.
+ *
+ * Everything is lock-free: counters are LongAdders and every operation has
+ * a log-linear latency histogram (HDR-style, about 6% relative error) in an
+ * AtomicLongArray. The instance is published over JMX as an MXBean.
+ *
+ * DISABLED is a shared instance whose methods return right away, so
+ * instrumented code does not need null checks and pays one predictable
+ * branch per call when metrics are off.
+ */
+public class MovieMetrics implements MovieMetricsMXBean {
+
+    public enum Op { LOAD, SAVE, UPLOAD, ADD, UPDATE, REMOVE, EXPORT, SEARCH }
+
+    public static final MovieMetrics DISABLED = new MovieMetrics(false);
+
+    private final boolean enabled;
+    private final long startedAt = System.nanoTime();
+    private final Map<Op, Histogram> latencies = new EnumMap<>(Op.class);
+
+    private final LongAdder rowsLoaded = new LongAdder();
+    private final LongAdder rowsSkipped = new LongAdder();
+    private final LongAdder rowsUploaded = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public MovieMetrics() {
+        this(true);
+    }
+
+    private MovieMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Op op : Op.values()) latencies.put(op, new Histogram());
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    // ---------------- Recording ----------------
+
+    /**
+     * Start time to pass to stop(); 0 when disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(Op op, long start) {
+        if (!enabled) return;
+        latencies.get(op).record(System.nanoTime() - start);
+    }
+
+    public void rowsLoaded(long n) { if (enabled) rowsLoaded.add(n); }
+    public void rowsSkipped(long n) { if (enabled) rowsSkipped.add(n); }
+    public void rowsUploaded(long n) { if (enabled) rowsUploaded.add(n); }
+    public void bytesWritten(long n) { if (enabled) bytesWritten.add(n); }
+
+    // ---------------- Reading ----------------
+
+    public Histogram latency(Op op) { return latencies.get(op); }
+
+    @Override
+    public long getRowsLoaded() { return rowsLoaded.sum(); }
+
+    @Override
+    public long getRowsSkipped() { return rowsSkipped.sum(); }
+
+    @Override
+    public long getRowsUploaded() { return rowsUploaded.sum(); }
+
+    @Override
+    public long getBytesWritten() { return bytesWritten.sum(); }
+
+    @Override
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        double uptime = getUptimeSeconds();
+        for (Op op : Op.values()) {
+            Histogram h = latencies.get(op);
+            long count = h.count();
+            stats.put(op.name().toLowerCase(), new OperationStats(count,
+                    millis(h.percentile(0.50)), millis(h.percentile(0.99)), millis(h.max()),
+                    uptime > 0 ? count / uptime : 0));
+        }
+        return stats;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Latency summary of one operation (times in milliseconds).
+     */
+    public static class OperationStats {
+        private final long count;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final double perSecond;
+
+        public OperationStats(long count, double p50Millis, double p99Millis, double maxMillis, double perSecond) {
+            this.count = count;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+            this.perSecond = perSecond;
+        }
+
+        public long getCount() { return count; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getMaxMillis() { return maxMillis; }
+        // Average rate since the manager was created
+        public double getPerSecond() { return perSecond; }
+    }
+
+    /**
+     * Log-linear histogram of non-negative values (nanoseconds here).
+     *
+     * Values below 2^SUB_BITS get a bucket each; above that every power of
+     * two is split into 2^SUB_BITS equal sub-buckets, so a bucket's width is
+     * at most 1/2^SUB_BITS of its lower bound. percentile() reports the upper
+     * bound of the bucket, capped at the largest value recorded.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(bucketOf(value));
+            count.increment();
+            max.accumulate(value);
+        }
+
+        public long count() { return count.sum(); }
+
+        public long max() { return max.get(); }
+
+        /**
+         * Smallest bucket bound with at least q of the recorded values at or
+         * below it (0 when nothing was recorded).
+         */
+        public long percentile(double q) {
+            long total = count();
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank) return Math.min(upperBound(b), max());
+            }
+            return max();
+        }
+
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS; // >= 0
+            int sub = (int) (v >>> shift) & (SUB_BUCKETS - 1);
+            return (shift + 1) * SUB_BUCKETS + sub;
+        }
+
+        // Largest value that lands in bucket b
+        static long upperBound(int b) {
+            if (b < SUB_BUCKETS) return b;
+            int shift = b / SUB_BUCKETS - 1;
+            long lower = ((long) (SUB_BUCKETS + b % SUB_BUCKETS)) << shift;
+            long width = 1L << shift;
+            return lower > Long.MAX_VALUE - width ? Long.MAX_VALUE : lower + width - 1;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+import java.util.Map;
+
+/**
+ * JMX view of MovieMetrics, registered as dms:type=MovieManager,file=...
+ * when a MovieManager is created with metrics enabled.
+ */
+public interface MovieMetricsMXBean {
+
+    long getRowsLoaded();
+
+    // Invalid lines skipped while loading or uploading
+    long getRowsSkipped();
+
+    long getRowsUploaded();
+
+    // Snapshot, journal and export bytes
+    long getBytesWritten();
+
+    double getUptimeSeconds();
+
+    // Keyed by operation name (load, save, upload, add, update, remove, export)
+    Map<String, MovieMetrics.OperationStats> getOperations();
+}
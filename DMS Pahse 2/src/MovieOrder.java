@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * A sort order over movies: one or more keys, each ascending or descending,
+ * such as "rating desc, votes desc". Movies equal on every key come in id
+ * order, so an order never leaves ties to chance.
+ *
+ * Immutable; then() returns a new order. MovieSort reads the keys directly
+ * to sort large sets by primitive columns instead of through compare().
+ */
+public final class MovieOrder implements Comparator<Movie> {
+
+    public enum Key {
+        ID, TITLE, YEAR, RATING, VOTES, RUNTIME, SCARINESS;
+
+        /**
+         * A long that sorts like the key (ascending), for every key but
+         * TITLE. Doubles keep their Double.compare order.
+         */
+        long sortKey(Movie m) {
+            return switch (this) {
+                case ID -> m.getId();
+                case YEAR -> m.getYear();
+                case VOTES -> m.getVotes();
+                case RUNTIME -> m.getRuntimeMinutes();
+                case RATING -> sortable(m.getRating());
+                case SCARINESS -> sortable(m.getScariness());
+                case TITLE -> throw new UnsupportedOperationException("Titles have no numeric key");
+            };
+        }
+
+        int compare(Movie a, Movie b) {
+            return switch (this) {
+                case TITLE -> String.CASE_INSENSITIVE_ORDER.compare(a.getTitle(), b.getTitle());
+                case RATING -> Double.compare(a.getRating(), b.getRating());
+                case SCARINESS -> Double.compare(a.getScariness(), b.getScariness());
+                default -> Long.compare(sortKey(a), sortKey(b));
+            };
+        }
+    }
+
+    private final Key[] keys;
+    private final boolean[] descending;
+
+    private MovieOrder(Key[] keys, boolean[] descending) {
+        this.keys = keys;
+        this.descending = descending;
+    }
+
+    public static MovieOrder by(Key key) {
+        return by(key, false);
+    }
+
+    public static MovieOrder by(Key key, boolean descending) {
+        return new MovieOrder(new Key[]{key}, new boolean[]{descending});
+    }
+
+    public MovieOrder then(Key key) {
+        return then(key, false);
+    }
+
+    // This order, with ties broken by key
+    public MovieOrder then(Key key, boolean descending) {
+        Key[] k = Arrays.copyOf(keys, keys.length + 1);
+        boolean[] d = Arrays.copyOf(this.descending, keys.length + 1);
+        k[keys.length] = key;
+        d[keys.length] = descending;
+        return new MovieOrder(k, d);
+    }
+
+    /**
+     * Parses keys separated by commas, each optionally followed by asc or
+     * desc: "rating desc, votes desc, title". Key names are those of Key,
+     * in any case. Throws IllegalArgumentException for a spec without keys.
+     */
+    public static MovieOrder parse(String spec) {
+        MovieOrder order = null;
+        for (String part : spec.split(",")) {
+            String[] words = part.trim().toLowerCase(Locale.ROOT).split("\\s+");
+            if (words[0].isEmpty()) throw new IllegalArgumentException("Empty sort key in \"" + spec + "\"");
+            boolean desc = words.length == 2 && words[1].equals("desc");
+            if (words.length > 2 || words.length == 2 && !desc && !words[1].equals("asc")) {
+                throw new IllegalArgumentException("Expected a field, optionally followed by asc or desc");
+            }
+            Key key;
+            try {
+                key = Key.valueOf(words[0].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort field: " + words[0]);
+            }
+            order = order == null ? by(key, desc) : order.then(key, desc);
+        }
+        if (order == null) throw new IllegalArgumentException("Empty sort spec"); // "," splits into nothing
+        return order;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public Key key(int i) {
+        return keys[i];
+    }
+
+    public boolean isDescending(int i) {
+        return descending[i];
+    }
+
+    // Plain id order, which the catalog is already in
+    public boolean isIdOrder() {
+        return keys[0] == Key.ID && !descending[0];
+    }
+
+    @Override
+    public int compare(Movie a, Movie b) {
+        for (int i = 0; i < keys.length; i++) {
+            int c = keys[i].compare(a, b);
+            if (c != 0) return descending[i] ? -c : c;
+        }
+        return Long.compare(a.getId(), b.getId());
+    }
+
+    // The parse() form of this order
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(keys[i].name().toLowerCase(Locale.ROOT)).append(descending[i] ? " desc" : " asc");
+        }
+        return sb.toString();
+    }
+
+    // Keeps the bits of positive doubles and flips the magnitude of negative ones, so longs compare like the doubles
+    static long sortable(double v) {
+        long bits = Double.doubleToLongBits(v);
+        return bits ^ (bits >> 63 & Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * UTF-8 text written straight into a byte buffer, with the CSV and JSON
+ * forms of a movie, so large outputs (exports, HTTP listings) do not build
+ * a String per row. Subclasses decide where a full buffer goes.
+ *
+ * Not thread-safe; one writer per output.
+ */
+public abstract class MovieOutput {
+
+    protected byte[] buf;
+    protected int pos;
+
+    protected MovieOutput(byte[] buf) {
+        this.buf = buf;
+    }
+
+    // Hands buf[0, pos) on and empties the buffer (pos = 0)
+    protected abstract void drain() throws IOException;
+
+    // Text that needs no escaping or encoding (punctuation, field names, digits)
+    public MovieOutput ascii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            if (pos == buf.length) drain();
+            buf[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    // Any text, encoded as UTF-8 without escaping
+    public MovieOutput text(String s) throws IOException {
+        int n = s.length();
+        if (pos + 3 * n > buf.length) drain();
+        if (3 * n > buf.length) {
+            for (int i = 0; i < n; i++) { // longer than the buffer: check room per char
+                if (pos + 4 > buf.length) drain();
+                char c = s.charAt(i);
+                if (c < 0x80) buf[pos++] = (byte) c;
+                else i = encode(s, i);
+            }
+            return this;
+        }
+        byte[] b = buf;
+        int p = pos;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            } else {
+                pos = p;
+                i = encode(s, i);
+                p = pos;
+            }
+        }
+        pos = p;
+        return this;
+    }
+
+    // A JSON string literal
+    public MovieOutput string(String s) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            if (pos + 6 > buf.length) drain(); // longest form: \\u00XX
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf[pos++] = '\\';
+                buf[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                buf[pos++] = '\\';
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = (byte) Character.forDigit(c >> 4, 16);
+                buf[pos++] = (byte) Character.forDigit(c & 0xF, 16);
+            } else if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else {
+                i = encode(s, i);
+            }
+        }
+        if (pos == buf.length) drain();
+        buf[pos++] = '"';
+        return this;
+    }
+
+    // Encodes the non-ASCII char at i (and its low surrogate); returns the last index used
+    private int encode(String s, int i) {
+        char c = s.charAt(i);
+        if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | c >> 6);
+            buf[pos++] = (byte) (0x80 | c & 0x3F);
+            return i;
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buf[pos++] = (byte) (0xF0 | cp >> 18);
+            buf[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buf[pos++] = (byte) (0x80 | cp & 0x3F);
+            return i;
+        }
+        if (Character.isSurrogate(c)) c = '\uFFFD'; // unpaired
+        buf[pos++] = (byte) (0xE0 | c >> 12);
+        buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+        buf[pos++] = (byte) (0x80 | c & 0x3F);
+        return i;
+    }
+
+    public MovieOutput number(long v) throws IOException {
+        if (pos + 20 > buf.length) drain();
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) return ascii(Long.toString(v));
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos + digits(v);
+        int i = end;
+        while (v > Integer.MAX_VALUE) {
+            buf[--i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        for (int x = (int) v; i > pos; x /= 10) { // int division is much cheaper
+            buf[--i] = (byte) ('0' + x % 10);
+        }
+        pos = end;
+        return this;
+    }
+
+    // A JSON number (null for NaN and infinities); same digits as Double.toString
+    public MovieOutput number(double v) throws IOException {
+        if ((v >= 1e-3 && v < 1e7 || Double.doubleToRawLongBits(v) == 0) && wholeTenths(v)) {
+            return tenths(v); // no String for the usual ratings
+        }
+        return ascii(Double.isFinite(v) ? Double.toString(v) : "null");
+    }
+
+    // Whether v is the double closest to some number of tenths (such as 8.4)
+    private static boolean wholeTenths(double v) {
+        long k = Math.round(v * 10);
+        return k / 10.0 == v && Math.abs(k) < 1L << 52;
+    }
+
+    /**
+     * v with one decimal, as Movie.toString writes it ("%.1f", rounding
+     * half up) but always with a '.'. Ratings read from a file are almost
+     * always a whole number of tenths, which takes no formatting at all.
+     */
+    public MovieOutput tenths(double v) throws IOException {
+        if (wholeTenths(v)) {
+            long k = Math.round(v * 10);
+            if (k < 0) {
+                if (pos == buf.length) drain();
+                buf[pos++] = '-';
+                k = -k;
+            }
+            number(k / 10);
+            if (pos + 2 > buf.length) drain();
+            buf[pos++] = '.';
+            buf[pos++] = (byte) ('0' + k % 10);
+            return this;
+        }
+        return ascii(new BigDecimal(Double.toString(v)).setScale(1, RoundingMode.HALF_UP).toPlainString());
+    }
+
+    // The CSV row of an export or upload file: no id, same columns and format as Movie.toString
+    public MovieOutput csv(Movie m) throws IOException {
+        text(m.getTitle());
+        ascii(",").number(m.getYear());
+        ascii(",").text(m.getDirector());
+        ascii(",").tenths(m.getRating());
+        ascii(",").number(m.getRuntimeMinutes());
+        ascii(",").number(m.getVotes());
+        return ascii(m.isWatched() ? ",true" : ",false");
+    }
+
+    // The JSON object of a movie, as the HTTP API returns it
+    public MovieOutput json(Movie m) throws IOException {
+        ascii("{\"id\":").number(m.getId());
+        ascii(",\"title\":").string(m.getTitle());
+        ascii(",\"year\":").number(m.getYear());
+        ascii(",\"director\":").string(m.getDirector());
+        ascii(",\"rating\":").number(m.getRating());
+        ascii(",\"runtimeMinutes\":").number(m.getRuntimeMinutes());
+        ascii(",\"votes\":").number(m.getVotes());
+        return ascii(m.isWatched() ? ",\"watched\":true}" : ",\"watched\":false}");
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        for (long limit = 10; n < 19 && v >= limit; limit *= 10) n++;
+        return n;
+    }
+}
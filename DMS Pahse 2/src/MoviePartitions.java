@@ -0,0 +1,208 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Year-partitioned layout used by MovieManager in partitioned mode.
+ *
+ * The catalog lives in a directory next to the CSV file (movies.csv.parts),
+ * with one CSV segment per decade ("1970s.3.csv": decade and save
+ * generation; same format and columns as movies.csv, ids included) and a
+ * manifest listing the current segments and the next id. A segment can be
+ * read without touching the others, and saving a change rewrites only the
+ * segments of the decades it falls in.
+ *
+ * The manifest is the commit point. A save writes the changed segments
+ * under new names, then replaces the manifest in one rename, and only then
+ * deletes the segments it superseded; segments a save wrote without getting
+ * to the manifest are not listed, and open() deletes them. A crash therefore
+ * leaves either the old catalog or the new one, never a movie in two
+ * segments (or in none) or a next id lower than an id on disk.
+ */
+public class MoviePartitions {
+
+    private static final String SUFFIX = ".csv";
+    private static final String MANIFEST = "manifest";
+    private static final String NEXT_ID_MARKER = "#next-id=";
+    private static final String GENERATION_MARKER = "#generation=";
+    private static final String SEGMENT_MARKER = "#segment=";
+
+    private final Path dir;
+    private final SortedMap<Integer, String> segments = new TreeMap<>(); // decade -> file, as committed
+    private long generation;
+    private long nextId = 1;
+
+    public MoviePartitions(String filePath) {
+        this.dir = Paths.get(filePath + ".parts");
+    }
+
+    // First year of the decade a year belongs to (1979 -> 1970); clamped at Integer.MIN_VALUE
+    public static int decadeOf(int year) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.floorDiv((long) year, 10) * 10);
+    }
+
+    // Whether the layout has been written yet (otherwise the CSV file is migrated)
+    public boolean exists() {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    /**
+     * Reads the manifest and deletes the files it does not list. A manifest
+     * without segment lines is from before generations, when each decade
+     * had one "1970s.csv" file; those files are taken as they are.
+     */
+    public void open() throws IOException {
+        segments.clear();
+        generation = 0;
+        nextId = 1;
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) return;
+        boolean generations = false;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            try {
+                if (line.startsWith(NEXT_ID_MARKER)) {
+                    nextId = Long.parseLong(line.substring(NEXT_ID_MARKER.length()).trim());
+                } else if (line.startsWith(GENERATION_MARKER)) {
+                    generation = Long.parseLong(line.substring(GENERATION_MARKER.length()).trim());
+                    generations = true;
+                } else if (line.startsWith(SEGMENT_MARKER)) {
+                    String name = line.substring(SEGMENT_MARKER.length()).trim();
+                    segments.put(segmentDecade(name), name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid manifest line: " + line);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.equals(MANIFEST)) continue;
+                if (!generations && name.endsWith("s" + SUFFIX)) {
+                    try {
+                        segments.put(segmentDecade(name), name);
+                        continue;
+                    } catch (NumberFormatException ignored) {
+                        // not a segment
+                    }
+                }
+                if (!segments.containsValue(name)) Files.deleteIfExists(p); // from a save that did not commit
+            }
+        }
+    }
+
+    // The next id recorded by the last save, or 1
+    public long nextId() {
+        return nextId;
+    }
+
+    // The decades that have a segment
+    public SortedSet<Integer> decades() {
+        return new TreeSet<>(segments.keySet());
+    }
+
+    // Decade of a segment file name: "1970s.3.csv" (or "1970s.csv") -> 1970
+    private static int segmentDecade(String name) {
+        return Integer.parseInt(name.substring(0, name.indexOf("s.")));
+    }
+
+    /**
+     * Reads one decade's segment into the sink (nothing if it has none).
+     * Returns the number of rows read.
+     */
+    public int read(int decade, MappedCsvLoader.Sink sink, StringPool directors) throws IOException {
+        String name = segments.get(decade);
+        if (name == null) return 0;
+        Path p = dir.resolve(name);
+        int[] rows = {0};
+        MappedCsvLoader.load(p, new MappedCsvLoader.Sink() {
+            @Override
+            public void row(long id, String title, int year, String director, double rating,
+                            int runtimeMinutes, int votes, boolean watched) {
+                rows[0]++;
+                sink.row(id, title, year, director, rating, runtimeMinutes, votes, watched);
+            }
+
+            @Override
+            public void error(int lineNum, String message) {
+                sink.error(lineNum, message);
+            }
+
+            @Override
+            public boolean directive(String line) {
+                return true; // segments carry no markers that matter
+            }
+        }, directors);
+        return rows[0];
+    }
+
+    /**
+     * Saves the rows of the changed decades (each in id order; an empty
+     * list drops the decade) together with the next id, as one commit.
+     * Returns the bytes written.
+     */
+    public long save(Map<Integer, List<Movie>> changed, long nextId, boolean fsync) throws IOException {
+        Files.createDirectories(dir);
+        long gen = generation + 1;
+        SortedMap<Integer, String> next = new TreeMap<>(segments);
+        long bytes = 0;
+        for (Map.Entry<Integer, List<Movie>> e : changed.entrySet()) {
+            if (e.getValue().isEmpty()) {
+                next.remove(e.getKey());
+                continue;
+            }
+            String name = e.getKey() + "s." + gen + SUFFIX;
+            bytes += writeLines(dir.resolve(name), fsync, List.of(MovieManager.HEADER), e.getValue());
+            next.put(e.getKey(), name);
+        }
+
+        List<String> manifest = new ArrayList<>();
+        manifest.add(GENERATION_MARKER + gen);
+        manifest.add(NEXT_ID_MARKER + nextId);
+        for (String name : next.values()) manifest.add(SEGMENT_MARKER + name);
+        bytes += writeLines(dir.resolve(MANIFEST), fsync, manifest, List.of()); // the commit
+
+        List<String> superseded = new ArrayList<>(segments.values());
+        superseded.removeAll(next.values());
+        segments.clear();
+        segments.putAll(next);
+        generation = gen;
+        this.nextId = nextId;
+        for (String name : superseded) Files.deleteIfExists(dir.resolve(name));
+        return bytes;
+    }
+
+    // Writes a temporary file and renames it over target, so a crash never leaves half a file; returns its size
+    private static long writeLines(Path target, boolean fsync, List<String> lines, List<Movie> rows) throws IOException {
+        Path tmp = Paths.get(target + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                bw.write(line);
+                bw.newLine();
+            }
+            for (Movie m : rows) {
+                bw.write(m.getId() + "," + m);
+                bw.newLine();
+            }
+            bw.flush();
+            if (fsync) fos.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(target);
+    }
+}
@@ -0,0 +1,530 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP/JSON API over a MovieManager (java Main --serve), built on the
+ * JDK's com.sun.net.httpserver.
+ *
+ *   GET    /movies?offset=0&limit=100   movies in id order (all of them without limit)
+ *   POST   /movies                      add; body {"title": ..., "year": ..., "director": ...,
+ *                                       "rating": ..., "runtimeMinutes": ..., "votes": ..., "watched": ...}
+ *   GET    /movies/{id}                 one movie
+ *   PUT    /movies/{id}                 replace its attributes; same body as POST
+ *   DELETE /movies/{id}
+ *   GET    /movies/{id}/scariness       {"id": ..., "scariness": ...}
+ *   GET    /search?q=text&limit=20      searchTitles
+ *   POST   /upload[?mode=upsert]        body: CSV rows as for uploadCSV; returns the report
+ *
+ * Movies are objects with the fields above plus "id". Errors are
+ * {"error": message} with status 400 (invalid input), 404, 405 or 500.
+ *
+ * Requests run on a virtual thread each when the JVM has them (JDK 21+;
+ * looked up reflectively since the build targets 17) and on a bounded pool
+ * of platform threads otherwise. Responses are written into pooled buffers:
+ * a response that fits in one buffer is sent with a Content-Length, a larger
+ * one (a big listing) goes out in chunks as the buffer fills, so a full
+ * listing never exists in memory as a whole.
+ */
+public class MovieServer {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int POOLED_BUFFERS = 256;
+    private static final int MAX_JSON_BODY = 64 * 1024;
+    private static final int PLATFORM_THREADS = 256;
+    private static final int BACKLOG = 4096;
+
+    // The JDK server reads these once, when the first server is created.
+    // Without nodelay every response waits ~40 ms for a delayed ACK (headers
+    // and body are separate writes); the default of 200 idle keep-alive
+    // connections would close most of them under thousands of clients.
+    static {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "20000");
+        }
+    }
+
+    private final MovieManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final ArrayBlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    /**
+     * Binds to address (port 0 picks a free port); call start() to serve.
+     */
+    public MovieServer(MovieManager manager, InetSocketAddress address) throws IOException {
+        this.manager = manager;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : platformThreadExecutor();
+        this.server = HttpServer.create(address, BACKLOG);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting, gives running exchanges up to delaySeconds to finish
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Whether requests run on virtual threads (false: platform thread pool)
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // before JDK 21 (or 19/20 without --enable-preview)
+        }
+    }
+
+    // Handlers only block on the manager's lock and on the client, so a few
+    // hundred threads keep thousands of connections busy; the rest queue
+    private static ExecutorService platformThreadExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "movie-http-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // ---------------- Routing ----------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (IOException | RuntimeException e) {
+            // Once the headers are out, only a dropped connection tells the client
+            // the body is incomplete: the JDK server closes it when a handler throws
+            if (exchange.getResponseCode() != -1) throw e;
+            if (e instanceof IllegalArgumentException) {
+                error(exchange, 400, e.getMessage());
+            } else if (e instanceof IOException) {
+                exchange.close(); // client gone or upload unreadable; nothing useful to send
+            } else {
+                error(exchange, 500, e.toString());
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.equals("/movies")) {
+            switch (method) {
+                case "GET" -> listMovies(exchange, query);
+                case "POST" -> addMovie(exchange);
+                default -> notAllowed(exchange, "GET, POST");
+            }
+        } else if (path.startsWith("/movies/")) {
+            String rest = path.substring("/movies/".length());
+            boolean scariness = rest.endsWith("/scariness");
+            long id = parseId(scariness ? rest.substring(0, rest.length() - "/scariness".length()) : rest);
+            if (id < 0) {
+                error(exchange, 404, "Not found: " + path);
+            } else if (scariness) {
+                if (method.equals("GET")) scariness(exchange, id); else notAllowed(exchange, "GET");
+            } else {
+                switch (method) {
+                    case "GET" -> getMovie(exchange, id);
+                    case "PUT" -> updateMovie(exchange, id);
+                    case "DELETE" -> deleteMovie(exchange, id);
+                    default -> notAllowed(exchange, "GET, PUT, DELETE");
+                }
+            }
+        } else if (path.equals("/search")) {
+            if (method.equals("GET")) search(exchange, query); else notAllowed(exchange, "GET");
+        } else if (path.equals("/upload")) {
+            if (method.equals("POST")) upload(exchange, query); else notAllowed(exchange, "POST");
+        } else {
+            error(exchange, 404, "Not found: " + path);
+        }
+    }
+
+    // ---------------- Handlers ----------------
+
+    private void listMovies(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int offset = intParam(query, "offset", 0);
+        int limit = intParam(query, "limit", Integer.MAX_VALUE);
+        List<Movie> page = manager.page(offset, limit); // view of an immutable snapshot, no lock held
+        respond(exchange, 200, out -> {
+            out.ascii("[");
+            for (int i = 0; i < page.size(); i++) {
+                if (i > 0) out.ascii(",");
+                out.json(page.get(i));
+            }
+            out.ascii("]");
+        });
+    }
+
+    private void addMovie(HttpExchange exchange) throws IOException {
+        Movie m = movieFromJson(readJson(exchange));
+        manager.addMovie(m);
+        exchange.getResponseHeaders().set("Location", "/movies/" + m.getId());
+        respond(exchange, 201, out -> out.json(m));
+    }
+
+    private void getMovie(HttpExchange exchange, long id) throws IOException {
+        Movie m = manager.get(id);
+        if (m == null) {
+            error(exchange, 404, "No movie with id " + id);
+            return;
+        }
+        respond(exchange, 200, out -> out.json(m));
+    }
+
+    private void updateMovie(HttpExchange exchange, long id) throws IOException {
+        Movie m = movieFromJson(readJson(exchange));
+        if (!manager.update(id, m)) {
+            error(exchange, 404, "No movie with id " + id);
+            return;
+        }
+        getMovie(exchange, id);
+    }
+
+    private void deleteMovie(HttpExchange exchange, long id) throws IOException {
+        if (!manager.remove(id)) {
+            error(exchange, 404, "No movie with id " + id);
+            return;
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private void scariness(HttpExchange exchange, long id) throws IOException {
+        Movie m = manager.get(id);
+        if (m == null) {
+            error(exchange, 404, "No movie with id " + id);
+            return;
+        }
+        respond(exchange, 200,
+                out -> out.ascii("{\"id\":").number(id).ascii(",\"scariness\":").number(m.getScariness()).ascii("}"));
+    }
+
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String q = query.getOrDefault("q", "").trim();
+        if (q.isEmpty()) throw new IllegalArgumentException("Missing query parameter q");
+        List<Movie> found = manager.searchTitles(q, intParam(query, "limit", 20));
+        respond(exchange, 200, out -> {
+            out.ascii("[");
+            for (int i = 0; i < found.size(); i++) {
+                if (i > 0) out.ascii(",");
+                out.json(found.get(i));
+            }
+            out.ascii("]");
+        });
+    }
+
+    // uploadCSV reads a file, so the body is spooled to a temporary one first
+    private void upload(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String mode = query.getOrDefault("mode", "append");
+        if (!mode.equals("append") && !mode.equals("upsert")) {
+            throw new IllegalArgumentException("mode must be append or upsert");
+        }
+        Path tmp = Files.createTempFile("movies-upload", ".csv");
+        MovieManager.UploadReport report;
+        try {
+            try (InputStream in = exchange.getRequestBody()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            report = manager.uploadCSV(tmp.toString(),
+                    mode.equals("upsert") ? MovieManager.UploadMode.UPSERT : MovieManager.UploadMode.APPEND);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        respond(exchange, 200, out -> {
+            out.ascii("{\"inserted\":").number(report.inserted)
+                    .ascii(",\"updated\":").number(report.updated)
+                    .ascii(",\"duplicates\":").number(report.duplicates)
+                    .ascii(",\"errors\":[");
+            for (int i = 0; i < report.errors.size(); i++) {
+                if (i > 0) out.ascii(",");
+                out.string(report.errors.get(i));
+            }
+            out.ascii("],\"errorCount\":").number(report.errorCount).ascii("}");
+        });
+    }
+
+    private void notAllowed(HttpExchange exchange, String allow) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allow);
+        error(exchange, 405, exchange.getRequestMethod() + " is not supported here");
+    }
+
+    private void error(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, out -> out.ascii("{\"error\":").string(message == null ? "" : message).ascii("}"));
+    }
+
+    // ---------------- Request parsing ----------------
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) throw new IllegalArgumentException(name + " must not be negative");
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a valid integer: '" + value + "'");
+        }
+    }
+
+    // The id in a path, or -1 when it is not one
+    private static long parseId(String s) {
+        if (s.isEmpty() || s.length() > 18) return -1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') return -1;
+        }
+        return Long.parseLong(s);
+    }
+
+    private static Map<String, String> readJson(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_JSON_BODY + 1);
+        }
+        if (body.length > MAX_JSON_BODY) throw new IllegalArgumentException("Request body is too large");
+        return parseObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a flat JSON object. String values are unescaped; numbers,
+     * true, false and null are returned as written.
+     */
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                if (peek(json, pos) != '"') throw new IllegalArgumentException("Expected a field name at " + pos[0]);
+                String key = readString(json, pos);
+                expect(json, pos, ':');
+                String value = peek(json, pos) == '"' ? readString(json, pos) : readLiteral(json, pos);
+                fields.put(key, value);
+                char c = peek(json, pos);
+                pos[0]++;
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+        if (skipSpace(json, pos[0]) != json.length()) throw new IllegalArgumentException("Unexpected text after the object");
+        return fields;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    // The next non-blank character (skipping it is left to the caller)
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipSpace(s, pos[0]);
+        if (pos[0] >= s.length()) throw new IllegalArgumentException("Unexpected end of JSON");
+        return s.charAt(pos[0]);
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+        pos[0]++;
+    }
+
+    private static String readString(String s, int[] pos) {
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0] + 1;
+        while (true) {
+            if (i >= s.length()) throw new IllegalArgumentException("Unterminated string");
+            char c = s.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= s.length()) throw new IllegalArgumentException("Unterminated string");
+            char e = s.charAt(i++);
+            switch (e) {
+                case '"', '\\', '/' -> sb.append(e);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (i + 4 > s.length()) throw new IllegalArgumentException("Invalid \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(s, i, i + 4, 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid \\u escape");
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("Invalid escape \\" + e);
+            }
+        }
+        pos[0] = i;
+        return sb.toString();
+    }
+
+    private static String readLiteral(String s, int[] pos) {
+        int start = pos[0], i = start;
+        while (i < s.length() && ",}] \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+        if (i == start) throw new IllegalArgumentException("Expected a value at " + start);
+        pos[0] = i;
+        return s.substring(start, i);
+    }
+
+    private static final String[] MOVIE_FIELDS = {"title", "year", "director", "rating", "runtimeMinutes", "votes", "watched"};
+
+    // Validated exactly like an uploaded CSV row
+    static Movie movieFromJson(Map<String, String> fields) {
+        StringBuilder row = new StringBuilder(96);
+        for (String name : MOVIE_FIELDS) {
+            String value = fields.get(name);
+            if (value == null) throw new IllegalArgumentException("Missing field: " + name);
+            if (value.indexOf(',') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Field " + name + " must not contain commas or line breaks");
+            }
+            if (row.length() > 0) row.append(',');
+            row.append(value);
+        }
+        return Movie.fromCSV(row.toString());
+    }
+
+    // ---------------- Responses ----------------
+
+    private byte[] acquireBuffer() {
+        byte[] b = buffers.poll();
+        return b != null ? b : new byte[BUFFER_SIZE];
+    }
+
+    private void releaseBuffer(byte[] b) {
+        buffers.offer(b); // dropped when the pool is full
+    }
+
+    // Writes a response body into a JsonResponse
+    private interface JsonBody {
+        void write(JsonResponse out) throws IOException;
+    }
+
+    /**
+     * Sends what body writes. If body fails, nothing more is sent and the
+     * failure goes on to handle(): as an error response when the headers are
+     * not out yet, as a dropped connection when part of the body is.
+     */
+    private void respond(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        JsonResponse out = new JsonResponse(exchange, status);
+        try {
+            body.write(out);
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        out.finish();
+    }
+
+    /**
+     * JSON response body written straight into a pooled buffer as UTF-8.
+     * The headers go out when the buffer first fills (chunked) or on finish
+     * (with a Content-Length).
+     */
+    private final class JsonResponse extends MovieOutput {
+        private final HttpExchange exchange;
+        private final int status;
+        private OutputStream body; // null until the headers are sent
+
+        JsonResponse(HttpExchange exchange, int status) {
+            super(acquireBuffer());
+            this.exchange = exchange;
+            this.status = status;
+        }
+
+        @Override
+        protected void drain() throws IOException {
+            if (body == null) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, 0); // chunked
+                body = exchange.getResponseBody();
+            }
+            body.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        // Sends the rest of the body and ends the exchange
+        void finish() throws IOException {
+            try {
+                if (body == null) {
+                    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                    exchange.sendResponseHeaders(status, pos);
+                    body = exchange.getResponseBody();
+                }
+                body.write(buf, 0, pos);
+                body.close();
+            } finally {
+                releaseBuffer(buf);
+                buf = null;
+                exchange.close();
+            }
+        }
+
+        // Gives the buffer back without sending anything more
+        void discard() {
+            releaseBuffer(buf);
+            buf = null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieServerTest {
+
+    private MovieManager manager;
+    private MovieServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Dummy MovieManager: in-memory only, no file I/O
+        manager = new MovieManager("dummy.csv") {
+            @Override
+            public void saveMovies() { }
+            @Override
+            public void loadMovies() { }
+        };
+        server = new MovieServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path));
+        request.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testServer_CrudScarinessAndErrors() throws Exception {
+        HttpResponse<String> added = send("POST", "/movies", "{\"title\": \"L\u00e5t den r\u00e4tte \\\"komma\\\" in\", \"year\": 2008,"
+                + " \"director\": \"Tomas Alfredson\", \"rating\": 7.8, \"runtimeMinutes\": 115, \"votes\": 220000, \"watched\": true}");
+        assertEquals(201, added.statusCode());
+        assertEquals("/movies/1", added.headers().firstValue("Location").orElse(""));
+        assertEquals("{\"id\":1,\"title\":\"L\u00e5t den r\u00e4tte \\\"komma\\\" in\",\"year\":2008,\"director\":\"Tomas Alfredson\","
+                + "\"rating\":7.8,\"runtimeMinutes\":115,\"votes\":220000,\"watched\":true}", added.body());
+        assertEquals("L\u00e5t den r\u00e4tte \"komma\" in", manager.get(1).getTitle());
+
+        HttpResponse<String> updated = send("PUT", "/movies/1", "{\"title\":\"Let the Right One In\",\"year\":2008,"
+                + "\"director\":\"Tomas Alfredson\",\"rating\":7.9,\"runtimeMinutes\":115,\"votes\":230000,\"watched\":\"no\"}");
+        assertEquals(200, updated.statusCode());
+        assertEquals(7.9, manager.get(1).getRating());
+
+        HttpResponse<String> scariness = send("GET", "/movies/1/scariness", null);
+        assertEquals("{\"id\":1,\"scariness\":" + manager.get(1).getScariness() + "}", scariness.body());
+
+        HttpResponse<String> invalid = send("POST", "/movies", "{\"title\":\"X\",\"year\":2008,\"director\":\"Y\","
+                + "\"rating\":11,\"runtimeMinutes\":90,\"votes\":1,\"watched\":true}");
+        assertEquals(400, invalid.statusCode());
+        assertEquals("{\"error\":\"Rating must be between 0.0 and 10.0\"}", invalid.body());
+        assertEquals(400, send("POST", "/movies", "{\"title\":\"X\"").statusCode());
+        assertEquals(405, send("PATCH", "/movies/1", "{}").statusCode());
+        assertEquals(404, send("GET", "/movies/abc", null).statusCode());
+
+        assertEquals(204, send("DELETE", "/movies/1", null).statusCode());
+        assertEquals(404, send("GET", "/movies/1", null).statusCode());
+        assertEquals(0, manager.size());
+    }
+
+    @Test
+    void testServer_UploadThenStreamListingLargerThanOneBuffer() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 2000; i++) csv.append("Night ").append(i).append(",1990,Director ").append(i % 7).append(",6.5,95,1000,no\n");
+        csv.append("Broken,19x0,Nobody,5,90,1,no\n");
+        HttpResponse<String> report = send("POST", "/upload", csv.toString());
+        assertEquals("{\"inserted\":2000,\"updated\":0,\"duplicates\":0,\"errors\":[\"Line 2001: Year is not a valid integer: '19x0'\"],\"errorCount\":1}",
+                report.body());
+
+        HttpResponse<String> all = send("GET", "/movies", null);
+        assertEquals(200, all.statusCode());
+        assertTrue(all.headers().firstValue("Content-Length").isEmpty()); // chunked
+        assertTrue(all.body().startsWith("[{\"id\":1,\"title\":\"Night 0\","));
+        assertTrue(all.body().endsWith("\"title\":\"Night 1999\",\"year\":1990,\"director\":\"Director 4\","
+                + "\"rating\":6.5,\"runtimeMinutes\":95,\"votes\":1000,\"watched\":false}]"));
+        assertEquals(2000, all.body().split("\\{\"id\"", -1).length - 1);
+
+        HttpResponse<String> page = send("GET", "/movies?offset=1998&limit=5", null);
+        assertTrue(page.headers().firstValue("Content-Length").isPresent());
+        assertEquals(2, page.body().split("\\{\"id\"", -1).length - 1);
+
+        HttpResponse<String> search = send("GET", "/search?q=night%201999&limit=3", null);
+        assertTrue(search.body().startsWith("[{\"id\":2000,"));
+        assertEquals(400, send("GET", "/movies?limit=-1", null).statusCode());
+    }
+
+    @Test
+    void testServer_HandlerFailingMidStreamDropsTheConnection() throws Exception {
+        // A listing whose rows start failing from row failAt on
+        int[] failAt = {1000};
+        MovieManager failing = new MovieManager("dummy.csv") {
+            @Override
+            public void saveMovies() { }
+            @Override
+            public void loadMovies() { }
+            @Override
+            public List<Movie> page(int offset, int limit) {
+                List<Movie> rows = super.page(offset, limit);
+                return new AbstractList<Movie>() {
+                    @Override
+                    public Movie get(int i) {
+                        if (i >= failAt[0]) throw new IllegalStateException("row " + i + " unavailable");
+                        return rows.get(i);
+                    }
+
+                    @Override
+                    public int size() {
+                        return rows.size();
+                    }
+                };
+            }
+        };
+        for (int i = 0; i < 2000; i++) failing.addMovie(new Movie("Night " + i, 1990, "Director", 6.5, 95, 1000, false));
+        MovieServer failingServer = new MovieServer(failing, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        failingServer.start();
+        try {
+            HttpRequest list = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + failingServer.getPort() + "/movies")).build();
+
+            // Headers and part of the body already sent: no truncated 200, the client sees the connection drop
+            assertThrows(IOException.class, () -> client.send(list, HttpResponse.BodyHandlers.ofString()));
+
+            // Failing before anything was sent is still an error response
+            failAt[0] = 0;
+            HttpResponse<String> early = client.send(list, HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, early.statusCode());
+            assertEquals("{\"error\":\"java.lang.IllegalStateException: row 0 unavailable\"}", early.body());
+
+            // And the server keeps serving
+            failAt[0] = Integer.MAX_VALUE;
+            assertEquals(200, client.send(list, HttpResponse.BodyHandlers.ofString()).statusCode());
+        } finally {
+            failingServer.stop(0);
+        }
+    }
+
+    @Test
+    void testParseObject_FlatJson() {
+        assertEquals(Map.of("a", "x\ny\u00e9", "b", "-1.5e3", "c", "null"),
+                MovieServer.parseObject(" {\"a\" : \"x\\ny\\u00e9\", \"b\":-1.5e3,\"c\":null} "));
+        assertEquals(Map.of(), MovieServer.parseObject("{}"));
+        assertThrows(IllegalArgumentException.class, () -> MovieServer.parseObject("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> MovieServer.parseObject("[1]"));
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorting and top-k over a catalog snapshot (MovieManager.sorted and top).
+ *
+ * Small sets are copied and sorted with the order as a comparator. Larger
+ * ones are sorted as an int permutation of row positions: each key becomes
+ * a primitive column (a long per row, complemented for descending keys; titles
+ * stay strings), so comparisons read arrays instead of calling getters
+ * through a comparator chain. The permutation is merge sorted on a
+ * fork-join pool, each leaf filling its own slice of the columns first, and
+ * the movies are picked in the final order at the end.
+ *
+ * top() keeps the best k rows in a bounded heap while scanning, which is
+ * O(n log k) and never copies the catalog.
+ */
+public final class MovieSort {
+
+    private static final int LEAF = 1 << 13; // rows sorted sequentially by one task; smaller sets use Arrays.sort
+
+    private MovieSort() {
+    }
+
+    // Comparator over row positions, without boxing them
+    interface IndexOrder {
+        int compare(int a, int b);
+    }
+
+    /**
+     * The rows in order, as an unmodifiable list. rows must be in id order
+     * (as snapshots are): equal rows keep their position, which is then also
+     * the id order MovieOrder promises.
+     */
+    public static List<Movie> sort(List<Movie> rows, MovieOrder order, ForkJoinPool pool) {
+        return sort(rows, order, pool, LEAF);
+    }
+
+    // leaf: rows per sequential task, and the smallest set sorted by columns (tests use tiny leaves)
+    static List<Movie> sort(List<Movie> rows, MovieOrder order, ForkJoinPool pool, int leaf) {
+        int n = rows.size();
+        Movie[] sorted = new Movie[n];
+        if (n < leaf) {
+            rows.toArray(sorted);
+            Arrays.sort(sorted, order); // stable
+            return Collections.unmodifiableList(Arrays.asList(sorted));
+        }
+
+        Columns columns = new Columns(rows, order);
+        int[] perm = new int[n];
+        pool.invoke(new SortTask(columns, perm, new int[n], leaf, 0, n));
+        for (int i = 0; i < n; i++) sorted[i] = rows.get(perm[i]);
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    /**
+     * The first k rows in order (fewer when there are fewer rows), through a
+     * heap that never holds more than k of them.
+     */
+    public static List<Movie> top(List<Movie> rows, MovieOrder order, int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        int size = Math.min(k, rows.size());
+        if (size == 0) return List.of();
+
+        // The worst of the best k on top, ready to be replaced
+        PriorityQueue<Movie> heap = new PriorityQueue<>(size, order.reversed());
+        for (Movie m : rows) {
+            if (heap.size() < size) heap.add(m);
+            else if (order.compare(m, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(m);
+            }
+        }
+        Movie[] best = heap.toArray(new Movie[0]);
+        Arrays.sort(best, order);
+        return Collections.unmodifiableList(Arrays.asList(best));
+    }
+
+    /**
+     * Stable merge sort of a[from, to), using scratch over the same range;
+     * skips merging halves that are already in order.
+     */
+    static void sort(int[] a, int[] scratch, int from, int to, IndexOrder cmp) {
+        for (int width = 1; width < to - from; width *= 2) {
+            for (int lo = from; lo < to - width; lo += 2 * width) {
+                merge(a, scratch, lo, lo + width, Math.min(lo + 2 * width, to), cmp);
+            }
+        }
+    }
+
+    // Merges the sorted runs a[lo, mid) and a[mid, hi)
+    private static void merge(int[] a, int[] scratch, int lo, int mid, int hi, IndexOrder cmp) {
+        if (cmp.compare(a[mid - 1], a[mid]) <= 0) return; // already in order
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) scratch[k++] = cmp.compare(a[i], a[j]) <= 0 ? a[i++] : a[j++];
+        while (i < mid) scratch[k++] = a[i++];
+        while (j < hi) scratch[k++] = a[j++];
+        System.arraycopy(scratch, lo, a, lo, hi - lo);
+    }
+
+    // The keys of every row, by position; ties go to the lower position
+    private static final class Columns implements IndexOrder {
+        private final List<Movie> rows;
+        private final MovieOrder order;
+        private final long[][] numbers; // null for TITLE keys
+        private final String[][] titles;
+
+        Columns(List<Movie> rows, MovieOrder order) {
+            this.rows = rows;
+            this.order = order;
+            this.numbers = new long[order.size()][];
+            this.titles = new String[order.size()][];
+            for (int k = 0; k < order.size(); k++) {
+                if (order.key(k) == MovieOrder.Key.TITLE) titles[k] = new String[rows.size()];
+                else numbers[k] = new long[rows.size()];
+            }
+        }
+
+        // Fills the columns for positions [from, to)
+        void fill(int from, int to) {
+            for (int i = from; i < to; i++) {
+                Movie m = rows.get(i);
+                for (int k = 0; k < numbers.length; k++) {
+                    if (numbers[k] == null) {
+                        titles[k][i] = m.getTitle();
+                    } else {
+                        long key = order.key(k).sortKey(m);
+                        numbers[k][i] = order.isDescending(k) ? ~key : key; // ~ reverses without overflow
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            for (int k = 0; k < numbers.length; k++) {
+                long[] column = numbers[k];
+                int c;
+                if (column != null) {
+                    c = Long.compare(column[a], column[b]);
+                } else {
+                    c = String.CASE_INSENSITIVE_ORDER.compare(titles[k][a], titles[k][b]);
+                    if (order.isDescending(k)) c = -c;
+                }
+                if (c != 0) return c;
+            }
+            return Integer.compare(a, b);
+        }
+    }
+
+    // Sorts perm[from, to) by halves in parallel and merges them
+    @SuppressWarnings("serial") // fork-join tasks are never serialized
+    private static final class SortTask extends RecursiveAction {
+        private final Columns columns;
+        private final int[] perm;
+        private final int[] scratch;
+        private final int leaf;
+        private final int from;
+        private final int to;
+
+        SortTask(Columns columns, int[] perm, int[] scratch, int leaf, int from, int to) {
+            this.columns = columns;
+            this.perm = perm;
+            this.scratch = scratch;
+            this.leaf = leaf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leaf) {
+                columns.fill(from, to);
+                for (int i = from; i < to; i++) perm[i] = i;
+                sort(perm, scratch, from, to, columns);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(columns, perm, scratch, leaf, from, mid),
+                    new SortTask(columns, perm, scratch, leaf, mid, to));
+            merge(perm, scratch, from, mid, to, columns);
+        }
+    }
+}
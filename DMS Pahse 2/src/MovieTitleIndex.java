@@ -0,0 +1,643 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Title search index used by MovieManager.searchTitles.
+ *
+ * Titles are matched case-insensitively (lowercased with Locale.ROOT). A
+ * search returns, in this order, movies whose title starts with the query,
+ * then titles containing it, then titles containing it with up to one typo
+ * (queries of 6+ characters) or two (9+ characters).
+ *
+ * Like a Lucene segment the bulk of the index is immutable and compact:
+ *
+ * - the lowercased titles in sorted order, UTF-8 back to back in one byte[],
+ *   with the movie ids alongside; a prefix query is a binary search followed
+ *   by a scan of the matching run
+ * - an inverted index from every trigram (three consecutive chars) to the
+ *   sorted positions of the titles containing it, varint-delta encoded
+ *
+ * Changes made after the build go to a small mutable delta (a TreeMap and
+ * trigram sets) and removed rows are masked with a BitSet. MovieManager
+ * drops the index once the delta outgrows a fraction of the segment and the
+ * next search builds a fresh one, so the delta always stays small.
+ *
+ * Substring and typo-tolerant matches come from the trigram lists: an edit
+ * breaks at most one of a set of query trigrams that do not overlap, so any
+ * title within d edits of a substring contains at least one of d + 1 such
+ * trigrams. Only those d + 1 lists are read (the combination with the
+ * fewest entries), and the candidates are confirmed with an edit distance
+ * against the title.
+ *
+ * Not thread-safe for writes; MovieManager changes it under its write lock
+ * and searches under the read lock (searches do not modify it).
+ */
+public class MovieTitleIndex {
+
+    private static final long NO_GRAM = -1;
+    // Longest list (relative to the candidates) worth walking for the count filter
+    private static final int COUNT_FILTER_RATIO = 2;
+    // Candidates checked before the count filter is worth its setup
+    private static final int UNFILTERED_CANDIDATES = 1000;
+
+    // ---- immutable segment ----
+    private final int size;
+    private final long[] ids;        // by (title, id)
+    private final int[] starts;      // size + 1 offsets into titles
+    private final byte[] titles;     // lowercased UTF-8, in sorted order
+    private final long[] gramKeys;   // open addressing: trigram -> posting number
+    private final int[] gramPostings;
+    private final byte[][] postings; // varint deltas of positions
+    private final int[] postingSizes;
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+
+    // ---- changes since the build ----
+    private final TreeMap<String, List<Long>> added = new TreeMap<>();
+    private final Map<Long, Set<String>> addedGrams = new HashMap<>();
+    private int addedCount;
+
+    private MovieTitleIndex(int size, long[] ids, int[] starts, byte[] titles,
+                            long[] gramKeys, int[] gramPostings, byte[][] postings, int[] postingSizes) {
+        this.size = size;
+        this.ids = ids;
+        this.starts = starts;
+        this.titles = titles;
+        this.gramKeys = gramKeys;
+        this.gramPostings = gramPostings;
+        this.postings = postings;
+        this.postingSizes = postingSizes;
+    }
+
+    // Indexed titles: the segment without removed rows, plus the delta
+    public int size() {
+        return size - removedCount + addedCount;
+    }
+
+    // Rows added or removed since the build
+    public int changes() {
+        return addedCount + removedCount;
+    }
+
+    public int segmentSize() {
+        return size;
+    }
+
+    public static String normalize(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    // ---------------- Build ----------------
+
+    public static MovieTitleIndex build(List<Movie> movies) {
+        int n = movies.size();
+        byte[][] utf8 = new byte[n][];
+        String[] lower = new String[n];
+        long[] rowIds = new long[n];
+        int i = 0;
+        for (Movie m : movies) {
+            lower[i] = normalize(m.getTitle());
+            utf8[i] = lower[i].getBytes(StandardCharsets.UTF_8);
+            rowIds[i] = m.getId();
+            i++;
+        }
+
+        Integer[] order = new Integer[n];
+        for (int r = 0; r < n; r++) order[r] = r;
+        Arrays.sort(order, (a, b) -> {
+            int c = Arrays.compareUnsigned(utf8[a], utf8[b]);
+            return c != 0 ? c : Long.compare(rowIds[a], rowIds[b]);
+        });
+
+        long[] ids = new long[n];
+        int[] starts = new int[n + 1];
+        long bytes = 0;
+        for (byte[] t : utf8) bytes += t.length;
+        if (bytes > Integer.MAX_VALUE) throw new IllegalStateException("Titles too large to index: " + bytes + " bytes");
+        byte[] titles = new byte[(int) bytes];
+
+        PostingsBuilder grams = new PostingsBuilder();
+        int end = 0;
+        for (int p = 0; p < n; p++) {
+            int r = order[p];
+            ids[p] = rowIds[r];
+            starts[p] = end;
+            System.arraycopy(utf8[r], 0, titles, end, utf8[r].length);
+            end += utf8[r].length;
+            String t = lower[r];
+            for (int c = 0; c + 3 <= t.length(); c++) grams.add(gram(t, c), p);
+            utf8[r] = null;
+        }
+        starts[n] = end;
+        return grams.finish(n, ids, starts, titles);
+    }
+
+    // Trigram posting lists while the segment is built (positions arrive in order)
+    private static class PostingsBuilder {
+        long[] keys = new long[1 << 12];
+        int[] slots = new int[1 << 12];
+        byte[][] lists = new byte[1 << 10][];
+        int[] lengths = new int[1 << 10];
+        int[] last = new int[1 << 10];
+        int[] counts = new int[1 << 10];
+        int grams;
+
+        PostingsBuilder() {
+            Arrays.fill(keys, NO_GRAM);
+        }
+
+        void add(long key, int pos) {
+            int g = slotOf(key);
+            if (counts[g] > 0 && last[g] == pos) return; // trigram repeats in one title
+            int delta = counts[g] == 0 ? pos : pos - last[g];
+            if (lengths[g] + 5 > lists[g].length) lists[g] = Arrays.copyOf(lists[g], lists[g].length * 2);
+            lengths[g] = writeVarint(lists[g], lengths[g], delta);
+            last[g] = pos;
+            counts[g]++;
+        }
+
+        int slotOf(long key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != NO_GRAM) {
+                if (keys[i] == key) return slots[i];
+                i = (i + 1) & mask;
+            }
+            if (grams == lists.length) {
+                lists = Arrays.copyOf(lists, grams * 2);
+                lengths = Arrays.copyOf(lengths, grams * 2);
+                last = Arrays.copyOf(last, grams * 2);
+                counts = Arrays.copyOf(counts, grams * 2);
+            }
+            keys[i] = key;
+            slots[i] = grams;
+            lists[grams] = new byte[8];
+            if (++grams * 2 > keys.length) rehash();
+            return grams - 1;
+        }
+
+        void rehash() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldKeys.length * 2];
+            Arrays.fill(keys, NO_GRAM);
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == NO_GRAM) continue;
+                int i = mix(oldKeys[j]) & mask;
+                while (keys[i] != NO_GRAM) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+
+        MovieTitleIndex finish(int n, long[] ids, int[] starts, byte[] titles) {
+            byte[][] postings = new byte[grams][];
+            for (int g = 0; g < grams; g++) postings[g] = Arrays.copyOf(lists[g], lengths[g]);
+            return new MovieTitleIndex(n, ids, starts, titles, keys, slots, postings, Arrays.copyOf(counts, grams));
+        }
+    }
+
+    // ---------------- Changes ----------------
+
+    public void add(Movie m) {
+        String t = normalize(m.getTitle());
+        List<Long> list = added.computeIfAbsent(t, k -> new ArrayList<>(1));
+        if (list.isEmpty()) {
+            for (int c = 0; c + 3 <= t.length(); c++) addedGrams.computeIfAbsent(gram(t, c), k -> new HashSet<>()).add(t);
+        }
+        list.add(m.getId());
+        addedCount++;
+    }
+
+    // m must carry the title it was indexed under
+    public void remove(Movie m) {
+        String t = normalize(m.getTitle());
+        List<Long> list = added.get(t);
+        if (list != null && list.remove(m.getId())) {
+            addedCount--;
+            if (list.isEmpty()) {
+                added.remove(t);
+                for (int c = 0; c + 3 <= t.length(); c++) {
+                    Set<String> set = addedGrams.get(gram(t, c));
+                    if (set != null && set.remove(t) && set.isEmpty()) addedGrams.remove(gram(t, c));
+                }
+            }
+            return;
+        }
+        byte[] key = t.getBytes(StandardCharsets.UTF_8);
+        for (int p = lowerBound(key); p < size && compareAt(p, key) == 0; p++) {
+            if (ids[p] == m.getId() && !removed.get(p)) {
+                removed.set(p);
+                removedCount++;
+                return;
+            }
+        }
+    }
+
+    // ---------------- Search ----------------
+
+    /**
+     * Ids of up to limit movies matching the query: prefix matches (in title
+     * order), then substring matches, then typo matches by edit distance.
+     */
+    public long[] search(String query, int limit) {
+        String q = normalize(query.trim());
+        LinkedHashSet<Long> found = new LinkedHashSet<>();
+        if (q.isEmpty() || limit <= 0) return new long[0];
+
+        for (Match m : prefixMatches(q, limit)) found.add(m.id);
+        if (found.size() < limit && q.length() >= 3) {
+            for (Match m : gramMatches(q, (int) Math.min(Integer.MAX_VALUE, (long) limit + found.size()))) {
+                found.add(m.id);
+                if (found.size() == limit) break;
+            }
+        }
+
+        long[] result = new long[found.size()];
+        int i = 0;
+        for (long id : found) result[i++] = id;
+        return result;
+    }
+
+    private static class Match {
+        final int distance;
+        final String title;
+        final long id;
+
+        Match(int distance, String title, long id) {
+            this.distance = distance;
+            this.title = title;
+            this.id = id;
+        }
+    }
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt((Match m) -> m.distance)
+            .thenComparing(m -> m.title).thenComparingLong(m -> m.id);
+
+    private List<Match> prefixMatches(String q, int limit) {
+        List<Match> matches = new ArrayList<>();
+        byte[] key = q.getBytes(StandardCharsets.UTF_8);
+        for (int p = lowerBound(key); p < size && matches.size() < limit && startsWith(p, key); p++) {
+            if (!removed.get(p)) matches.add(new Match(0, titleAt(p), ids[p]));
+        }
+        int fromSegment = matches.size();
+        for (Map.Entry<String, List<Long>> e : added.tailMap(q, true).entrySet()) {
+            if (!e.getKey().startsWith(q) || matches.size() >= fromSegment + limit) break;
+            for (long id : e.getValue()) matches.add(new Match(0, e.getKey(), id));
+        }
+        matches.sort(RANKING);
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    /**
+     * Substring (distance 0) and typo matches through the trigram lists,
+     * ranked by distance, then title.
+     *
+     * Candidates are read in title order, so each pass stops as soon as it
+     * has enough matches: any later match of the same distance ranks lower.
+     * Substring matches come first, from the query's rarest list alone. Typo
+     * matches come from d + 1 lists for up to d typos; before a candidate's
+     * title is read, the q-gram count filter drops it if it holds fewer than
+     * (trigrams in the query) - 3d of the query's trigrams. The counts come
+     * from one sequential pass over each of the query's lists into a byte per
+     * title, made only once a pass has gone through a first batch of
+     * candidates without finding enough matches. Lists much longer than the
+     * candidates cost more to read than they save, so they are left out and
+     * the threshold lowered by one for each.
+     */
+    private List<Match> gramMatches(String q, int limit) {
+        int maxDistance = q.length() >= 9 ? 2 : q.length() >= 6 ? 1 : 0;
+        long[] grams = new long[q.length() - 2];
+        for (int c = 0; c < grams.length; c++) grams[c] = gram(q, c);
+        LongToIntFunction deltaCount = gram -> addedGrams.getOrDefault(gram, Set.of()).size();
+        byte[] key = q.getBytes(StandardCharsets.UTF_8);
+
+        // Substrings
+        List<Match> exact = new ArrayList<>();
+        Cursor[] union = cursors(rarestDisjoint(grams, 1, this::segmentCount));
+        for (int p; exact.size() < limit && (p = next(union)) >= 0; ) {
+            if (!removed.get(p) && containsAt(p, key)) exact.add(new Match(0, titleAt(p), ids[p]));
+        }
+        for (long gram : rarestDisjoint(grams, 1, deltaCount)) {
+            for (String t : addedGrams.getOrDefault(gram, Set.of())) {
+                if (t.contains(q)) {
+                    for (long id : added.get(t)) exact.add(new Match(0, t, id));
+                }
+            }
+        }
+        List<Match> matches = best(exact, limit);
+        if (matches.size() == limit || maxDistance == 0) return matches;
+
+        // Typos: byDistance[d] collects the first matches at distance d
+        int wanted = limit - matches.size();
+        List<List<Match>> byDistance = new ArrayList<>();
+        for (int d = 0; d <= maxDistance; d++) byDistance.add(new ArrayList<>());
+        long[] chosen = rarestDisjoint(grams, maxDistance + 1, this::segmentCount);
+        long candidates = 0;
+        for (long gram : chosen) candidates += segmentCount(gram);
+        long[] counted = new long[grams.length];
+        int n = 0;
+        for (long gram : grams) {
+            if (segmentCount(gram) <= COUNT_FILTER_RATIO * candidates && n < Byte.MAX_VALUE) counted[n++] = gram;
+        }
+        int threshold = n - 3 * maxDistance;
+        byte[] shared = null;
+        int unfiltered = 0;
+        long[] masks = patternMasks(key);
+        union = cursors(chosen);
+        for (int p; byDistance.get(1).size() < wanted && (p = next(union)) >= 0; ) {
+            if (removed.get(p)) continue;
+            if (shared == null && threshold > 1 && ++unfiltered > UNFILTERED_CANDIDATES) {
+                shared = countGrams(Arrays.copyOf(counted, n));
+            }
+            if (shared != null && shared[p] < threshold) continue;
+            int d = distanceAt(p, q, masks, maxDistance);
+            if (d > 0 && d <= maxDistance && byDistance.get(d).size() < wanted) {
+                byDistance.get(d).add(new Match(d, titleAt(p), ids[p]));
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        for (long gram : rarestDisjoint(grams, maxDistance + 1, deltaCount)) {
+            for (String t : addedGrams.getOrDefault(gram, Set.of())) {
+                if (!seen.add(t)) continue;
+                int d = substringDistance(q, t, maxDistance);
+                if (d == 0 || d > maxDistance) continue;
+                for (long id : added.get(t)) byDistance.get(d).add(new Match(d, t, id));
+            }
+        }
+        for (int d = 1; d <= maxDistance && matches.size() < limit; d++) {
+            matches.addAll(best(byDistance.get(d), limit - matches.size()));
+        }
+        return matches;
+    }
+
+    // The first limit matches in ranking order
+    private static List<Match> best(List<Match> matches, int limit) {
+        matches.sort(RANKING);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * One posting list, decoded as it is read. head is the current
+     * position, or -1 once the list is exhausted.
+     */
+    private static class Cursor {
+        private final byte[] list;
+        private int offset;
+        int head;
+
+        Cursor(byte[] list) {
+            this.list = list;
+            advance(); // the first entry is relative to 0
+        }
+
+        void advance() {
+            if (offset == list.length) {
+                head = -1;
+                return;
+            }
+            byte b = list[offset++];
+            if (b >= 0) { // most gaps fit in one byte
+                head += b;
+                return;
+            }
+            int value = b & 0x7f, shift = 7;
+            do {
+                b = list[offset++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            head += value;
+        }
+    }
+
+    // One cursor per trigram, in the given order (repeats included)
+    private Cursor[] cursors(long[] grams) {
+        Cursor[] cursors = new Cursor[grams.length];
+        for (int k = 0; k < grams.length; k++) {
+            int g = postingOf(grams[k]);
+            cursors[k] = new Cursor(g < 0 ? new byte[0] : postings[g]);
+        }
+        return cursors;
+    }
+
+    // Next position in the union of the lists, in ascending order, or -1
+    private static int next(Cursor[] union) {
+        int min = -1;
+        for (Cursor c : union) {
+            if (c.head >= 0 && (min < 0 || c.head < min)) min = c.head;
+        }
+        if (min >= 0) {
+            for (Cursor c : union) {
+                if (c.head == min) c.advance();
+            }
+        }
+        return min;
+    }
+
+    // For each title, how many of the trigrams (by position in the query) it contains
+    private byte[] countGrams(long[] grams) {
+        byte[] counts = new byte[size];
+        for (long gram : grams) {
+            int g = postingOf(gram);
+            if (g < 0) continue;
+            for (Cursor c = new Cursor(postings[g]); c.head >= 0; c.advance()) counts[c.head]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Smallest edit distance between q and any substring of t (Sellers'
+     * algorithm), or max + 1 once it is certain to exceed max.
+     */
+    static int substringDistance(String q, String t, int max) {
+        if (t.contains(q)) return 0;
+        if (max == 0) return 1;
+        int m = q.length();
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int i = 0; i <= m; i++) prev[i] = i;
+        int best = m;
+        for (int j = 0; j < t.length(); j++) {
+            char c = t.charAt(j);
+            cur[0] = 0; // a match may start anywhere in t
+            for (int i = 1; i <= m; i++) {
+                int subst = prev[i - 1] + (q.charAt(i - 1) == c ? 0 : 1);
+                cur[i] = Math.min(subst, Math.min(prev[i], cur[i - 1]) + 1);
+            }
+            best = Math.min(best, cur[m]);
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return Math.min(best, max + 1);
+    }
+
+    /**
+     * Bit masks of the query for Myers' bit-parallel edit distance: bit i of
+     * masks[b] is set where query byte i is b. Null when the query is not
+     * ASCII or longer than 64 bytes, which leaves the plain dynamic program.
+     */
+    private static long[] patternMasks(byte[] key) {
+        if (key.length > 64) return null;
+        long[] masks = new long[128];
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] < 0) return null;
+            masks[key[i]] |= 1L << i;
+        }
+        return masks;
+    }
+
+    /**
+     * Smallest edit distance between the query and a substring of the title
+     * at p, capped at max + 1. Myers' algorithm (one 64-bit step per title
+     * byte) runs on the ASCII titles, others go through substringDistance.
+     */
+    private int distanceAt(int p, String q, long[] masks, int max) {
+        if (masks == null) return substringDistance(q, titleAt(p), max);
+        int m = q.length();
+        long last = 1L << (m - 1);
+        long pv = -1, mv = 0;
+        int score = m, best = m;
+        for (int i = starts[p], end = starts[p + 1]; i < end; i++) {
+            byte b = titles[i];
+            if (b < 0) return substringDistance(q, titleAt(p), max);
+            long eq = masks[b];
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) score++;
+            else if ((mh & last) != 0) score--;
+            ph <<= 1; // a match may start anywhere in the title: nothing shifts into row 0
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            best = Math.min(best, score);
+        }
+        return Math.min(best, max + 1);
+    }
+
+    // Whether the title at p contains key (UTF-8, so a byte match is a char match)
+    private boolean containsAt(int p, byte[] key) {
+        int last = starts[p + 1] - key.length;
+        outer:
+        for (int i = starts[p]; i <= last; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (titles[i + j] != key[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // ---------------- Segment access ----------------
+
+    private String titleAt(int p) {
+        return new String(titles, starts[p], starts[p + 1] - starts[p], StandardCharsets.UTF_8);
+    }
+
+    // First position whose title is >= key (unsigned byte order)
+    private int lowerBound(byte[] key) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(mid, key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int compareAt(int p, byte[] key) {
+        return Arrays.compareUnsigned(titles, starts[p], starts[p + 1], key, 0, key.length);
+    }
+
+    private boolean startsWith(int p, byte[] key) {
+        int from = starts[p];
+        return starts[p + 1] - from >= key.length
+                && Arrays.equals(titles, from, from + key.length, key, 0, key.length);
+    }
+
+    private int postingOf(long gram) {
+        int mask = gramKeys.length - 1;
+        for (int i = mix(gram) & mask; gramKeys[i] != NO_GRAM; i = (i + 1) & mask) {
+            if (gramKeys[i] == gram) return gramPostings[i];
+        }
+        return -1;
+    }
+
+    private int segmentCount(long gram) {
+        int g = postingOf(gram);
+        return g < 0 ? 0 : postingSizes[g];
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static long gram(String t, int c) {
+        return ((long) t.charAt(c) << 32) | ((long) t.charAt(c + 1) << 16) | t.charAt(c + 2);
+    }
+
+    /**
+     * n of the query's trigrams (given in query order) at positions at least
+     * three apart, so that no two overlap, with the fewest list entries in
+     * total. A small dynamic program over the positions.
+     */
+    private static long[] rarestDisjoint(long[] grams, int n, LongToIntFunction count) {
+        int len = grams.length;
+        long[] cost = new long[len];
+        for (int i = 0; i < len; i++) cost[i] = count.applyAsInt(grams[i]);
+        // best[i][j]: least total for j trigrams starting at position i or later
+        long[][] best = new long[len + 3][n + 1];
+        for (int i = len + 2; i >= 0; i--) {
+            for (int j = 1; j <= n; j++) {
+                if (i >= len) {
+                    best[i][j] = Long.MAX_VALUE;
+                    continue;
+                }
+                long take = best[i + 3][j - 1] == Long.MAX_VALUE ? Long.MAX_VALUE : cost[i] + best[i + 3][j - 1];
+                best[i][j] = Math.min(best[i + 1][j], take);
+            }
+        }
+        long[] chosen = new long[n];
+        for (int i = 0, j = n; j > 0; ) {
+            if (best[i][j] == best[i + 1][j]) {
+                i++;
+            } else {
+                chosen[n - j] = grams[i];
+                i += 3;
+                j--;
+            }
+        }
+        return chosen;
+    }
+
+    private static int writeVarint(byte[] buf, int at, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf[at++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[at++] = (byte) value;
+        return at;
+    }
+
+    private static int mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        return (int) k;
+    }
+}
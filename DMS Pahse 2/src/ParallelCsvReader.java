@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a movie CSV file in parallel for MovieManager.uploadCSV.
+ *
+ * The file is cut into byte ranges that always end right after a line
+ * break, so every chunk holds whole lines and can be decoded on its own.
+ * Line breaks are those of BufferedReader.readLine ('\n', '\r' or "\r\n"),
+ * so a file gives the same lines and line numbers as the sequential upload. Chunks are
+ * parsed on a fork-join pool and merged back in file order. Each chunk
+ * counts its lines, which is enough to turn chunk-local line numbers into
+ * the global ones reported in errors.
+ *
+ * Each chunk reports its rejected lines to its own UploadErrors.part(), which
+ * keeps the same bounded counts and sample as the upload's and spills the
+ * lines themselves to disk (only when there is a quarantine file). The
+ * parts are merged into the upload's UploadErrors in file order, so a feed
+ * with millions of bad lines costs no more memory than one with a few.
+ */
+public class ParallelCsvReader {
+
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+
+    // Movies of a whole file, in file order
+    public static class Result {
+        public final List<Movie> movies = new ArrayList<>();
+        public long errors;
+    }
+
+    // Output of one chunk before line numbers are made global
+    private static class Chunk {
+        final List<Movie> movies = new ArrayList<>();
+        final UploadErrors errors; // line numbers relative to the chunk
+        int lines;
+
+        Chunk(UploadErrors errors) {
+            this.errors = errors;
+        }
+    }
+
+    // Lines and bytes of the chunks parsed so far, for the progress callback
+    private static class Progress {
+        private final MovieManager.UploadProgress callback;
+        private final long start = System.nanoTime();
+        private long lines, bytes;
+
+        Progress(MovieManager.UploadProgress callback) {
+            this.callback = callback;
+        }
+
+        synchronized void chunkDone(int chunkLines, long chunkBytes) {
+            lines += chunkLines;
+            bytes += chunkBytes;
+            callback.update(lines, bytes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reads and parses the whole file; rejected lines go to errors. progress
+     * (may be null) is called after each chunk, from pool threads but one
+     * call at a time.
+     * chunkBytes <= 0 picks a size from the file length and the pool parallelism.
+     */
+    public static Result read(Path path, ForkJoinPool pool, int chunkBytes, UploadErrors errors,
+                              MovieManager.UploadProgress progress) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long target = chunkBytes > 0 ? chunkBytes
+                    : Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, size / (pool.getParallelism() * 4L) + 1));
+            long[] bounds = lineAlignedBounds(ch, size, target);
+            UploadErrors[] parts = new UploadErrors[bounds.length - 1];
+            for (int i = 0; i < parts.length; i++) parts[i] = errors.part(i);
+
+            try {
+                List<Chunk> chunks;
+                try {
+                    chunks = pool.invoke(new ParseTask(ch, bounds, parts, 0, bounds.length - 1,
+                            progress == null ? null : new Progress(progress)));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                Result result = new Result();
+                int firstLine = 1;
+                for (Chunk c : chunks) {
+                    result.movies.addAll(c.movies);
+                    result.errors += c.errors.count();
+                    errors.merge(c.errors, firstLine);
+                    firstLine += c.lines;
+                }
+                return result;
+            } finally {
+                for (UploadErrors part : parts) part.discard(); // spill files of chunks not merged
+            }
+        }
+    }
+
+    /**
+     * Returns chunk boundaries [0, b1, b2, ..., size] where every inner
+     * boundary sits just after a line break (never between '\r' and '\n').
+     */
+    private static long[] lineAlignedBounds(FileChannel ch, long size, long target) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long pos = target;
+        while (pos < size) {
+            long lineEnd = -1; // just past the first line break at or after pos
+            long scan = pos;
+            while (lineEnd < 0 && scan < size) {
+                buf.clear();
+                int n = ch.read(buf, scan);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = buf.get(i);
+                    if (b == '\n' || b == '\r') {
+                        lineEnd = scan + i + 1;
+                        if (b == '\r' && (i + 1 < n ? buf.get(i + 1) == '\n' : newlineAt(ch, lineEnd))) lineEnd++;
+                        break;
+                    }
+                }
+                scan += n;
+            }
+            if (lineEnd < 0 || lineEnd >= size) break;
+            bounds.add(lineEnd);
+            pos = lineEnd + target;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    // Whether the byte at pos is '\n' (false past the end)
+    private static boolean newlineAt(FileChannel ch, long pos) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        return ch.read(one, pos) == 1 && one.get(0) == '\n';
+    }
+
+    /**
+     * Parses the chunks [from, to) by splitting the range in half until a
+     * single chunk is left.
+     */
+    @SuppressWarnings("serial") // fork-join tasks are never serialized
+    private static class ParseTask extends RecursiveTask<List<Chunk>> {
+        private final FileChannel ch;
+        private final long[] bounds;
+        private final UploadErrors[] parts;
+        private final int from, to;
+        private final Progress progress;
+
+        ParseTask(FileChannel ch, long[] bounds, UploadErrors[] parts, int from, int to, Progress progress) {
+            this.ch = ch;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (to - from == 1) {
+                List<Chunk> one = new ArrayList<>(1);
+                Chunk chunk = parseChunk(ch, bounds[from], bounds[to], from == 0, parts[from]);
+                if (progress != null) progress.chunkDone(chunk.lines, bounds[to] - bounds[from]);
+                one.add(chunk);
+                return one;
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(ch, bounds, parts, from, mid, progress);
+            ParseTask right = new ParseTask(ch, bounds, parts, mid, to, progress);
+            left.fork();
+            List<Chunk> rightChunks = right.compute();
+            List<Chunk> result = new ArrayList<>(left.join());
+            result.addAll(rightChunks);
+            return result;
+        }
+    }
+
+    private static Chunk parseChunk(FileChannel ch, long start, long end, boolean firstChunk, UploadErrors errors) {
+        Chunk chunk = new Chunk(errors);
+        byte[] data = new byte[(int) (end - start)];
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        try {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, start + buf.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int lineStart = 0;
+        while (lineStart < data.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < data.length && data[lineEnd] != '\n' && data[lineEnd] != '\r') lineEnd++;
+            chunk.lines++;
+
+            String line = new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim();
+            boolean crlf = lineEnd + 1 < data.length && data[lineEnd] == '\r' && data[lineEnd + 1] == '\n';
+            lineStart = lineEnd + (crlf ? 2 : 1);
+            if (line.isEmpty()) continue;
+            if (firstChunk && chunk.lines == 1 && line.toLowerCase().contains("title")) continue;
+
+            try {
+                chunk.movies.add(Movie.fromCSV(line));
+            } catch (IllegalArgumentException ex) {
+                errors.reject(chunk.lines, line, ex.getMessage());
+            }
+        }
+        return chunk;
+    }
+}
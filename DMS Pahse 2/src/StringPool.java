@@ -0,0 +1,96 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Intern pool for low-cardinality strings (directors), so that millions of
+ * movies share one String per distinct value instead of owning a copy each.
+ *
+ * Unlike String.intern() the pool belongs to its owner and is dropped with
+ * it. Values can also be looked up straight from UTF-8 bytes: an ASCII value
+ * that is already pooled costs a hash and a compare, no allocation, which is
+ * what the memory-mapped loader needs. The hash is String.hashCode(), so both
+ * lookups land on the same entry.
+ *
+ * Not thread-safe; MovieManager only uses it under its write lock.
+ */
+public class StringPool {
+
+    private String[] values = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+
+    public int size() { return size; }
+
+    public String intern(String s) {
+        int h = s.hashCode();
+        int mask = values.length - 1;
+        int i = spread(h) & mask;
+        for (String v; (v = values[i]) != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && v.equals(s)) return v;
+        }
+        insert(i, h, s);
+        return s;
+    }
+
+    /**
+     * Pooled value of the UTF-8 bytes b[from, to).
+     */
+    public String intern(byte[] b, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            if (b[i] < 0) return intern(new String(b, from, to - from, StandardCharsets.UTF_8)); // non-ASCII
+            h = 31 * h + b[i];
+        }
+        int mask = values.length - 1;
+        int i = spread(h) & mask;
+        for (String v; (v = values[i]) != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && sameAscii(v, b, from, to)) return v;
+        }
+        String s = new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+        insert(i, h, s);
+        return s;
+    }
+
+    public void clear() {
+        values = new String[64];
+        hashes = new int[64];
+        size = 0;
+    }
+
+    // ---------------- Helpers ----------------
+
+    private void insert(int slot, int h, String s) {
+        values[slot] = s;
+        hashes[slot] = h;
+        if (++size * 2 > values.length) grow();
+    }
+
+    // Keeps the table at most half full
+    private void grow() {
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        values = new String[oldValues.length * 2];
+        hashes = new int[oldValues.length * 2];
+        int mask = values.length - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = spread(oldHashes[j]) & mask;
+            while (values[i] != null) i = (i + 1) & mask;
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    private static boolean sameAscii(String v, byte[] b, int from, int to) {
+        if (v.length() != to - from) return false;
+        for (int i = 0; i < v.length(); i++) {
+            if (v.charAt(i) != b[from + i]) return false;
+        }
+        return true;
+    }
+
+    // Similar strings ("Director 12", "Director 13") have close hashes; scatter them
+    private static int spread(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where MovieManager.uploadCSV reports rejected lines.
+ *
+ * Keeps a count per error category (the message up to its first ':', so
+ * "Year is not a valid integer: '19x9'" counts as "Year is not a valid
+ * integer"), the first sampleSize messages and the total. Memory stays the
+ * same however many lines a feed gets wrong.
+ *
+ * With a quarantine path, every rejected line is also written there as it
+ * was read (less surrounding blanks), under a CSV header, so the file can be fixed and uploaded
+ * again. The file is only created once a line is rejected.
+ *
+ * A parallel upload gives each chunk of the file its own part() with the
+ * same bounds (its rejected lines go to a spill file next to the quarantine
+ * file) and merges the parts in file order, so it stays bounded too.
+ *
+ * Subclasses can override reject() to see every error of a sequential
+ * upload as well (call super to keep the counts). Meant for one upload; not
+ * thread-safe, since each instance is filled from one thread.
+ */
+public class UploadErrors implements Closeable {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+
+    private final int sampleSize;
+    private final Path quarantine;
+    private final boolean header; // false for parts, whose spill file is appended to the quarantine file
+    private final List<Integer> sampleLines = new ArrayList<>(); // 0 for errors not about one line
+    private final List<String> sampleMessages = new ArrayList<>();
+    private final Map<String, Long> byCategory = new TreeMap<>();
+    private long count;
+    private long quarantined;
+    private BufferedWriter writer;
+    private IOException quarantineError;
+
+    public UploadErrors() {
+        this(DEFAULT_SAMPLE_SIZE, null);
+    }
+
+    // quarantine: file for the rejected lines, or null to keep none
+    public UploadErrors(int sampleSize, Path quarantine) {
+        this(sampleSize, quarantine, true);
+    }
+
+    private UploadErrors(int sampleSize, Path quarantine, boolean header) {
+        if (sampleSize < 0) throw new IllegalArgumentException("sampleSize must not be negative");
+        this.sampleSize = sampleSize;
+        this.quarantine = quarantine;
+        this.header = header;
+    }
+
+    /**
+     * Collects the errors of one part of the file (number: its position, to
+     * name the spill file) for merge(); its line numbers count from the
+     * start of the part.
+     */
+    UploadErrors part(int number) {
+        Path spill = quarantine == null ? null : quarantine.resolveSibling(quarantine.getFileName() + ".part" + number);
+        return new UploadErrors(sampleSize, spill, false);
+    }
+
+    /**
+     * One rejected line: its number in the file, its text (null for errors
+     * that are not about one line, such as a missing file) and the reason.
+     */
+    public void reject(int lineNum, String line, String message) {
+        count++;
+        addSample(lineNum, message);
+        byCategory.merge(category(message), 1L, Long::sum);
+        if (line != null && quarantine != null && quarantineError == null) {
+            try {
+                openWriter();
+                writer.write(line);
+                writer.newLine();
+                quarantined++;
+            } catch (IOException e) {
+                quarantineFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Adds what a part() collected, whose first line is line firstLine of
+     * the file, after the errors so far, and deletes its spill file.
+     */
+    void merge(UploadErrors part, int firstLine) {
+        count += part.count;
+        part.byCategory.forEach((category, n) -> byCategory.merge(category, n, Long::sum));
+        for (int i = 0; i < part.sampleLines.size(); i++) {
+            int lineNum = part.sampleLines.get(i);
+            addSample(lineNum > 0 ? firstLine + lineNum - 1 : 0, part.sampleMessages.get(i));
+        }
+        if (part.quarantineError != null && quarantineError == null) quarantineFailed(part.quarantineError);
+        if (part.quarantined == 0) return;
+        try {
+            part.close();
+            if (quarantineError == null) {
+                openWriter();
+                try (BufferedReader in = Files.newBufferedReader(part.quarantine, StandardCharsets.UTF_8)) {
+                    for (String line; (line = in.readLine()) != null; ) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                quarantined += part.quarantined;
+            }
+        } catch (IOException e) {
+            quarantineFailed(e);
+        } finally {
+            part.discard();
+        }
+    }
+
+    // Closes a part and deletes its spill file, whether or not it was merged
+    void discard() {
+        try {
+            close();
+            if (quarantine != null) Files.deleteIfExists(quarantine);
+        } catch (IOException ignored) {
+            // a leftover spill file is all that is lost
+        }
+    }
+
+    private void addSample(int lineNum, String message) {
+        if (sampleLines.size() >= sampleSize) return;
+        sampleLines.add(lineNum);
+        sampleMessages.add(message);
+    }
+
+    private void openWriter() throws IOException {
+        if (writer != null) return;
+        writer = Files.newBufferedWriter(quarantine, StandardCharsets.UTF_8);
+        if (header) {
+            writer.write(MovieManager.EXPORT_HEADER);
+            writer.newLine();
+        }
+    }
+
+    private void quarantineFailed(IOException e) {
+        quarantineError = e; // the upload goes on; the sample tells
+        addSample(0, "Quarantine file not written: " + e.getMessage());
+    }
+
+    // The message up to its first ':', which leaves out the offending value
+    static String category(String message) {
+        int colon = message.indexOf(':');
+        return colon < 0 ? message : message.substring(0, colon);
+    }
+
+    // Errors reported so far
+    public long count() {
+        return count;
+    }
+
+    // The first errors, as "Line n: message"
+    public List<String> sample() {
+        List<String> sample = new ArrayList<>(sampleLines.size());
+        for (int i = 0; i < sampleLines.size(); i++) {
+            int lineNum = sampleLines.get(i);
+            sample.add(lineNum > 0 ? "Line " + lineNum + ": " + sampleMessages.get(i) : sampleMessages.get(i));
+        }
+        return Collections.unmodifiableList(sample);
+    }
+
+    // Errors per category, by category name
+    public Map<String, Long> byCategory() {
+        return Collections.unmodifiableMap(byCategory);
+    }
+
+    // The quarantine file, or null when no line has been written to it
+    public Path quarantineFile() {
+        return quarantined > 0 ? quarantine : null;
+    }
+
+    public long quarantined() {
+        return quarantined;
+    }
+
+    // Flushes and closes the quarantine file; MovieManager calls this when an upload ends
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}